@@ -0,0 +1,40 @@
+package actor;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the cop and agent rules
+ * 
+ * @author Ferdinand
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ActorBenchmark {
+
+	@Benchmark
+	public void agentAct(Population population) {
+		population.nextAgent().act();
+	}
+
+	/**
+	 * Lets a cop act and releases its suspect again, if any
+	 */
+	@Benchmark
+	public void copAct(Population population) {
+		population.nextCop().act();
+		population.release();
+	}
+
+}
@@ -0,0 +1,193 @@
+package actor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import world.Category;
+import world.FlatWorld;
+import world.IEntity;
+import world.IWorld;
+import world.SplitMix;
+import world.VisionShape;
+import world.World;
+
+/**
+ * A population is a world populated with cops and agents in the same way as
+ * a rebellion populates it. Benchmarks pick the turtles to operate on one
+ * after another, so that every invocation sees a different neighbourhood.
+ * 
+ * @author Ferdinand
+ *
+ */
+@State(Scope.Thread)
+public class Population {
+
+	@Param({ "40", "100" })
+	public int scale;
+
+	@Param({ "3", "7" })
+	public int vision;
+
+	@Param({ "SQUARE" })
+	public VisionShape visionShape;
+
+	@Param({ "0.04" })
+	public double copDensity;
+
+	@Param({ "0.7" })
+	public double agentDensity;
+
+	@Param({ "0.82" })
+	public double governmentLegitimacy;
+
+	@Param({ "false" })
+	public boolean movement;
+
+	@Param({ "false" })
+	public boolean individualLegitimacy;
+
+	@Param({ "false" })
+	public boolean flatWorld;
+
+	/**
+	 * the world
+	 */
+	public IWorld<Turtle> world;
+
+	/**
+	 * the cops in the world
+	 */
+	public List<Cop> cops;
+
+	/**
+	 * the agents in the world
+	 */
+	public List<Agent> agents;
+
+	/**
+	 * the cops and agents in the world
+	 */
+	public List<Turtle> turtles;
+
+	/**
+	 * the agent most recently jailed
+	 */
+	public Agent arrested;
+
+	/**
+	 * the index of the next turtle to be picked
+	 */
+	private int next;
+
+	/**
+	 * Creates the world and its turtles with a fixed seed and lets every agent
+	 * decide whether to rebel once
+	 */
+	@Setup
+	public void setup() {
+		SplitMix random = new SplitMix(42);
+		world = flatWorld ? new FlatWorld<Turtle>(scale, false, visionShape, random) {
+			@Override
+			public void update(Turtle entity, Category previous) {
+				super.update(entity, previous);
+				arrested(entity);
+			}
+		} : new World<Turtle>(scale, false, visionShape, random) {
+			@Override
+			public void update(Turtle entity, Category previous) {
+				super.update(entity, previous);
+				arrested(entity);
+			}
+		};
+
+		cops = new ArrayList<Cop>();
+		for (int i = 0; i < (int) Math.floor(copDensity * scale * scale); i++) {
+			cops.add(new Cop(world, vision, 30, random));
+		}
+		Jail jail = new Jail(30, scale * scale);
+		agents = new ArrayList<Agent>();
+		for (int i = 0; i < (int) Math.floor(agentDensity * scale * scale); i++) {
+			agents.add(individualLegitimacy
+					? new ExtendedAgent(world, vision, governmentLegitimacy, movement, jail, random)
+					: new Agent(world, vision, governmentLegitimacy, movement, jail, random));
+		}
+		turtles = new ArrayList<Turtle>(cops);
+		turtles.addAll(agents);
+		world.enter(turtles);
+
+		for (Agent agent : agents) {
+			agent.act();
+		}
+	}
+
+	/**
+	 * Remembers the given turtle if it has just been jailed
+	 * 
+	 * @param turtle
+	 *            the turtle whose category has changed
+	 */
+	private void arrested(Turtle turtle) {
+		if (turtle.getCategory() == Category.JAILED) {
+			arrested = (Agent) turtle;
+		}
+	}
+
+	/**
+	 * Picks the next turtle
+	 * 
+	 * @return the turtle
+	 */
+	public Turtle nextTurtle() {
+		return pick(turtles);
+	}
+
+	/**
+	 * Picks the next cop
+	 * 
+	 * @return the cop
+	 */
+	public Cop nextCop() {
+		return pick(cops);
+	}
+
+	/**
+	 * Picks the next agent
+	 * 
+	 * @return the agent
+	 */
+	public Agent nextAgent() {
+		return pick(agents);
+	}
+
+	/**
+	 * Releases the agent most recently jailed and lets it rebel again, so that
+	 * arrests do not deplete the rebels over the course of a benchmark
+	 */
+	public void release() {
+		if (arrested != null) {
+			arrested.setJail_term(0);
+			arrested.setRebel(true);
+			arrested = null;
+		}
+	}
+
+	/**
+	 * Picks the next entity of the given list, starting over at its end
+	 * 
+	 * @param entities
+	 *            the given list
+	 * @return the entity
+	 */
+	private <T extends IEntity> T pick(List<T> entities) {
+		if (next >= entities.size()) {
+			next = 0;
+		}
+		return entities.get(next++);
+	}
+
+}
@@ -0,0 +1,115 @@
+package process;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of a full simulation tick. The simulation keeps running across
+ * invocations, so the measurement covers the evolving state of a run rather
+ * than its initial state. The synchronous engine's thread scaling is measured
+ * with -p engine=synchronous -p threads=1,2,4, which only shows a speedup on a
+ * machine with at least as many available processors as threads. The
+ * baseline was recorded on a single processor and holds no scaling figures.
+ * 
+ * @author Ferdinand
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TickBenchmark {
+
+	@Param({ "object", "compact", "incremental", "synchronous" })
+	public String engine;
+
+	@Param({ "0" })
+	public int threads;
+
+	@Param({ "40", "100" })
+	public int scale;
+
+	@Param({ "7" })
+	public int vision;
+
+	@Param({ "square" })
+	public String visionShape;
+
+	@Param({ "0.04" })
+	public double copDensity;
+
+	@Param({ "0.7" })
+	public double agentDensity;
+
+	@Param({ "0.82" })
+	public double governmentLegitimacy;
+
+	@Param({ "false", "true" })
+	public boolean movement;
+
+	@Param({ "false" })
+	public boolean individualLegitimacy;
+
+	@Param({ "false" })
+	public boolean flatWorld;
+
+	/**
+	 * the simulation
+	 */
+	private Simulation simulation;
+
+	/**
+	 * Creates and populates the simulation with a fixed seed
+	 */
+	@Setup
+	public void setup() {
+		Parameters parameters = new Parameters().with("seed", "42")
+				.with("compact", Boolean.toString(engine.equals("compact")))
+				.with("synchronous", Boolean.toString(engine.equals("synchronous")))
+				.with("incremental", Boolean.toString(engine.equals("incremental")))
+				.with("threads", Integer.toString(threads))
+				.with("dimension", Integer.toString(scale))
+				.with("vision", Integer.toString(vision))
+				.with("vision_shape", visionShape)
+				.with("initial_cop_density", Double.toString(copDensity))
+				.with("initial_agent_density", Double.toString(agentDensity))
+				.with("government_legitimacy", Double.toString(governmentLegitimacy))
+				.with("movement", Boolean.toString(movement))
+				.with("individual_legitimacy", Boolean.toString(individualLegitimacy))
+				.with("flat_world", Boolean.toString(flatWorld));
+		simulation = Simulation.create(parameters);
+		simulation.populate();
+	}
+
+	@Benchmark
+	public void tick() {
+		simulation.tick();
+	}
+
+	/**
+	 * Closes the simulation, shutting down the synchronous engine's threads
+	 * 
+	 * @throws IOException
+	 *             if errors occur releasing files
+	 */
+	@TearDown
+	public void tearDown() throws IOException {
+		simulation.close();
+	}
+
+}
@@ -0,0 +1,54 @@
+package world;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import actor.Population;
+import actor.Turtle;
+
+/**
+ * Benchmarks of the world's queries and updates
+ * 
+ * @author Ferdinand
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WorldBenchmark {
+
+	@Benchmark
+	public int positionOf(Population population) {
+		return population.world.positionOf(population.nextTurtle());
+	}
+
+	@Benchmark
+	public List<? extends Turtle> neighbourhoodOf(Population population) {
+		return population.world.neighbourhoodOf(population.nextTurtle(), population.vision);
+	}
+
+	@Benchmark
+	public void move(Population population) {
+		population.world.move(population.nextTurtle(), population.vision);
+	}
+
+	/**
+	 * Clears the world and lets all turtles enter it again
+	 */
+	@Benchmark
+	public void enter(Population population) {
+		population.world.clear();
+		population.world.enter(population.turtles);
+	}
+
+}
@@ -1,9 +1,13 @@
 package actor;
 
-import java.util.concurrent.ThreadLocalRandom;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 import process.Rebellion;
+import world.Category;
 import world.IWorld;
+import world.SplitMix;
 
 /**
  * An agent moves around in a world and determines if it becomes a rebel or not
@@ -19,9 +23,25 @@ public class Agent extends Turtle {
 	protected boolean rebel;
 
 	/**
-	 * the current jail time left
+	 * the jail holding the agent while it serves a jail term
 	 */
-	protected int jail_term;
+	protected Jail jail;
+
+	/**
+	 * the tick of the jail's clock at which the agent is released, which is
+	 * not after the current tick if the agent is not jailed
+	 */
+	int release_tick;
+
+	/**
+	 * the next agent released at the same tick
+	 */
+	Agent next_inmate;
+
+	/**
+	 * the previous agent released at the same tick
+	 */
+	Agent previous_inmate;
 
 	/**
 	 * the individual risk aversion
@@ -52,13 +72,17 @@ public class Agent extends Turtle {
 	 * @param individual_legitimacy
 	 * @param government_legitimacy
 	 * @param movement
+	 * @param jail
+	 * @param random
 	 */
-	public Agent(IWorld<Turtle> world, int vision, double government_legitimacy, boolean movement) {
-		super(world, vision);
+	public Agent(IWorld<Turtle> world, int vision, double government_legitimacy, boolean movement,
+			Jail jail, SplitMix random) {
+		super(world, vision, random);
 		rebel = false;
-		jail_term = 0;
-		this.risk_aversion = ThreadLocalRandom.current().nextDouble();
-		this.perceived_hardship = ThreadLocalRandom.current().nextDouble();
+		this.jail = jail;
+		release_tick = jail.getTick();
+		this.risk_aversion = random.nextDouble();
+		this.perceived_hardship = random.nextDouble();
 		this.government_legitimacy = government_legitimacy;
 		this.movement = movement;
 	}
@@ -72,7 +96,7 @@ public class Agent extends Turtle {
 	@Override
 	public void move() {
 		// only move if not jailed and MOVEMENT enabled
-		if (jail_term == 0 && movement) {
+		if (isActive() && movement) {
 			super.move();
 		}
 	}
@@ -84,10 +108,44 @@ public class Agent extends Turtle {
 	public void act() {
 		// only act if not jailed
 		if (isActive()) {
-			rebel = grievance() > (net_risk() + Rebellion.threshold);
+			setRebel(grievance() > (net_risk() + Rebellion.threshold));
 		}
 	}
 
+	/**
+	 * Writes the agent's risk aversion, perceived hardship, jail term and rebel
+	 * status to the given output
+	 * 
+	 * @param out
+	 *            the given output
+	 * @throws IOException
+	 *             if errors occur writing the output
+	 */
+	@Override
+	public void checkpoint(DataOutput out) throws IOException {
+		out.writeDouble(risk_aversion);
+		out.writeDouble(perceived_hardship);
+		out.writeInt(getJail_term());
+		out.writeBoolean(rebel);
+	}
+
+	/**
+	 * Replaces the agent's risk aversion, perceived hardship, jail term and
+	 * rebel status by the ones written by {@link #checkpoint(DataOutput)}
+	 * 
+	 * @param in
+	 *            the input to read the state from
+	 * @throws IOException
+	 *             if errors occur reading the input
+	 */
+	@Override
+	public void restore(DataInput in) throws IOException {
+		risk_aversion = in.readDouble();
+		perceived_hardship = in.readDouble();
+		setJail_term(in.readInt());
+		setRebel(in.readBoolean());
+	}
+
 	/**
 	 * Returns true if and only if the agent is currently not in jail
 	 */
@@ -96,7 +154,19 @@ public class Agent extends Turtle {
 	 */
 	@Override
 	public boolean isActive() {
-		return jail_term == 0;
+		return getJail_term() == 0;
+	}
+
+	/**
+	 * Returns the agent's category, i.e. jailed if in jail, otherwise rebel or
+	 * quiet depending on whether it is rebelling
+	 */
+	@Override
+	public Category getCategory() {
+		if (getJail_term() > 0) {
+			return Category.JAILED;
+		}
+		return rebel ? Category.REBEL : Category.QUIET;
 	}
 
 	/**
@@ -115,7 +185,9 @@ public class Agent extends Turtle {
 	 *            the rebel to set
 	 */
 	public void setRebel(boolean rebel) {
+		Category previous = getCategory();
 		this.rebel = rebel;
+		categoryChanged(previous);
 	}
 
 	/**
@@ -124,25 +196,43 @@ public class Agent extends Turtle {
 	 * @return
 	 */
 	public int getJail_term() {
-		return jail_term;
+		return Math.max(release_tick - jail.getTick(), 0);
 	}
 
 	/**
-	 * Sets the time left in jail
+	 * Sets the time left in jail and locks the agent up in its jail until then
 	 * 
 	 * @param jail_term
-	 *            the new time left in jail
+	 *            the new time left in jail, at most the jail's maximum jail
+	 *            term
 	 */
 	public void setJail_term(int jail_term) {
-		this.jail_term = jail_term;
+		Category previous = getCategory();
+		jail.letGo(this);
+		release_tick = jail.getTick() + jail_term;
+		if (jail_term > 0) {
+			jail.lockUp(this);
+		}
+		categoryChanged(previous);
 	}
 
 	/**
-	 * Reduces the time left in jail by 1 to a minimum value of 0
+	 * Notifies the world that the agent has been released by its jail
 	 */
-	public void decreaseJailTerm() {
-		if (jail_term > 0) {
-			setJail_term(getJail_term() - 1);
+	void released() {
+		categoryChanged(Category.JAILED);
+	}
+
+	/**
+	 * Notifies the world if the agent's category differs from the given
+	 * previous one
+	 * 
+	 * @param previous
+	 *            the category before a change of the agent's state
+	 */
+	private void categoryChanged(Category previous) {
+		if (previous != getCategory()) {
+			world.update(this, previous);
 		}
 	}
 
@@ -153,10 +243,9 @@ public class Agent extends Turtle {
 	 */
 	protected double net_risk() {
 		// calculate the number of cops nearby
-		long c = world.neighbourhoodOf(this, vision).stream().filter(p -> p instanceof Cop).count();
+		long c = world.count(this, vision, Category.COP);
 		// calculate the number of rebelling agents nearby
-		long a = 1 + world.neighbourhoodOf(this, vision).stream()
-				.filter(p -> p instanceof Agent && p.isActive() && ((Agent) p).isRebel()).count();
+		long a = 1 + world.count(this, vision, Category.REBEL);
 		double cop_rebel_ratio = 0;
 		if (a != 0) {
 			cop_rebel_ratio = Math.floor(c / a);
@@ -1,10 +1,10 @@
 package actor;
 
-import java.util.List;
-import java.util.concurrent.ThreadLocalRandom;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
+import world.Category;
 import world.IWorld;
+import world.SplitMix;
 
 /**
  * A cop moves around in a world and jails a random rebelling agent in its
@@ -21,7 +21,27 @@ public class Cop extends Turtle {
 	private int max_jail_term;
 
 	/**
-	 * Creates a cop with the given world, vision and maximum jail time
+	 * the index of the rebelling agent to be selected by the suspect selector
+	 */
+	private int suspectIndex;
+
+	/**
+	 * the rebelling agent chosen by the suspect selector
+	 */
+	private Agent suspect;
+
+	/**
+	 * selects the nearby rebelling agent at the suspect index in visiting order
+	 */
+	private final Consumer<Turtle> suspectSelector = p -> {
+		if (isActiveRebel(p) && suspectIndex-- == 0) {
+			suspect = (Agent) p;
+		}
+	};
+
+	/**
+	 * Creates a cop with the given world, vision, maximum jail time and source
+	 * of randomness
 	 * 
 	 * @param world
 	 *            the world
@@ -29,9 +49,11 @@ public class Cop extends Turtle {
 	 *            the vision
 	 * @param max_jail_term
 	 *            the maximum jail time to sentence rebelling agents to
+	 * @param random
+	 *            the source of randomness
 	 */
-	public Cop(IWorld<Turtle> world, int vision, int max_jail_term) {
-		super(world, vision);
+	public Cop(IWorld<Turtle> world, int vision, int max_jail_term, SplitMix random) {
+		super(world, vision, random);
 		this.max_jail_term = max_jail_term;
 	}
 
@@ -43,6 +65,14 @@ public class Cop extends Turtle {
 		return true;
 	}
 
+	/**
+	 * Returns the cop category
+	 */
+	@Override
+	public Category getCategory() {
+		return Category.COP;
+	}
+
 	/**
 	 * Randomly selects a rebelling agent in its vision, sets the rebel's jail
 	 * time to a random value between 1 (inclusive) and max_jail_term
@@ -50,18 +80,28 @@ public class Cop extends Turtle {
 	 */
 	@Override
 	public void act() {
-		List<? extends Turtle> neighbours = this.world.neighbourhoodOf(this, vision);
-		List<? extends Turtle> nearbyRebels = neighbours.stream()
-				.filter(p -> p instanceof Agent && p.isActive() && ((Agent) p).isRebel())
-				.collect(Collectors.toList());
+		// count the nearby rebels first, then pick one of them in a second pass
+		int nearRebels = this.world.count(this, vision, Category.REBEL);
 
-		if (!nearbyRebels.isEmpty()) {
-			Agent suspect = (Agent) nearbyRebels
-					.get(ThreadLocalRandom.current().nextInt(nearbyRebels.size()));
-			suspect.setJail_term(ThreadLocalRandom.current().nextInt(max_jail_term) + 1);
+		if (nearRebels > 0) {
+			suspectIndex = random.nextInt(nearRebels);
+			this.world.forEachNeighbour(this, vision, suspectSelector);
+			suspect.setJail_term(random.nextInt(max_jail_term) + 1);
 			suspect.setRebel(false);
 			world.moveTo(this, suspect);
+			suspect = null;
 		}
 	}
 
+	/**
+	 * Returns whether the given turtle is an active, rebelling agent
+	 * 
+	 * @param turtle
+	 *            the given turtle
+	 * @return true if and only if the turtle is an active rebel
+	 */
+	private static boolean isActiveRebel(Turtle turtle) {
+		return turtle instanceof Agent && turtle.isActive() && ((Agent) turtle).isRebel();
+	}
+
 }
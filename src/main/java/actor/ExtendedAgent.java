@@ -1,6 +1,8 @@
 package actor;
 
+import world.Category;
 import world.IWorld;
+import world.SplitMix;
 
 /**
  * An extended agent's behaves differently such that its perceived government
@@ -19,10 +21,12 @@ public class ExtendedAgent extends Agent {
 	 * @param vision
 	 * @param government_legitimacy
 	 * @param movement
+	 * @param jail
+	 * @param random
 	 */
 	public ExtendedAgent(IWorld<Turtle> world, int vision, double government_legitimacy,
-			boolean movement) {
-		super(world, vision, government_legitimacy, movement);
+			boolean movement, Jail jail, SplitMix random) {
+		super(world, vision, government_legitimacy, movement, jail, random);
 	}
 
 	/**
@@ -34,12 +38,11 @@ public class ExtendedAgent extends Agent {
 	@Override
 	protected double governmentLegitimacy() {
 		double legitimacy;
-		// calculate the number of nearby agents
-		long nearAgents = world.neighbourhoodOf(this, vision).stream()
-				.filter(p -> p instanceof Agent).count();
 		// calculate the number of nearby jailed agents
-		long nearJailedAgents = world.neighbourhoodOf(this, vision).stream()
-				.filter(p -> p instanceof Agent && !p.isActive()).count();
+		long nearJailedAgents = world.count(this, vision, Category.JAILED);
+		// calculate the number of nearby agents
+		long nearAgents = nearJailedAgents + world.count(this, vision, Category.QUIET)
+				+ world.count(this, vision, Category.REBEL);
 		double increaseFactor = 0;
 		if (nearAgents != 0) {
 			increaseFactor = nearJailedAgents / nearAgents;
@@ -0,0 +1,145 @@
+package actor;
+
+import java.util.BitSet;
+
+import world.Footprint;
+
+/**
+ * A jail keeps track of the jailed agents and releases them once their jail
+ * terms end. Agents are kept in a timing wheel with one slot per tick up to
+ * the maximum jail term, so that advancing to the next tick only touches the
+ * agents released at that tick. Additionally, the ids of the jailed agents
+ * are kept in a bit set, so that the active agents can be enumerated without
+ * checking every agent.
+ * 
+ * @author Ferdinand
+ *
+ */
+public class Jail {
+
+	/**
+	 * the first agent of each slot, i.e. of each tick modulo the number of
+	 * slots, whose agents are linked in a list
+	 */
+	private final Agent[] wheel;
+
+	/**
+	 * the ids of the jailed agents
+	 */
+	private final BitSet jailed;
+
+	/**
+	 * the number of ticks passed
+	 */
+	private int tick;
+
+	/**
+	 * Creates an empty jail for terms of at most the given maximum jail term
+	 * and agents with ids less than the given bound
+	 * 
+	 * @param max_jail_term
+	 *            the given maximum jail term
+	 * @param ids
+	 *            the given bound of the agents' ids
+	 */
+	public Jail(int max_jail_term, int ids) {
+		wheel = new Agent[max_jail_term + 1];
+		jailed = new BitSet(ids);
+		tick = 0;
+	}
+
+	/**
+	 * Returns the number of ticks passed, which serves as the clock jail
+	 * terms are measured by
+	 * 
+	 * @return the number of ticks passed
+	 */
+	public int getTick() {
+		return tick;
+	}
+
+	/**
+	 * @return the estimated heap occupied by the jail, excluding the agents,
+	 *         in bytes
+	 */
+	public long footprint() {
+		return Footprint.of(Jail.class) + Footprint.array(Agent.class, wheel.length)
+				+ Footprint.bits(jailed.size());
+	}
+
+	/**
+	 * Returns the first id not less than the given id that does not belong to
+	 * a jailed agent
+	 * 
+	 * @param id
+	 *            the given id
+	 * @return the id of the next active agent, if any agent has this id
+	 */
+	public int nextActive(int id) {
+		return jailed.nextClearBit(id);
+	}
+
+	/**
+	 * Advances to the next tick and releases the agents whose jail terms end
+	 */
+	public void advance() {
+		tick++;
+		int slot = tick % wheel.length;
+		Agent agent = wheel[slot];
+		wheel[slot] = null;
+		while (agent != null) {
+			Agent next = agent.next_inmate;
+			agent.next_inmate = null;
+			agent.previous_inmate = null;
+			jailed.clear(agent.getId());
+			agent.released();
+			agent = next;
+		}
+	}
+
+	/**
+	 * Locks up the given agent until its release tick
+	 * 
+	 * @param agent
+	 *            the given agent, which must not be locked up yet
+	 * @throws IllegalArgumentException
+	 *             if the agent's jail term exceeds the maximum jail term
+	 */
+	void lockUp(Agent agent) {
+		if (agent.release_tick - tick >= wheel.length) {
+			throw new IllegalArgumentException(
+					"Jail term exceeds the maximum of " + (wheel.length - 1));
+		}
+		int slot = agent.release_tick % wheel.length;
+		agent.next_inmate = wheel[slot];
+		if (wheel[slot] != null) {
+			wheel[slot].previous_inmate = agent;
+		}
+		wheel[slot] = agent;
+		jailed.set(agent.getId());
+	}
+
+	/**
+	 * Lets the given agent go before its release tick, if it is locked up
+	 * 
+	 * @param agent
+	 *            the given agent
+	 */
+	void letGo(Agent agent) {
+		if (agent.release_tick <= tick) {
+			return;
+		}
+		if (agent.previous_inmate != null) {
+			agent.previous_inmate.next_inmate = agent.next_inmate;
+		} else {
+			wheel[agent.release_tick % wheel.length] = agent.next_inmate;
+		}
+		if (agent.next_inmate != null) {
+			agent.next_inmate.previous_inmate = agent.previous_inmate;
+		}
+		agent.next_inmate = null;
+		agent.previous_inmate = null;
+		jailed.clear(agent.getId());
+	}
+
+}
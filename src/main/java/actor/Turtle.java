@@ -1,7 +1,12 @@
 package actor;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import world.IEntity;
 import world.IWorld;
+import world.SplitMix;
 
 /**
  * A NetLogo turtle that moves around and performs actions.
@@ -22,16 +27,29 @@ public abstract class Turtle implements IEntity {
 	protected int vision;
 
 	/**
-	 * Creates a turtle with the given world and vision
+	 * The source of randomness for the turtle's decisions
+	 */
+	protected SplitMix random;
+
+	/**
+	 * The id assigned by the world, -1 if not in a world
+	 */
+	private int id = -1;
+
+	/**
+	 * Creates a turtle with the given world, vision and source of randomness
 	 * 
 	 * @param world
 	 *            the world
 	 * @param vision
 	 *            the vision
+	 * @param random
+	 *            the source of randomness
 	 */
-	public Turtle(IWorld<Turtle> world, int vision) {
+	public Turtle(IWorld<Turtle> world, int vision, SplitMix random) {
 		this.world = world;
 		this.vision = vision;
+		this.random = random;
 	}
 
 	/**
@@ -48,4 +66,38 @@ public abstract class Turtle implements IEntity {
 	 */
 	public abstract void act();
 
+	/**
+	 * Writes the turtle's state that is neither given by the parameters of a
+	 * run nor by its location to the given output
+	 * 
+	 * @param out
+	 *            the given output
+	 * @throws IOException
+	 *             if errors occur writing the output
+	 */
+	public void checkpoint(DataOutput out) throws IOException {
+	}
+
+	/**
+	 * Replaces the turtle's state by the one written by
+	 * {@link #checkpoint(DataOutput)}. The turtle has to be in its world.
+	 * 
+	 * @param in
+	 *            the input to read the state from
+	 * @throws IOException
+	 *             if errors occur reading the input
+	 */
+	public void restore(DataInput in) throws IOException {
+	}
+
+	@Override
+	public int getId() {
+		return id;
+	}
+
+	@Override
+	public void setId(int id) {
+		this.id = id;
+	}
+
 }
@@ -0,0 +1,164 @@
+package process;
+
+/**
+ * An accumulator summarises the values of one series of many replicates tick
+ * by tick without storing them. For every tick, it keeps the number of values,
+ * their mean and sum of squared deviations, updated with Welford's algorithm,
+ * their smallest and largest value and a histogram of equal-width bins over
+ * the range of possible values as a quantile sketch. Its memory depends on
+ * the number of ticks and bins, but not on the number of values.
+ * 
+ * Quantiles are exact while there are at least as many bins as possible
+ * values. Otherwise they are interpolated within a bin and deviate by less
+ * than the bin width.
+ * 
+ * @author Ferdinand
+ *
+ */
+public class Accumulator {
+
+	/**
+	 * the number of values per tick
+	 */
+	private final long[] count;
+
+	/**
+	 * the mean of the values per tick
+	 */
+	private final double[] mean;
+
+	/**
+	 * the sum of the squared deviations from the mean per tick
+	 */
+	private final double[] squares;
+
+	/**
+	 * the smallest value per tick
+	 */
+	private final int[] min;
+
+	/**
+	 * the largest value per tick
+	 */
+	private final int[] max;
+
+	/**
+	 * the number of values per tick and bin, indexed by tick * bins + bin
+	 */
+	private final int[] histogram;
+
+	/**
+	 * the number of bins per tick
+	 */
+	private final int bins;
+
+	/**
+	 * the range of values of each bin
+	 */
+	private final int width;
+
+	/**
+	 * Creates an empty accumulator for the given number of ticks and values
+	 * between 0 and the given maximum
+	 * 
+	 * @param ticks
+	 *            the given number of ticks
+	 * @param max
+	 *            the given maximum value
+	 * @param bins
+	 *            the maximum number of bins per tick
+	 */
+	public Accumulator(int ticks, int max, int bins) {
+		this.width = (max + bins) / bins;
+		this.bins = max / width + 1;
+		count = new long[ticks];
+		mean = new double[ticks];
+		squares = new double[ticks];
+		this.min = new int[ticks];
+		this.max = new int[ticks];
+		histogram = new int[ticks * this.bins];
+	}
+
+	/**
+	 * Adds the given value of the given tick
+	 * 
+	 * @param tick
+	 *            the given tick
+	 * @param value
+	 *            the given value between 0 and the maximum value
+	 */
+	public void add(int tick, int value) {
+		long n = ++count[tick];
+		if (n == 1 || value < min[tick]) {
+			min[tick] = value;
+		}
+		if (n == 1 || value > max[tick]) {
+			max[tick] = value;
+		}
+		double delta = value - mean[tick];
+		mean[tick] += delta / n;
+		squares[tick] += delta * (value - mean[tick]);
+		histogram[tick * bins + Math.min(value / width, bins - 1)]++;
+	}
+
+	/**
+	 * Returns the number of values of the given tick
+	 * 
+	 * @param tick
+	 *            the given tick
+	 * @return the number of values
+	 */
+	public long count(int tick) {
+		return count[tick];
+	}
+
+	/**
+	 * Returns the mean of the values of the given tick
+	 * 
+	 * @param tick
+	 *            the given tick
+	 * @return the mean, 0 if there are no values
+	 */
+	public double mean(int tick) {
+		return mean[tick];
+	}
+
+	/**
+	 * Returns the sample variance of the values of the given tick
+	 * 
+	 * @param tick
+	 *            the given tick
+	 * @return the variance, 0 if there are less than two values
+	 */
+	public double variance(int tick) {
+		return count[tick] > 1 ? squares[tick] / (count[tick] - 1) : 0;
+	}
+
+	/**
+	 * Returns the given quantile of the values of the given tick, i.e. the
+	 * value of rank ceil(p * n) among the n values in ascending order
+	 * 
+	 * @param tick
+	 *            the given tick
+	 * @param p
+	 *            the probability of the quantile between 0 and 1
+	 * @return the quantile, 0 if there are no values
+	 */
+	public double quantile(int tick, double p) {
+		long rank = Math.max((long) Math.ceil(p * count[tick]), 1);
+		long before = 0;
+		for (int bin = 0; bin < bins; bin++) {
+			int values = histogram[tick * bins + bin];
+			if (before + values >= rank) {
+				// spread the values evenly across the part of the bin between
+				// the smallest and largest value
+				double lower = Math.max(bin * width, min[tick]);
+				double upper = Math.min(bin * width + width - 1, max[tick]);
+				return lower + (upper - lower) * (rank - before - 0.5) / values;
+			}
+			before += values;
+		}
+		return 0;
+	}
+
+}
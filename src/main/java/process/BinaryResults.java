@@ -0,0 +1,316 @@
+package process;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import world.VisionShape;
+
+/**
+ * Binary results give access to a results file written by a
+ * {@link BinarySink}. The file is memory-mapped, so values are read on demand
+ * without parsing the file. Only the rows and snapshots announced in the
+ * header at the time of opening are accessible.
+ * 
+ * @author Ferdinand
+ *
+ */
+public class BinaryResults implements Closeable {
+
+	/**
+	 * the channel of the results file
+	 */
+	private final FileChannel channel;
+
+	/**
+	 * the header and the columns of the tick series
+	 */
+	private final MappedByteBuffer series;
+
+	/**
+	 * the number of rows the columns have room for
+	 */
+	private final int capacity;
+
+	/**
+	 * the number of rows
+	 */
+	private final int rows;
+
+	/**
+	 * the number of agents of each snapshot
+	 */
+	private final int agents;
+
+	/**
+	 * the number of snapshots
+	 */
+	private final int snapshots;
+
+	/**
+	 * Opens the results file at the given path
+	 * 
+	 * @param path
+	 *            the given path
+	 * @throws IOException
+	 *             if errors occur opening the file or it is no results file
+	 */
+	public BinaryResults(Path path) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			MappedByteBuffer header = map(0, BinarySink.HEADER_SIZE);
+			if (header.getInt(0) != BinarySink.MAGIC || header.getInt(4) != BinarySink.VERSION) {
+				throw new IOException(path + " is no results file of version " + BinarySink.VERSION);
+			}
+			capacity = header.getInt(BinarySink.CAPACITY);
+			rows = header.getInt(BinarySink.ROWS);
+			agents = header.getInt(BinarySink.AGENTS);
+			snapshots = header.getInt(BinarySink.SNAPSHOTS);
+			series = map(0, BinarySink.snapshotsOffset(capacity));
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the parameters of the run the results belong to. Parameters that
+	 * do not influence the results, such as the format, have their default
+	 * values.
+	 * 
+	 * @return the parameters
+	 */
+	public Parameters getParameters() {
+		return new Parameters().with("ticks", Integer.toString(series.getInt(BinarySink.TICKS)))
+				.with("dimension", Integer.toString(series.getInt(BinarySink.SCALE)))
+				.with("vision", Integer.toString(series.getInt(BinarySink.VISION)))
+				.with("vision_shape", VisionShape.values()[series.get(BinarySink.VISION_SHAPE)].name())
+				.with("max_jail_term", Integer.toString(series.getInt(BinarySink.MAX_JAIL_TERM)))
+				.with("movement", Boolean.toString(series.get(BinarySink.MOVEMENT) != 0))
+				.with("initial_cop_density",
+						Double.toString(series.getDouble(BinarySink.INITIAL_COP_DENSITY)))
+				.with("initial_agent_density",
+						Double.toString(series.getDouble(BinarySink.INITIAL_AGENT_DENSITY)))
+				.with("government_legitimacy",
+						Double.toString(series.getDouble(BinarySink.GOVERNMENT_LEGITIMACY)))
+				.with("individual_legitimacy",
+						Boolean.toString(series.get(BinarySink.INDIVIDUAL_LEGITIMACY) != 0))
+				.with("seed", Long.toString(series.getLong(BinarySink.SEED)))
+				.with("snapshot_interval", Integer.toString(series.getInt(BinarySink.SNAPSHOT_INTERVAL)))
+				.with("equilibrium_window", Integer.toString(series.getInt(BinarySink.EQUILIBRIUM_WINDOW)))
+				.with("equilibrium_interval",
+						Integer.toString(series.getInt(BinarySink.EQUILIBRIUM_INTERVAL)))
+				.with("equilibrium_tolerance",
+						Double.toString(series.getDouble(BinarySink.EQUILIBRIUM_TOLERANCE)));
+	}
+
+	/**
+	 * @return the kind of equilibrium the run reached, null if none
+	 */
+	public Equilibrium.Reason getEquilibrium() {
+		int reason = series.get(BinarySink.EQUILIBRIUM);
+		return reason == 0 ? null : Equilibrium.Reason.values()[reason - 1];
+	}
+
+	/**
+	 * @return the tick the run reached an equilibrium with, -1 if none
+	 */
+	public int getEquilibriumTick() {
+		return getEquilibrium() == null ? -1 : series.getInt(BinarySink.EQUILIBRIUM_TICK);
+	}
+
+	/**
+	 * @return the period of a periodic equilibrium, 0 otherwise
+	 */
+	public int getPeriod() {
+		return series.getInt(BinarySink.PERIOD);
+	}
+
+	/**
+	 * @return the number of rows
+	 */
+	public int getRows() {
+		return rows;
+	}
+
+	/**
+	 * Returns the tick of the given row
+	 * 
+	 * @param row
+	 *            the given row
+	 * @return the tick
+	 */
+	public int tick(int row) {
+		return value(0, row);
+	}
+
+	/**
+	 * Returns the number of quiet agents of the given row
+	 * 
+	 * @param row
+	 *            the given row
+	 * @return the number of quiet agents
+	 */
+	public int quiet(int row) {
+		return value(1, row);
+	}
+
+	/**
+	 * Returns the number of jailed agents of the given row
+	 * 
+	 * @param row
+	 *            the given row
+	 * @return the number of jailed agents
+	 */
+	public int jailed(int row) {
+		return value(2, row);
+	}
+
+	/**
+	 * Returns the number of rebelling agents of the given row
+	 * 
+	 * @param row
+	 *            the given row
+	 * @return the number of rebelling agents
+	 */
+	public int rebels(int row) {
+		return value(3, row);
+	}
+
+	/**
+	 * @return the number of snapshots
+	 */
+	public int getSnapshots() {
+		return snapshots;
+	}
+
+	/**
+	 * @return the number of agents of each snapshot
+	 */
+	public int getAgents() {
+		return agents;
+	}
+
+	/**
+	 * Maps the given snapshot
+	 * 
+	 * @param index
+	 *            the index of the given snapshot
+	 * @return the snapshot
+	 * @throws IOException
+	 *             if errors occur mapping the file
+	 */
+	public Snapshot snapshot(int index) throws IOException {
+		if (index < 0 || index >= snapshots) {
+			throw new IndexOutOfBoundsException("Snapshot " + index + " of " + snapshots);
+		}
+		int size = BinarySink.snapshotSize(agents);
+		return new Snapshot(map(BinarySink.snapshotsOffset(capacity) + (long) index * size, size));
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Returns the value of the given column in the given row
+	 * 
+	 * @param column
+	 *            the given column
+	 * @param row
+	 *            the given row
+	 * @return the value
+	 */
+	private int value(int column, int row) {
+		if (row < 0 || row >= rows) {
+			throw new IndexOutOfBoundsException("Row " + row + " of " + rows);
+		}
+		return series.getInt(BinarySink.HEADER_SIZE + (column * capacity + row) * Integer.BYTES);
+	}
+
+	/**
+	 * Maps the given region of the file in little-endian order
+	 * 
+	 * @param offset
+	 *            the offset of the region
+	 * @param size
+	 *            the size of the region
+	 * @return the mapped region
+	 * @throws IOException
+	 *             if errors occur mapping the file
+	 */
+	private MappedByteBuffer map(long offset, long size) throws IOException {
+		MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		return buffer;
+	}
+
+	/**
+	 * A snapshot holds the state of every agent after a tick
+	 */
+	public class Snapshot {
+
+		/**
+		 * the mapped snapshot
+		 */
+		private final MappedByteBuffer buffer;
+
+		/**
+		 * Creates a snapshot of the given mapped region
+		 * 
+		 * @param buffer
+		 *            the given mapped region
+		 */
+		private Snapshot(MappedByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		/**
+		 * @return the tick of the snapshot
+		 */
+		public int getTick() {
+			return buffer.getInt(0);
+		}
+
+		/**
+		 * Returns the jail term of the given agent
+		 * 
+		 * @param agent
+		 *            the given agent in order of creation
+		 * @return the jail term
+		 */
+		public int jailTerm(int agent) {
+			return buffer.getInt(Integer.BYTES + agent * Integer.BYTES);
+		}
+
+		/**
+		 * Returns the location of the given agent as index x * scale + y of its
+		 * patch
+		 * 
+		 * @param agent
+		 *            the given agent in order of creation
+		 * @return the location
+		 */
+		public int position(int agent) {
+			return buffer.getInt(Integer.BYTES + (agents + agent) * Integer.BYTES);
+		}
+
+		/**
+		 * Returns whether the given agent rebels
+		 * 
+		 * @param agent
+		 *            the given agent in order of creation
+		 * @return whether the agent rebels
+		 */
+		public boolean isRebel(int agent) {
+			return buffer.get(Integer.BYTES + 2 * agents * Integer.BYTES + agent) != 0;
+		}
+
+	}
+
+}
@@ -0,0 +1,337 @@
+package process;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A binary sink stores results in fixed-width little-endian columns that can
+ * be memory-mapped by {@link BinaryResults} without parsing. A file consists
+ * of
+ * <ul>
+ * <li>a header of {@value #HEADER_SIZE} bytes holding the run's parameters,
+ * the number of rows and snapshots written so far and the equilibrium
+ * reached, if any,</li>
+ * <li>the columns tick, quiet, jailed and rebels of int values, each with room
+ * for one row per tick of the run, and</li>
+ * <li>the snapshots, each consisting of its tick, the jail term and location of
+ * every agent as int values and the rebel status of every agent as byte
+ * values, padded to a multiple of four bytes.</li>
+ * </ul>
+ * The header and columns are written through a memory-mapped buffer, the
+ * snapshots through the file channel.
+ * 
+ * @author Ferdinand
+ *
+ */
+public class BinarySink implements ResultsSink {
+
+	/**
+	 * the first four bytes of every results file
+	 */
+	static final int MAGIC = 0x4C424552;
+
+	/**
+	 * the version of the file layout
+	 */
+	static final int VERSION = 1;
+
+	/**
+	 * the size of the header in bytes
+	 */
+	static final int HEADER_SIZE = 128;
+
+	/**
+	 * the number of columns of the tick series
+	 */
+	static final int COLUMNS = 4;
+
+	/**
+	 * the offsets of the header fields
+	 */
+	static final int ROWS = 8;
+	static final int CAPACITY = 12;
+	static final int SNAPSHOT_INTERVAL = 16;
+	static final int AGENTS = 20;
+	static final int SNAPSHOTS = 24;
+	static final int SCALE = 28;
+	static final int VISION = 32;
+	static final int MAX_JAIL_TERM = 36;
+	static final int TICKS = 40;
+	static final int MOVEMENT = 44;
+	static final int INDIVIDUAL_LEGITIMACY = 45;
+	static final int VISION_SHAPE = 46;
+	static final int EQUILIBRIUM = 47;
+	static final int INITIAL_COP_DENSITY = 48;
+	static final int INITIAL_AGENT_DENSITY = 56;
+	static final int GOVERNMENT_LEGITIMACY = 64;
+	static final int SEED = 72;
+	static final int EQUILIBRIUM_TICK = 80;
+	static final int PERIOD = 84;
+	static final int EQUILIBRIUM_WINDOW = 88;
+	static final int EQUILIBRIUM_INTERVAL = 92;
+	static final int EQUILIBRIUM_TOLERANCE = 96;
+
+	/**
+	 * the path of the results file
+	 */
+	private final Path path;
+
+	/**
+	 * the channel of the results file
+	 */
+	private final FileChannel channel;
+
+	/**
+	 * the number of rows after which the header is updated, 0 to update it
+	 * only when closing
+	 */
+	private final int flushInterval;
+
+	/**
+	 * the header and the columns of the tick series
+	 */
+	private MappedByteBuffer series;
+
+	/**
+	 * the number of rows the columns have room for
+	 */
+	private int capacity;
+
+	/**
+	 * the number of rows written
+	 */
+	private int rows;
+
+	/**
+	 * the number of snapshots written
+	 */
+	private int snapshots;
+
+	/**
+	 * the encoded snapshot, reused for every snapshot
+	 */
+	private ByteBuffer snapshot;
+
+	/**
+	 * Creates a sink replacing the file at the given path
+	 * 
+	 * @param path
+	 *            the given path
+	 * @param flushInterval
+	 *            the number of rows after which the header is updated, 0 to
+	 *            update it only when closing
+	 * @throws IOException
+	 *             if errors occur opening the file
+	 */
+	public BinarySink(Path path, int flushInterval) throws IOException {
+		this(path, FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING), flushInterval);
+	}
+
+	/**
+	 * Creates a sink writing to the given channel of the file at the given
+	 * path
+	 * 
+	 * @param path
+	 *            the given path
+	 * @param channel
+	 *            the given channel
+	 * @param flushInterval
+	 *            the number of rows after which the header is updated, 0 to
+	 *            update it only when closing
+	 */
+	private BinarySink(Path path, FileChannel channel, int flushInterval) {
+		this.path = path;
+		this.channel = channel;
+		this.flushInterval = flushInterval;
+	}
+
+	@Override
+	public void header(Parameters parameters) throws IOException {
+		// one row for the initial state and one for every tick
+		capacity = parameters.getTicks() + 1;
+		series = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+				HEADER_SIZE + (long) COLUMNS * capacity * Integer.BYTES);
+		series.order(ByteOrder.LITTLE_ENDIAN);
+
+		series.putInt(0, MAGIC);
+		series.putInt(4, VERSION);
+		series.putInt(CAPACITY, capacity);
+		series.putInt(SNAPSHOT_INTERVAL, parameters.getSnapshot_interval());
+		series.putInt(SCALE, parameters.getScale());
+		series.putInt(VISION, parameters.getVision());
+		series.putInt(MAX_JAIL_TERM, parameters.getMax_jail_term());
+		series.putInt(TICKS, parameters.getTicks());
+		series.put(MOVEMENT, (byte) (parameters.isMovement() ? 1 : 0));
+		series.put(INDIVIDUAL_LEGITIMACY, (byte) (parameters.isIndividual_legitimacy() ? 1 : 0));
+		series.put(VISION_SHAPE, (byte) parameters.getVision_shape().ordinal());
+		series.putDouble(INITIAL_COP_DENSITY, parameters.getInitial_cop_density());
+		series.putDouble(INITIAL_AGENT_DENSITY, parameters.getInitial_agent_density());
+		series.putDouble(GOVERNMENT_LEGITIMACY, parameters.getGovernment_legitimacy());
+		series.putLong(SEED, parameters.getSeed());
+		series.putInt(EQUILIBRIUM_WINDOW, parameters.getEquilibrium_window());
+		series.putInt(EQUILIBRIUM_INTERVAL, parameters.getEquilibrium_interval());
+		series.putDouble(EQUILIBRIUM_TOLERANCE, parameters.getEquilibrium_tolerance());
+	}
+
+	@Override
+	public void row(int tick, int quiet, int jailed, int rebels) throws IOException {
+		if (rows == capacity) {
+			throw new IOException("More rows than the " + capacity + " announced by the parameters");
+		}
+		int column = capacity * Integer.BYTES;
+		int offset = HEADER_SIZE + rows * Integer.BYTES;
+		series.putInt(offset, tick);
+		series.putInt(offset + column, quiet);
+		series.putInt(offset + 2 * column, jailed);
+		series.putInt(offset + 3 * column, rebels);
+		rows++;
+		if (flushInterval > 0 && rows % flushInterval == 0) {
+			flush();
+		}
+	}
+
+	@Override
+	public void snapshot(int tick, int[] jailTerm, int[] position, boolean[] rebel) throws IOException {
+		int agents = jailTerm.length;
+		if (snapshot == null) {
+			series.putInt(AGENTS, agents);
+			snapshot = ByteBuffer.allocateDirect(snapshotSize(agents)).order(ByteOrder.LITTLE_ENDIAN);
+		}
+
+		snapshot.clear();
+		snapshot.putInt(tick);
+		for (int i = 0; i < agents; i++) {
+			snapshot.putInt(jailTerm[i]);
+		}
+		for (int i = 0; i < agents; i++) {
+			snapshot.putInt(position[i]);
+		}
+		for (int i = 0; i < agents; i++) {
+			snapshot.put((byte) (rebel[i] ? 1 : 0));
+		}
+		snapshot.position(0);
+
+		long offset = snapshotsOffset(capacity) + (long) snapshots * snapshot.capacity();
+		while (snapshot.hasRemaining()) {
+			offset += channel.write(snapshot, offset);
+		}
+		snapshots++;
+	}
+
+	@Override
+	public void equilibrium(int tick, Equilibrium.Reason reason, int period) throws IOException {
+		// 0 marks runs without equilibrium
+		series.putInt(EQUILIBRIUM_TICK, tick);
+		series.putInt(PERIOD, period);
+		series.put(EQUILIBRIUM, (byte) (reason.ordinal() + 1));
+	}
+
+	@Override
+	public void flush() throws IOException {
+		// readers only consider rows and snapshots announced in the header
+		series.putInt(SNAPSHOTS, snapshots);
+		series.putInt(ROWS, rows);
+	}
+
+	@Override
+	public void checkpoint(DataOutput checkpoint) throws IOException {
+		flush();
+		checkpoint.writeUTF(path.toAbsolutePath().toString());
+		checkpoint.writeInt(rows);
+		checkpoint.writeInt(snapshots);
+		checkpoint.writeByte(series.get(EQUILIBRIUM));
+		checkpoint.writeInt(series.getInt(EQUILIBRIUM_TICK));
+		checkpoint.writeInt(series.getInt(PERIOD));
+	}
+
+	@Override
+	public void force() throws IOException {
+		series.force();
+		channel.force(false);
+	}
+
+	/**
+	 * Reopens the sink saved in the given checkpoint, so that the rows and
+	 * snapshots recorded after the checkpoint was taken are overwritten
+	 * 
+	 * @param checkpoint
+	 *            the given checkpoint, positioned at the sink's state
+	 * @param flushInterval
+	 *            the number of rows after which the header is updated, 0 to
+	 *            update it only when closing
+	 * @return the reopened sink
+	 * @throws IOException
+	 *             if errors occur reading the checkpoint or opening the file
+	 */
+	static BinarySink resume(DataInput checkpoint, int flushInterval) throws IOException {
+		Path path = Paths.get(checkpoint.readUTF());
+		BinarySink sink = new BinarySink(path,
+				FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE), flushInterval);
+		try {
+			ByteBuffer header = sink.channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE)
+					.order(ByteOrder.LITTLE_ENDIAN);
+			if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+				throw new IOException(path + " is no results file of version " + VERSION);
+			}
+			sink.capacity = header.getInt(CAPACITY);
+			sink.series = sink.channel.map(FileChannel.MapMode.READ_WRITE, 0, snapshotsOffset(sink.capacity));
+			sink.series.order(ByteOrder.LITTLE_ENDIAN);
+			sink.rows = checkpoint.readInt();
+			sink.snapshots = checkpoint.readInt();
+			sink.series.put(EQUILIBRIUM, checkpoint.readByte());
+			sink.series.putInt(EQUILIBRIUM_TICK, checkpoint.readInt());
+			sink.series.putInt(PERIOD, checkpoint.readInt());
+			sink.flush();
+		} catch (IOException e) {
+			sink.channel.close();
+			throw e;
+		}
+		return sink;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			if (series != null) {
+				flush();
+				series.force();
+			}
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Returns the offset of the first snapshot in a file whose columns have
+	 * room for the given number of rows
+	 * 
+	 * @param capacity
+	 *            the given number of rows
+	 * @return the offset in bytes
+	 */
+	static long snapshotsOffset(int capacity) {
+		return HEADER_SIZE + (long) COLUMNS * capacity * Integer.BYTES;
+	}
+
+	/**
+	 * Returns the size of a snapshot of the given number of agents
+	 * 
+	 * @param agents
+	 *            the given number of agents
+	 * @return the size in bytes
+	 */
+	static int snapshotSize(int agents) {
+		// tick, jail terms, locations and rebel flags padded to whole ints
+		return Integer.BYTES + 2 * agents * Integer.BYTES + (agents + 3) / 4 * 4;
+	}
+
+}
@@ -0,0 +1,243 @@
+package process;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Checkpoints save the state of a simulation run to a file, so that an
+ * aborted run can be resumed where the last checkpoint was taken. The ticking
+ * thread only encodes a checkpoint into memory; forcing the results and the
+ * checkpoint to disk is left to a background thread. At most one checkpoint
+ * is written at a time, a further one waits for the previous to complete.
+ * 
+ * Every checkpoint is written to a temporary file first, which then replaces
+ * the previous checkpoint, so that an abort while writing leaves the previous
+ * checkpoint intact. A checkpoint consists of
+ * <ul>
+ * <li>its magic number and version,</li>
+ * <li>the run's parameters as command-line arguments,</li>
+ * <li>the state of the results sink, i.e. the results written so far,</li>
+ * <li>the tick and the state of the equilibrium detection and</li>
+ * <li>the state of the world, the turtles, the jail and the source of
+ * randomness as saved by the simulation.</li>
+ * </ul>
+ * 
+ * @author Ferdinand
+ *
+ */
+public class Checkpoints implements Closeable {
+
+	/**
+	 * the first four bytes of every checkpoint
+	 */
+	static final int MAGIC = 0x4C42434B;
+
+	/**
+	 * the version of the checkpoint layout
+	 */
+	static final int VERSION = 1;
+
+	/**
+	 * the path of the checkpoint file
+	 */
+	private final Path path;
+
+	/**
+	 * the path checkpoints are written to before replacing the checkpoint file
+	 */
+	private final Path temporary;
+
+	/**
+	 * the thread writing checkpoints, started with the first checkpoint
+	 */
+	private ExecutorService writer;
+
+	/**
+	 * the checkpoint being written, null if none
+	 */
+	private Future<?> pending;
+
+	/**
+	 * Creates checkpoints replacing the file at the given path
+	 * 
+	 * @param path
+	 *            the given path
+	 */
+	public Checkpoints(Path path) {
+		this.path = path;
+		this.temporary = path.resolveSibling(path.getFileName() + ".tmp");
+	}
+
+	/**
+	 * Creates checkpoints of the run whose results are stored in a file with
+	 * the given name, replacing the file of the same name with the extension
+	 * .ckpt
+	 * 
+	 * @param name
+	 *            the given name without extension
+	 * @return the checkpoints
+	 */
+	public static Checkpoints of(String name) {
+		return new Checkpoints(Paths.get(name + ".ckpt"));
+	}
+
+	/**
+	 * Writes the given checkpoint in the background once the previous one is
+	 * written. The given results sink is forced to disk before, so that the
+	 * checkpoint never refers to results that are lost.
+	 * 
+	 * @param checkpoint
+	 *            the given encoded checkpoint
+	 * @param results
+	 *            the sink whose state is part of the checkpoint
+	 * @throws IOException
+	 *             if errors occurred writing the previous checkpoint
+	 */
+	public void write(byte[] checkpoint, ResultsSink results) throws IOException {
+		await();
+		if (writer == null) {
+			writer = Executors.newSingleThreadExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "checkpoint-writer");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		pending = writer.submit(() -> {
+			results.force();
+			store(checkpoint);
+			return null;
+		});
+	}
+
+	/**
+	 * Waits for the checkpoint being written and stops the background thread
+	 * 
+	 * @throws IOException
+	 *             if errors occurred writing the checkpoint
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			await();
+		} finally {
+			if (writer != null) {
+				writer.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * Writes the header of a checkpoint of a run with the given parameters to
+	 * the given output
+	 * 
+	 * @param out
+	 *            the given output
+	 * @param parameters
+	 *            the given parameters
+	 * @throws IOException
+	 *             if errors occur writing the output
+	 */
+	static void writeHeader(DataOutput out, Parameters parameters) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		String[] arguments = parameters.arguments();
+		out.writeInt(arguments.length);
+		for (String argument : arguments) {
+			out.writeUTF(argument);
+		}
+	}
+
+	/**
+	 * Reads the checkpoint file at the given path into memory
+	 * 
+	 * @param path
+	 *            the given path
+	 * @return the checkpoint, positioned at the parameters of the run
+	 * @throws IOException
+	 *             if errors occur reading the file or it is no checkpoint
+	 */
+	public static DataInputStream open(Path path) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(path)));
+		if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+			throw new IOException(path + " is no checkpoint of version " + VERSION);
+		}
+		return in;
+	}
+
+	/**
+	 * Reads the parameters of the run a checkpoint belongs to
+	 * 
+	 * @param in
+	 *            the checkpoint as returned by {@link #open(Path)}
+	 * @return the parameters
+	 * @throws IOException
+	 *             if errors occur reading the checkpoint
+	 */
+	public static Parameters readParameters(DataInput in) throws IOException {
+		String[] arguments = new String[in.readInt()];
+		for (int i = 0; i < arguments.length; i++) {
+			arguments[i] = in.readUTF();
+		}
+		return Parameters.parse(arguments);
+	}
+
+	/**
+	 * Waits for the checkpoint being written, if any
+	 * 
+	 * @throws IOException
+	 *             if errors occurred writing the checkpoint
+	 */
+	private void await() throws IOException {
+		if (pending == null) {
+			return;
+		}
+		try {
+			pending.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while writing a checkpoint");
+		} catch (ExecutionException e) {
+			throw e.getCause() instanceof IOException ? (IOException) e.getCause()
+					: new IOException(e.getCause());
+		} finally {
+			pending = null;
+		}
+	}
+
+	/**
+	 * Stores the given checkpoint durably in the checkpoint file
+	 * 
+	 * @param checkpoint
+	 *            the given encoded checkpoint
+	 * @throws IOException
+	 *             if errors occur writing the file
+	 */
+	private void store(byte[] checkpoint) throws IOException {
+		try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer buffer = ByteBuffer.wrap(checkpoint);
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			channel.force(true);
+		}
+		Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+}
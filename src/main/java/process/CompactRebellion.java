@@ -0,0 +1,772 @@
+package process;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import world.Category;
+import world.Footprint;
+import world.SplitMix;
+import world.Stencil;
+
+/**
+ * A compact rebellion stores the state of its turtles in primitive columns
+ * indexed by turtle id instead of turtle objects. Cops have the ids 0 to
+ * cops - 1, agents the remaining ids. The occupants of each patch are kept as
+ * a linked list threaded through an id column, and every patch counts its
+ * occupants per category.
+ * 
+ * The rules are applied in the same order and with the same random draws as
+ * in a {@link Rebellion}, so both produce the same results from the same
+ * random numbers.
+ * 
+ * @author Ferdinand
+ *
+ */
+public class CompactRebellion extends Simulation {
+
+	/**
+	 * the number of categories counted per patch
+	 */
+	protected static final int CATEGORIES = Category.values().length;
+
+	/**
+	 * the offset of the cop count within a patch's counts
+	 */
+	private static final int COP = Category.COP.ordinal();
+
+	/**
+	 * the offset of the quiet agent count within a patch's counts
+	 */
+	private static final int QUIET = Category.QUIET.ordinal();
+
+	/**
+	 * the offset of the rebel count within a patch's counts
+	 */
+	protected static final int REBEL = Category.REBEL.ordinal();
+
+	/**
+	 * the offset of the jailed agent count within a patch's counts
+	 */
+	private static final int JAILED = Category.JAILED.ordinal();
+
+	/**
+	 * marks the end of a patch's list of occupants
+	 */
+	protected static final int NONE = -1;
+
+	/**
+	 * the scale of the two-dimensional square world
+	 */
+	protected final int scale;
+
+	/**
+	 * the number of cops, i.e. the first agent id
+	 */
+	protected int cops;
+
+	/**
+	 * the number of cops and agents
+	 */
+	protected int turtles;
+
+	/**
+	 * the individual risk aversion per agent
+	 */
+	private double[] riskAversion;
+
+	/**
+	 * the individual perceived hardship per agent
+	 */
+	private double[] perceivedHardship;
+
+	/**
+	 * the current jail time left per agent
+	 */
+	protected int[] jailTerm;
+
+	/**
+	 * whether an agent is rebelling
+	 */
+	private BitSet rebel;
+
+	/**
+	 * the patch per turtle, indexed by x * scale + y
+	 */
+	protected int[] position;
+
+	/**
+	 * the next occupant of the same patch per turtle
+	 */
+	protected int[] nextOccupant;
+
+	/**
+	 * the first occupant per patch
+	 */
+	protected final int[] firstOccupant;
+
+	/**
+	 * the number of occupants per patch and category, indexed by
+	 * patch * CATEGORIES + category
+	 */
+	private final int[] occupantCounts;
+
+	/**
+	 * the source of randomness of a simulation
+	 */
+	protected SplitMix random;
+
+	/**
+	 * the order in which turtles act during a tick
+	 */
+	private int[] order;
+
+	/**
+	 * the offsets of the patches within a turtle's vision
+	 */
+	protected final Stencil stencil;
+
+	/**
+	 * reusable buffer of nearby free patches
+	 */
+	private final int[] candidates;
+
+	/**
+	 * reusable buffer of the number of nearby turtles per category
+	 */
+	private final int[] nearby;
+
+	/**
+	 * Creates a new compact rebellion with the given parameters
+	 * 
+	 * @param parameters
+	 *            the parameters of the simulation run
+	 */
+	public CompactRebellion(Parameters parameters) {
+		super(parameters);
+		scale = parameters.getScale();
+		stencil = new Stencil(parameters.getVision_shape(), parameters.getVision(), scale);
+		firstOccupant = new int[scale * scale];
+		occupantCounts = new int[scale * scale * CATEGORIES];
+		candidates = new int[stencil.size()];
+		nearby = new int[CATEGORIES];
+	}
+
+	/**
+	 * Resets the simulation state, creates cops and agents and adds them to
+	 * the world
+	 */
+	@Override
+	protected void populate() {
+		random = new SplitMix(parameters.getSeed());
+		create();
+
+		// agents draw their risk aversion and perceived hardship in order of
+		// creation
+		for (int id = cops; id < turtles; id++) {
+			riskAversion[id] = random.nextDouble();
+			perceivedHardship[id] = random.nextDouble();
+		}
+
+		// assign cops, then agents to random free patches, taking the last
+		// free patch's place as the world does
+		int[] patches = new int[scale * scale];
+		for (int patch = 0; patch < patches.length; patch++) {
+			patches[patch] = patch;
+		}
+		int free = patches.length;
+		for (int id = 0; id < turtles; id++) {
+			int index = random.nextInt(free);
+			enter(id, patches[index]);
+			patches[index] = patches[--free];
+		}
+	}
+
+	/**
+	 * Creates the columns of the cops and agents and empties all patches
+	 */
+	private void create() {
+		Arrays.fill(firstOccupant, NONE);
+		Arrays.fill(occupantCounts, 0);
+
+		cops = (int) Math.floor(parameters.getInitial_cop_density() * scale * scale);
+		int agents = (int) Math.floor(parameters.getInitial_agent_density() * scale * scale);
+		turtles = cops + agents;
+
+		riskAversion = new double[turtles];
+		perceivedHardship = new double[turtles];
+		jailTerm = new int[turtles];
+		rebel = new BitSet(turtles);
+		position = new int[turtles];
+		nextOccupant = new int[turtles];
+		order = new int[turtles];
+	}
+
+	/**
+	 * Perform a simulation tick
+	 */
+	@Override
+	protected void tick() {
+		// agents followed by cops in random order; jailed agents neither move
+		// nor act, so they may be left out
+		int index = 0;
+		boolean active = parameters.getScheduling() == Scheduling.ACTIVE;
+		for (int id = cops; id < turtles; id++) {
+			if (!active || jailTerm[id] == 0) {
+				order[index++] = id;
+			}
+		}
+		for (int id = 0; id < cops; id++) {
+			order[index++] = id;
+		}
+		shuffle(order, index);
+
+		for (int i = 0; i < index; i++) {
+			int id = order[i];
+			long time = profile == null ? 0 : System.nanoTime();
+			if (id < cops) {
+				// cops always move
+				move(id);
+				if (profile != null) {
+					time = clock(Profile.Phase.MOVE, time);
+				}
+				arrest(id);
+			} else {
+				// only move if not jailed and MOVEMENT enabled
+				if (jailTerm[id] == 0 && parameters.isMovement()) {
+					move(id);
+				}
+				if (profile != null) {
+					time = clock(Profile.Phase.MOVE, time);
+				}
+				// only act if not jailed
+				if (jailTerm[id] == 0) {
+					survey(position[id], nearby);
+					surveyed();
+					setRebel(id, decide(id, nearby));
+				}
+			}
+			if (profile != null) {
+				clock(Profile.Phase.ACT, time);
+			}
+		}
+
+		if (profile == null) {
+			decreaseJailTerms();
+		} else {
+			long start = System.nanoTime();
+			decreaseJailTerms();
+			clock(Profile.Phase.RELEASE, start);
+		}
+	}
+
+	/**
+	 * Adds the time since the given time to the given phase of the profile
+	 * 
+	 * @param phase
+	 *            the given phase
+	 * @param since
+	 *            the given time as returned by {@link System#nanoTime()}
+	 * @return the current time
+	 */
+	private long clock(Profile.Phase phase, long since) {
+		long now = System.nanoTime();
+		profile.time(phase, now - since);
+		return now;
+	}
+
+	/**
+	 * Called whenever the number of occupants per category of the given patch
+	 * changes, i.e. whenever a turtle enters or leaves the patch or an
+	 * occupant changes its category
+	 * 
+	 * @param patch
+	 *            the given patch
+	 * @param previous
+	 *            the category one occupant less is counted for, NONE if a
+	 *            turtle entered the patch
+	 * @param current
+	 *            the category one occupant more is counted for, NONE if a
+	 *            turtle left the patch
+	 */
+	protected void changed(int patch, int previous, int current) {
+	}
+
+	/**
+	 * Reduces the time left in jail of all jailed agents by 1
+	 */
+	protected void decreaseJailTerms() {
+		for (int id = cops; id < turtles; id++) {
+			if (jailTerm[id] > 0) {
+				setJailTerm(id, jailTerm[id] - 1);
+				if (profile != null && jailTerm[id] == 0) {
+					profile.count(Profile.Counter.RELEASES, 1);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Counts the agents of the current simulation state. The given array is
+	 * filled with the number of quiet agents, jailed agents and rebelling
+	 * agents in that order.
+	 * 
+	 * @param census
+	 *            the array to be filled
+	 */
+	@Override
+	protected void census(int[] census) {
+		int numQuietAgents = 0;
+		int numJailedAgents = 0;
+		int numRebels = 0;
+
+		for (int id = cops; id < turtles; id++) {
+			if (rebel.get(id)) {
+				numRebels++;
+			} else if (jailTerm[id] == 0) {
+				numQuietAgents++;
+			} else {
+				numJailedAgents++;
+			}
+		}
+
+		census[0] = numQuietAgents;
+		census[1] = numJailedAgents;
+		census[2] = numRebels;
+	}
+
+	/**
+	 * Records the state of every agent of the current simulation state in
+	 * order of creation
+	 * 
+	 * @param jailTerm
+	 *            the array to be filled with the agents' jail terms
+	 * @param position
+	 *            the array to be filled with the agents' locations
+	 * @param rebel
+	 *            the array to be filled with whether the agents rebel
+	 */
+	@Override
+	protected void snapshot(int[] jailTerm, int[] position, boolean[] rebel) {
+		for (int id = cops; id < turtles; id++) {
+			jailTerm[id - cops] = this.jailTerm[id];
+			position[id - cops] = this.position[id];
+			rebel[id - cops] = this.rebel.get(id);
+		}
+	}
+
+	/**
+	 * Estimates the heap occupied by the columns of turtle state and the
+	 * occupants and counts per patch
+	 * 
+	 * @return the estimated size in bytes
+	 */
+	@Override
+	protected long footprint() {
+		return Footprint.array(double.class, riskAversion.length)
+				+ Footprint.array(double.class, perceivedHardship.length) + Footprint.array(int.class, jailTerm.length)
+				+ Footprint.bits(rebel.size()) + Footprint.array(int.class, position.length)
+				+ Footprint.array(int.class, nextOccupant.length) + Footprint.array(int.class, firstOccupant.length)
+				+ Footprint.array(int.class, occupantCounts.length) + Footprint.array(int.class, order.length)
+				+ stencil.footprint() + Footprint.array(int.class, candidates.length);
+	}
+
+	/**
+	 * Writes the state of the source of randomness, the state of every agent,
+	 * the location of every turtle and the occupants of every patch in order
+	 * of arrival to the given output
+	 * 
+	 * @param out
+	 *            the given output
+	 * @throws IOException
+	 *             if errors occur writing the output
+	 */
+	@Override
+	protected void checkpoint(DataOutput out) throws IOException {
+		out.writeLong(random.getState());
+		for (int id = cops; id < turtles; id++) {
+			out.writeDouble(riskAversion[id]);
+			out.writeDouble(perceivedHardship[id]);
+			out.writeInt(jailTerm[id]);
+			out.writeBoolean(rebel.get(id));
+		}
+		for (int id = 0; id < turtles; id++) {
+			out.writeInt(position[id]);
+		}
+		// the order of arrival decides which of several rebels on a patch a
+		// cop arrests
+		for (int patch = 0; patch < firstOccupant.length; patch++) {
+			for (int id = firstOccupant[patch]; id != NONE; id = nextOccupant[id]) {
+				out.writeInt(id);
+			}
+		}
+	}
+
+	/**
+	 * Replaces the simulation state by the one written by
+	 * {@link #checkpoint(DataOutput)}
+	 * 
+	 * @param in
+	 *            the input to read the state from
+	 * @throws IOException
+	 *             if errors occur reading the input
+	 */
+	@Override
+	protected void restore(DataInput in) throws IOException {
+		random = new SplitMix(parameters.getSeed());
+		random.setState(in.readLong());
+		create();
+
+		for (int id = cops; id < turtles; id++) {
+			riskAversion[id] = in.readDouble();
+			perceivedHardship[id] = in.readDouble();
+			jailTerm[id] = in.readInt();
+			rebel.set(id, in.readBoolean());
+		}
+		int[] patches = new int[turtles];
+		for (int id = 0; id < turtles; id++) {
+			patches[id] = in.readInt();
+		}
+		// turtles enter their patches in their order of arrival with their
+		// restored categories
+		for (int i = 0; i < turtles; i++) {
+			int id = in.readInt();
+			enter(id, patches[id]);
+		}
+	}
+
+	/**
+	 * Moves the given turtle to another random patch within its vision that is
+	 * not occupied by an active turtle. If no such patch is available, the
+	 * turtle stays on its current patch.
+	 * 
+	 * @param id
+	 *            the given turtle
+	 */
+	private void move(int id) {
+		int free = freePatches(position[id], candidates);
+		if (free > 0) {
+			relocate(id, candidates[random.nextInt(free)]);
+		}
+		if (profile != null) {
+			profile.count(Profile.Counter.PATCHES, stencil.size());
+			profile.count(Profile.Counter.MOVES, free > 0 ? 1 : 0);
+		}
+	}
+
+	/**
+	 * Collects the patches within the vision of the given centre patch that
+	 * are not occupied by an active turtle in the given buffer, excluding the
+	 * centre patch itself
+	 * 
+	 * @param centre
+	 *            the given centre patch
+	 * @param candidates
+	 *            the buffer to be filled, large enough for the whole vision
+	 * @return the number of collected patches
+	 */
+	protected int freePatches(int centre, int[] candidates) {
+		int centreX = centre / scale;
+		int centreY = centre % scale;
+
+		int free = 0;
+		for (int i = 0; i < stencil.size(); i++) {
+			int patch = stencil.cell(centreX, centreY, i);
+			if (isFree(patch)) {
+				candidates[free++] = patch;
+			}
+		}
+		return free;
+	}
+
+	/**
+	 * Returns whether the given patch is not occupied by an active turtle
+	 * 
+	 * @param patch
+	 *            the given patch
+	 * @return true if and only if only jailed agents occupy the patch, if any
+	 */
+	protected boolean isFree(int patch) {
+		int counts = patch * CATEGORIES;
+		return occupantCounts[counts + COP] == 0 && occupantCounts[counts + QUIET] == 0
+				&& occupantCounts[counts + REBEL] == 0;
+	}
+
+	/**
+	 * Determines whether the given active agent rebels on the basis of the
+	 * given numbers of nearby turtles per category
+	 * 
+	 * @param id
+	 *            the given agent
+	 * @param nearby
+	 *            the numbers of nearby turtles as counted by
+	 *            {@link #survey(int, int[])}
+	 * @return true if the agent rebels, false otherwise
+	 */
+	protected boolean decide(int id, int[] nearby) {
+		// the perceived government legitimacy, individually increased by the
+		// ratio of nearby jailed agents if enabled
+		double legitimacy = parameters.getGovernment_legitimacy();
+		if (parameters.isIndividual_legitimacy()) {
+			long nearJailedAgents = nearby[JAILED];
+			long nearAgents = nearJailedAgents + nearby[QUIET] + nearby[REBEL];
+			double increaseFactor = 0;
+			if (nearAgents != 0) {
+				increaseFactor = nearJailedAgents / nearAgents;
+			}
+			legitimacy = (1 + increaseFactor) * parameters.getGovernment_legitimacy();
+		}
+		double grievance = perceivedHardship[id] * (1 - legitimacy);
+
+		long c = nearby[COP];
+		long a = 1 + nearby[REBEL];
+		double cop_rebel_ratio = Math.floor(c / a);
+		double estimated_arrest_prob = 1 - Math.pow(2, ((-Rebellion.k) * cop_rebel_ratio));
+		double net_risk = riskAversion[id] * estimated_arrest_prob;
+
+		return grievance > (net_risk + Rebellion.threshold);
+	}
+
+	/**
+	 * Randomly selects a rebelling agent in the given cop's vision, sets the
+	 * rebel's jail time to a random value between 1 (inclusive) and
+	 * MAX_JAIL_TERM (inclusive) and moves the cop to the rebel's location
+	 * 
+	 * @param id
+	 *            the given cop
+	 */
+	private void arrest(int id) {
+		survey(position[id], nearby);
+		surveyed();
+		int nearRebels = nearby[REBEL];
+
+		if (nearRebels > 0) {
+			int suspect = nearbyRebel(position[id], random.nextInt(nearRebels));
+			setJailTerm(suspect, random.nextInt(parameters.getMax_jail_term()) + 1);
+			setRebel(suspect, false);
+			relocate(id, position[suspect]);
+			if (profile != null) {
+				profile.count(Profile.Counter.ARRESTS, 1);
+			}
+		}
+	}
+
+	/**
+	 * Counts the turtles per category within the vision of the given centre
+	 * patch into the given buffer, excluding the centre patch itself
+	 * 
+	 * @param centre
+	 *            the given centre patch
+	 * @param nearby
+	 *            the buffer to be filled, indexed by category
+	 */
+	protected void survey(int centre, int[] nearby) {
+		int centreX = centre / scale;
+		int centreY = centre % scale;
+
+		Arrays.fill(nearby, 0);
+		for (int i = 0; i < stencil.size(); i++) {
+			int counts = stencil.cell(centreX, centreY, i) * CATEGORIES;
+			for (int c = 0; c < CATEGORIES; c++) {
+				nearby[c] += occupantCounts[counts + c];
+			}
+		}
+	}
+
+	/**
+	 * Records a survey in the profile, if profiling
+	 */
+	private void surveyed() {
+		if (profile != null) {
+			profile.count(Profile.Counter.QUERIES, 1);
+			profile.count(Profile.Counter.PATCHES, surveyCost());
+		}
+	}
+
+	/**
+	 * Returns the number of patches visited by a survey
+	 * 
+	 * @return the number of patches within a turtle's vision
+	 */
+	protected int surveyCost() {
+		return stencil.size();
+	}
+
+	/**
+	 * Returns the rebel at the given index among the rebels within the vision
+	 * of the given centre patch, visiting patches and their occupants in the
+	 * same order as a neighbourhood query of a world
+	 * 
+	 * @param centre
+	 *            the given centre patch
+	 * @param index
+	 *            the index of the rebel to be returned
+	 * @return the id of the selected rebel
+	 */
+	protected int nearbyRebel(int centre, int index) {
+		int centreX = centre / scale;
+		int centreY = centre % scale;
+
+		for (int i = 0; i < stencil.size(); i++) {
+			int patch = stencil.cell(centreX, centreY, i);
+			int rebels = occupantCounts[patch * CATEGORIES + REBEL];
+			if (rebels == 0) {
+				continue;
+			}
+			if (index >= rebels) {
+				index -= rebels;
+				continue;
+			}
+			for (int id = firstOccupant[patch]; id != NONE; id = nextOccupant[id]) {
+				if (category(id) == REBEL && index-- == 0) {
+					return id;
+				}
+			}
+		}
+		return NONE;
+	}
+
+	/**
+	 * Sets whether the given agent is rebelling and updates the counts of its
+	 * patch accordingly
+	 * 
+	 * @param id
+	 *            the given agent
+	 * @param value
+	 *            whether the agent is rebelling
+	 */
+	protected void setRebel(int id, boolean value) {
+		int previous = category(id);
+		rebel.set(id, value);
+		recount(id, previous);
+	}
+
+	/**
+	 * Sets the time left in jail of the given agent and updates the counts of
+	 * its patch accordingly
+	 * 
+	 * @param id
+	 *            the given agent
+	 * @param value
+	 *            the new time left in jail
+	 */
+	protected void setJailTerm(int id, int value) {
+		int previous = category(id);
+		jailTerm[id] = value;
+		recount(id, previous);
+	}
+
+	/**
+	 * Returns the current category of the given turtle
+	 * 
+	 * @param id
+	 *            the given turtle
+	 * @return the ordinal of the turtle's category
+	 */
+	private int category(int id) {
+		if (id < cops) {
+			return COP;
+		}
+		if (jailTerm[id] > 0) {
+			return JAILED;
+		}
+		return rebel.get(id) ? REBEL : QUIET;
+	}
+
+	/**
+	 * Moves the given turtle from the given previous category to its current
+	 * one in the counts of its patch
+	 * 
+	 * @param id
+	 *            the given turtle
+	 * @param previous
+	 *            the category before a change of the turtle's state
+	 */
+	private void recount(int id, int previous) {
+		int current = category(id);
+		if (previous != current) {
+			occupantCounts[position[id] * CATEGORIES + previous]--;
+			occupantCounts[position[id] * CATEGORIES + current]++;
+			changed(position[id], previous, current);
+		}
+	}
+
+	/**
+	 * Appends the given turtle to the occupants of the given patch
+	 * 
+	 * @param id
+	 *            the given turtle
+	 * @param patch
+	 *            the given patch
+	 */
+	private void enter(int id, int patch) {
+		position[id] = patch;
+		nextOccupant[id] = NONE;
+		if (firstOccupant[patch] == NONE) {
+			firstOccupant[patch] = id;
+		} else {
+			int last = firstOccupant[patch];
+			while (nextOccupant[last] != NONE) {
+				last = nextOccupant[last];
+			}
+			nextOccupant[last] = id;
+		}
+		occupantCounts[patch * CATEGORIES + category(id)]++;
+		changed(patch, NONE, category(id));
+	}
+
+	/**
+	 * Removes the given turtle from the occupants of its patch
+	 * 
+	 * @param id
+	 *            the given turtle
+	 */
+	private void leave(int id) {
+		int patch = position[id];
+		if (firstOccupant[patch] == id) {
+			firstOccupant[patch] = nextOccupant[id];
+		} else {
+			int previous = firstOccupant[patch];
+			while (nextOccupant[previous] != id) {
+				previous = nextOccupant[previous];
+			}
+			nextOccupant[previous] = nextOccupant[id];
+		}
+		occupantCounts[patch * CATEGORIES + category(id)]--;
+		changed(patch, category(id), NONE);
+	}
+
+	/**
+	 * Moves the given turtle to the given patch
+	 * 
+	 * @param id
+	 *            the given turtle
+	 * @param patch
+	 *            the given patch
+	 */
+	protected void relocate(int id, int patch) {
+		leave(id);
+		enter(id, patch);
+	}
+
+	/**
+	 * Randomly permutes the first given number of elements of the given array
+	 * in the same way as {@link java.util.Collections#shuffle(java.util.List)}
+	 * 
+	 * @param array
+	 *            the given array
+	 * @param length
+	 *            the number of elements to be permuted
+	 */
+	private void shuffle(int[] array, int length) {
+		for (int i = length; i > 1; i--) {
+			int j = random.nextInt(i);
+			int swap = array[i - 1];
+			array[i - 1] = array[j];
+			array[j] = swap;
+		}
+	}
+
+}
@@ -0,0 +1,237 @@
+package process;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A csv sink appends results as comma-separated values to a file. Rows are
+ * encoded directly into a buffer and written through a file channel every
+ * given number of rows, whenever the buffer is full and when the sink is
+ * closed. The header has been written by the time an equilibrium is reached,
+ * so an equilibrium is recorded in a line starting with #EQUILIBRIUM after
+ * the rows.
+ * 
+ * @author Ferdinand
+ *
+ */
+public class CsvSink implements ResultsSink {
+
+	/**
+	 * the size of the buffer in bytes
+	 */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * the maximum length of a row in bytes
+	 */
+	private static final int MAX_ROW_LENGTH = 4 * 11 + 4;
+
+	/**
+	 * the path of the results file
+	 */
+	private final Path path;
+
+	/**
+	 * the channel of the results file
+	 */
+	private final FileChannel channel;
+
+	/**
+	 * the rows not written yet
+	 */
+	private final ByteBuffer buffer;
+
+	/**
+	 * the digits of a number in reverse order
+	 */
+	private final byte[] digits;
+
+	/**
+	 * the number of rows after which the buffer is written, 0 to write only
+	 * full buffers
+	 */
+	private final int flushInterval;
+
+	/**
+	 * the number of rows in the buffer
+	 */
+	private int rows;
+
+	/**
+	 * the line recording an equilibrium once reached, null before
+	 */
+	private String equilibrium;
+
+	/**
+	 * Creates a sink appending to the file at the given path
+	 * 
+	 * @param path
+	 *            the given path
+	 * @param flushInterval
+	 *            the number of rows after which results are written, 0 to
+	 *            write only full buffers
+	 * @throws IOException
+	 *             if errors occur opening the file
+	 */
+	public CsvSink(Path path, int flushInterval) throws IOException {
+		this.path = path;
+		channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.APPEND);
+		buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		digits = new byte[10];
+		this.flushInterval = flushInterval;
+	}
+
+	@Override
+	public void header(Parameters parameters) throws IOException {
+		write("TICKS,DIMENSION,VISION,MAX_JAIL_TERM,MOVEMENT,"
+				+ "INITIAL_COP_DENSITY,INITIAL_AGENT_DENSITY,"
+				+ "GOVERNMENT_LEGITIMACY,INDIVIDUAL_LEGITIMACY,SEED,VISION_SHAPE\n");
+		write(parameters.getTicks() + "," + parameters.getScale() + "," + parameters.getVision() + ","
+				+ parameters.getMax_jail_term() + "," + parameters.isMovement() + ","
+				+ parameters.getInitial_cop_density() + "," + parameters.getInitial_agent_density() + ","
+				+ parameters.getGovernment_legitimacy() + "," + parameters.isIndividual_legitimacy() + ","
+				+ parameters.getSeed() + "," + parameters.getVision_shape() + "\n");
+		write("tick,#QuietAgents,#JailedAgents,#RebellingAgents\n");
+	}
+
+	@Override
+	public void row(int tick, int quiet, int jailed, int rebels) throws IOException {
+		if (buffer.remaining() < MAX_ROW_LENGTH) {
+			flush();
+		}
+		put(tick);
+		buffer.put((byte) ',');
+		put(quiet);
+		buffer.put((byte) ',');
+		put(jailed);
+		buffer.put((byte) ',');
+		put(rebels);
+		buffer.put((byte) '\n');
+		if (++rows == flushInterval) {
+			flush();
+		}
+	}
+
+	@Override
+	public void equilibrium(int tick, Equilibrium.Reason reason, int period) throws IOException {
+		// the line follows the row of the given tick, which is still to come
+		equilibrium = "#EQUILIBRIUM," + tick + "," + reason + "," + period + "\n";
+	}
+
+	@Override
+	public void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+		rows = 0;
+	}
+
+	@Override
+	public void checkpoint(DataOutput checkpoint) throws IOException {
+		flush();
+		checkpoint.writeUTF(path.toAbsolutePath().toString());
+		checkpoint.writeLong(channel.size());
+		checkpoint.writeBoolean(equilibrium != null);
+		if (equilibrium != null) {
+			checkpoint.writeUTF(equilibrium);
+		}
+	}
+
+	@Override
+	public void force() throws IOException {
+		channel.force(false);
+	}
+
+	/**
+	 * Reopens the sink saved in the given checkpoint, truncating its file to
+	 * the length it had when the checkpoint was taken
+	 * 
+	 * @param checkpoint
+	 *            the given checkpoint, positioned at the sink's state
+	 * @param flushInterval
+	 *            the number of rows after which results are written, 0 to
+	 *            write only full buffers
+	 * @return the reopened sink
+	 * @throws IOException
+	 *             if errors occur reading the checkpoint or opening the file
+	 */
+	static CsvSink resume(DataInput checkpoint, int flushInterval) throws IOException {
+		Path path = Paths.get(checkpoint.readUTF());
+		long length = checkpoint.readLong();
+		CsvSink sink = new CsvSink(path, flushInterval);
+		try {
+			if (sink.channel.size() < length) {
+				throw new IOException(path + " is shorter than at the checkpoint");
+			}
+			sink.channel.truncate(length);
+			sink.equilibrium = checkpoint.readBoolean() ? checkpoint.readUTF() : null;
+		} catch (IOException e) {
+			sink.channel.close();
+			throw e;
+		}
+		return sink;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			if (equilibrium != null) {
+				write(equilibrium);
+			}
+			flush();
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Writes the given text, which is expected to be short
+	 * 
+	 * @param text
+	 *            the given text
+	 * @throws IOException
+	 *             if errors occur writing the file
+	 */
+	private void write(String text) throws IOException {
+		byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+		if (buffer.remaining() < bytes.length) {
+			flush();
+		}
+		buffer.put(bytes);
+	}
+
+	/**
+	 * Encodes the decimal digits of the given number into the buffer
+	 * 
+	 * @param number
+	 *            the given number
+	 */
+	private void put(int number) {
+		// work on the negative value, which also covers Integer.MIN_VALUE
+		int value = number;
+		if (value < 0) {
+			buffer.put((byte) '-');
+		} else {
+			value = -value;
+		}
+		int length = 0;
+		do {
+			digits[length++] = (byte) ('0' - value % 10);
+			value /= 10;
+		} while (value != 0);
+		while (length > 0) {
+			buffer.put(digits[--length]);
+		}
+	}
+
+}
@@ -0,0 +1,311 @@
+package process;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * An ensemble runs a given number of replicates of one configuration
+ * concurrently and summarises the number of quiet, jailed and rebelling agents
+ * of all replicates tick by tick instead of storing the results of every
+ * replicate. Every row of a replicate is added to an {@link Accumulator} per
+ * series as soon as it is recorded, so the memory of an ensemble does not
+ * depend on the number of replicates.
+ * 
+ * Parameters are declared in the same form as for a single run. Additionally,
+ * -replicates=<n> sets the number of replicates and -workers=<n> the number of
+ * concurrent runs. Replicate r runs with the configuration's seed plus r, as in
+ * a {@link Sweep}. The summary is stored in ensemble.csv with a row per tick
+ * holding the number of replicates recorded at the tick and the mean, standard
+ * deviation and 5%, 25%, 50%, 75% and 95% quantiles of each series.
+ * 
+ * @author Ferdinand
+ *
+ */
+public class Ensemble {
+
+	/**
+	 * the probabilities of the quantiles of each series
+	 */
+	private static final double[] QUANTILES = { 0.05, 0.25, 0.5, 0.75, 0.95 };
+
+	/**
+	 * the maximum number of bins of each tick's quantile sketch
+	 */
+	private static final int BINS = 256;
+
+	/**
+	 * the names of the summarised series
+	 */
+	private static final String[] SERIES = { "quiet", "jailed", "rebels" };
+
+	/**
+	 * the parameters shared by all replicates
+	 */
+	private final Parameters parameters;
+
+	/**
+	 * the accumulators of the quiet, jailed and rebelling agents
+	 */
+	private final Accumulator[] accumulators;
+
+	/**
+	 * the number of replicates that reached an equilibrium
+	 */
+	private int equilibria;
+
+	/**
+	 * Creates an empty ensemble of replicates with the given parameters
+	 * 
+	 * @param parameters
+	 *            the given parameters
+	 * @throws IllegalArgumentException
+	 *             if the parameters ask for checkpoints, which replicates do
+	 *             not write
+	 */
+	public Ensemble(Parameters parameters) {
+		if (parameters.getCheckpoint_interval() > 0) {
+			throw new IllegalArgumentException("Replicates of an ensemble are not checkpointed, so checkpoint_interval must be 0");
+		}
+		// replicates are only summarised, not snapshotted
+		this.parameters = parameters.with("snapshot_interval", "0");
+		int scale = parameters.getScale();
+		int agents = (int) Math.floor(parameters.getInitial_agent_density() * scale * scale);
+		accumulators = new Accumulator[SERIES.length];
+		for (int i = 0; i < SERIES.length; i++) {
+			accumulators[i] = new Accumulator(parameters.getTicks() + 1, agents, BINS);
+		}
+	}
+
+	/**
+	 * Main method and entry point of an ensemble run
+	 * 
+	 * @param args
+	 *            command-line arguments used to specify simulation parameters
+	 */
+	public static void main(String[] args) {
+		int replicates = 1;
+		int workers = Runtime.getRuntime().availableProcessors();
+		Parameters parameters = new Parameters();
+
+		// go through all words
+		for (int i = 0; i < args.length; i++) {
+
+			// separate each in parameter name and value
+			String[] parts = args[i].split("=");
+			String parameterName = parts[0].substring(1);
+
+			try {
+				switch (parameterName) {
+				case "replicates":
+					replicates = Integer.parseInt(parts[1]);
+					break;
+				case "workers":
+					workers = Integer.parseInt(parts[1]);
+					break;
+				default:
+					parameters = parameters.with(parameterName, parts[1]);
+				}
+			} catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+				System.out.println("The parameter " + parameterName + " you entered is invalid");
+				return;
+			}
+		}
+
+		Ensemble ensemble;
+		try {
+			ensemble = new Ensemble(parameters);
+		} catch (IllegalArgumentException e) {
+			System.out.println(e.getMessage());
+			return;
+		}
+		ensemble.run(replicates, workers);
+		try {
+			ensemble.write(Paths.get("ensemble.csv"), replicates);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Runs the given number of replicates on the given number of workers and
+	 * adds their results to the accumulators
+	 * 
+	 * @param replicates
+	 *            the given number of replicates
+	 * @param workers
+	 *            the number of concurrent runs
+	 */
+	public void run(int replicates, int workers) {
+		ExecutorService executor = Executors.newFixedThreadPool(workers);
+		try {
+			List<Future<Void>> futures = new ArrayList<Future<Void>>();
+			for (int r = 0; r < replicates; r++) {
+				futures.add(executor.submit(
+						task(parameters.with("seed", Long.toString(parameters.getSeed() + r)))));
+			}
+			for (int r = 0; r < futures.size(); r++) {
+				try {
+					futures.get(r).get();
+				} catch (ExecutionException e) {
+					System.out.println("Replicate " + r + " failed: " + e.getCause());
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Writes the parameters and the summary of every tick recorded by at least
+	 * one replicate as comma-separated values to the file at the given path,
+	 * followed by a line starting with #EQUILIBRIA with the number of
+	 * replicates that reached an equilibrium if detection is enabled
+	 * 
+	 * @param path
+	 *            the given path
+	 * @param replicates
+	 *            the number of replicates run
+	 * @throws IOException
+	 *             if errors occur writing the file
+	 */
+	public void write(Path path, int replicates) throws IOException {
+		try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(path, StandardCharsets.US_ASCII))) {
+			out.print("TICKS,DIMENSION,VISION,MAX_JAIL_TERM,MOVEMENT,"
+					+ "INITIAL_COP_DENSITY,INITIAL_AGENT_DENSITY,"
+					+ "GOVERNMENT_LEGITIMACY,INDIVIDUAL_LEGITIMACY,SEED,VISION_SHAPE,REPLICATES\n");
+			out.print(parameters.getTicks() + "," + parameters.getScale() + "," + parameters.getVision() + ","
+					+ parameters.getMax_jail_term() + "," + parameters.isMovement() + ","
+					+ parameters.getInitial_cop_density() + "," + parameters.getInitial_agent_density() + ","
+					+ parameters.getGovernment_legitimacy() + "," + parameters.isIndividual_legitimacy()
+					+ "," + parameters.getSeed() + "," + parameters.getVision_shape() + "," + replicates
+					+ "\n");
+
+			out.print("tick,replicates");
+			for (String series : SERIES) {
+				out.print("," + series + "_mean," + series + "_sd");
+				for (double p : QUANTILES) {
+					out.print("," + series + "_q" + p);
+				}
+			}
+			out.print("\n");
+
+			for (int tick = 0; tick <= parameters.getTicks(); tick++) {
+				long count = accumulators[0].count(tick);
+				if (count == 0) {
+					continue;
+				}
+				out.print(tick + "," + count);
+				for (Accumulator accumulator : accumulators) {
+					out.print("," + accumulator.mean(tick) + "," + Math.sqrt(accumulator.variance(tick)));
+					for (double p : QUANTILES) {
+						out.print("," + accumulator.quantile(tick, p));
+					}
+				}
+				out.print("\n");
+			}
+
+			if (parameters.getEquilibrium_window() > 0) {
+				out.print("#EQUILIBRIA," + equilibria + "\n");
+			}
+		}
+	}
+
+	/**
+	 * Returns a task that runs a replicate with the given parameters
+	 * 
+	 * @param parameters
+	 *            the given parameters
+	 * @return the task
+	 */
+	private Callable<Void> task(Parameters parameters) {
+		return () -> {
+			try (Simulation simulation = Simulation.create(parameters); ResultsSink results = new Replicate()) {
+				simulation.setup(results);
+				simulation.go(parameters.getTicks());
+			}
+			return null;
+		};
+	}
+
+	/**
+	 * Adds the counts of a replicate's tick to the accumulators
+	 * 
+	 * @param tick
+	 *            the given tick
+	 * @param quiet
+	 *            the number of quiet agents
+	 * @param jailed
+	 *            the number of jailed agents
+	 * @param rebels
+	 *            the number of rebelling agents
+	 */
+	private synchronized void add(int tick, int quiet, int jailed, int rebels) {
+		accumulators[0].add(tick, quiet);
+		accumulators[1].add(tick, jailed);
+		accumulators[2].add(tick, rebels);
+	}
+
+	/**
+	 * Counts a replicate that reached an equilibrium
+	 */
+	private synchronized void equilibrium() {
+		equilibria++;
+	}
+
+	/**
+	 * A replicate passes the results of one run to the accumulators of the
+	 * ensemble instead of storing them
+	 */
+	private class Replicate implements ResultsSink {
+
+		@Override
+		public void header(Parameters parameters) {
+		}
+
+		@Override
+		public void row(int tick, int quiet, int jailed, int rebels) {
+			add(tick, quiet, jailed, rebels);
+		}
+
+		@Override
+		public void equilibrium(int tick, Equilibrium.Reason reason, int period) {
+			Ensemble.this.equilibrium();
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		/**
+		 * Writes nothing, as replicates are set up without checkpoints and
+		 * the ensemble rejects a checkpoint interval, so this is never called
+		 */
+		@Override
+		public void checkpoint(DataOutput checkpoint) {
+		}
+
+		@Override
+		public void force() {
+		}
+
+		@Override
+		public void close() {
+		}
+
+	}
+
+}
@@ -0,0 +1,296 @@
+package process;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * An equilibrium detector watches the number of rebels over the last two
+ * windows of ticks. The series is considered stationary once the mean and
+ * the standard deviation of both windows differ by no more than a given
+ * fraction of the number of agents. A stationary series is further examined
+ * for cycles: the first local maximum of its autocorrelation over lags of at
+ * least two ticks is taken as its period if the correlation is strong
+ * enough.
+ * 
+ * Sums over both windows are updated as values enter and leave them, so
+ * observing a tick takes constant time and allocates nothing.
+ * 
+ * @author Ferdinand
+ *
+ */
+public class Equilibrium {
+
+	/**
+	 * The kind of equilibrium a series has reached
+	 */
+	public enum Reason {
+
+		/**
+		 * the series fluctuates around a constant mean, if at all
+		 */
+		STATIONARY,
+
+		/**
+		 * the series repeats with a period
+		 */
+		PERIODIC
+
+	}
+
+	/**
+	 * the autocorrelation a lag needs to be taken as the period
+	 */
+	private static final double PERIODIC_CORRELATION = 0.5;
+
+	/**
+	 * the number of ticks of each window
+	 */
+	private final int window;
+
+	/**
+	 * the fraction of the number of agents by which the windows' means and
+	 * standard deviations may differ
+	 */
+	private final double tolerance;
+
+	/**
+	 * the values of both windows in a ring buffer
+	 */
+	private final int[] values;
+
+	/**
+	 * the number of values observed
+	 */
+	private long observed;
+
+	/**
+	 * the sum of the values of the older window
+	 */
+	private long olderSum;
+
+	/**
+	 * the sum of the squared values of the older window
+	 */
+	private long olderSquares;
+
+	/**
+	 * the sum of the values of the newer window
+	 */
+	private long newerSum;
+
+	/**
+	 * the sum of the squared values of the newer window
+	 */
+	private long newerSquares;
+
+	/**
+	 * the kind of equilibrium reached, null if none
+	 */
+	private Reason reason;
+
+	/**
+	 * the period of a periodic equilibrium, 0 otherwise
+	 */
+	private int period;
+
+	/**
+	 * Creates a detector comparing windows of the given number of ticks with
+	 * the given tolerance
+	 * 
+	 * @param window
+	 *            the given number of ticks, at least 2
+	 * @param tolerance
+	 *            the fraction of the number of agents by which the windows'
+	 *            means and standard deviations may differ
+	 */
+	public Equilibrium(int window, double tolerance) {
+		if (window < 2) {
+			throw new IllegalArgumentException("Window must span at least 2 ticks: " + window);
+		}
+		this.window = window;
+		this.tolerance = tolerance;
+		this.values = new int[2 * window];
+	}
+
+	/**
+	 * Observes the number of rebels of the next tick and returns whether an
+	 * equilibrium is reached
+	 * 
+	 * @param rebels
+	 *            the number of rebels
+	 * @param agents
+	 *            the number of agents
+	 * @return true if and only if an equilibrium is reached with this or an
+	 *         earlier tick
+	 */
+	public boolean observe(int rebels, int agents) {
+		if (reason != null) {
+			return true;
+		}
+
+		// the oldest value leaves the older window, the oldest value of the
+		// newer window moves to the older one and the given value enters
+		int slot = (int) (observed % values.length);
+		if (observed >= values.length) {
+			long oldest = values[slot];
+			olderSum -= oldest;
+			olderSquares -= oldest * oldest;
+		}
+		if (observed >= window) {
+			long moved = values[(int) ((observed - window) % values.length)];
+			newerSum -= moved;
+			newerSquares -= moved * moved;
+			olderSum += moved;
+			olderSquares += moved * moved;
+		}
+		values[slot] = rebels;
+		newerSum += rebels;
+		newerSquares += (long) rebels * rebels;
+		observed++;
+
+		if (observed < values.length) {
+			return false;
+		}
+
+		double bound = tolerance * agents;
+		double olderMean = (double) olderSum / window;
+		double newerMean = (double) newerSum / window;
+		double olderDeviation = deviation(olderSum, olderSquares);
+		double newerDeviation = deviation(newerSum, newerSquares);
+		if (Math.abs(olderMean - newerMean) > bound
+				|| Math.abs(olderDeviation - newerDeviation) > bound) {
+			return false;
+		}
+
+		period = Math.max(olderDeviation, newerDeviation) > bound ? period() : 0;
+		reason = period > 0 ? Reason.PERIODIC : Reason.STATIONARY;
+		return true;
+	}
+
+	/**
+	 * @return the kind of equilibrium reached, null if none
+	 */
+	public Reason getReason() {
+		return reason;
+	}
+
+	/**
+	 * @return the period of a periodic equilibrium, 0 otherwise
+	 */
+	public int getPeriod() {
+		return period;
+	}
+
+	/**
+	 * Writes the observed values of both windows and the equilibrium reached,
+	 * if any, to the given output
+	 * 
+	 * @param out
+	 *            the given output
+	 * @throws IOException
+	 *             if errors occur writing the output
+	 */
+	public void checkpoint(DataOutput out) throws IOException {
+		out.writeLong(observed);
+		for (int value : values) {
+			out.writeInt(value);
+		}
+		out.writeLong(olderSum);
+		out.writeLong(olderSquares);
+		out.writeLong(newerSum);
+		out.writeLong(newerSquares);
+		out.writeInt(reason == null ? -1 : reason.ordinal());
+		out.writeInt(period);
+	}
+
+	/**
+	 * Replaces the state of this detector by the one written by
+	 * {@link #checkpoint(DataOutput)} of a detector with the same window
+	 * 
+	 * @param in
+	 *            the input to read the state from
+	 * @throws IOException
+	 *             if errors occur reading the input
+	 */
+	public void restore(DataInput in) throws IOException {
+		observed = in.readLong();
+		for (int i = 0; i < values.length; i++) {
+			values[i] = in.readInt();
+		}
+		olderSum = in.readLong();
+		olderSquares = in.readLong();
+		newerSum = in.readLong();
+		newerSquares = in.readLong();
+		int ordinal = in.readInt();
+		reason = ordinal < 0 ? null : Reason.values()[ordinal];
+		period = in.readInt();
+	}
+
+	/**
+	 * Returns the standard deviation of a window with the given sums
+	 * 
+	 * @param sum
+	 *            the sum of the window's values
+	 * @param squares
+	 *            the sum of the window's squared values
+	 * @return the standard deviation
+	 */
+	private double deviation(long sum, long squares) {
+		double mean = (double) sum / window;
+		return Math.sqrt(Math.max((double) squares / window - mean * mean, 0));
+	}
+
+	/**
+	 * Returns the first lag of at least 2 ticks at which the autocorrelation
+	 * of both windows has a local maximum of at least
+	 * {@value #PERIODIC_CORRELATION}
+	 * 
+	 * @return the lag, or 0 if there is none
+	 */
+	private int period() {
+		double mean = (double) (olderSum + newerSum) / values.length;
+		double variance = 0;
+		for (int value : values) {
+			variance += (value - mean) * (value - mean);
+		}
+		if (variance == 0) {
+			return 0;
+		}
+
+		double previous = autocorrelation(1, mean, variance);
+		double current = autocorrelation(2, mean, variance);
+		for (int lag = 2; lag < window; lag++) {
+			double next = autocorrelation(lag + 1, mean, variance);
+			if (current >= PERIODIC_CORRELATION && current > previous && current >= next) {
+				return lag;
+			}
+			previous = current;
+			current = next;
+		}
+		return 0;
+	}
+
+	/**
+	 * Returns the autocorrelation of both windows at the given lag
+	 * 
+	 * @param lag
+	 *            the given lag
+	 * @param mean
+	 *            the mean of both windows
+	 * @param variance
+	 *            the sum of the squared deviations of both windows
+	 * @return the autocorrelation
+	 */
+	private double autocorrelation(int lag, double mean, double variance) {
+		// the values in chronological order start after the newest one
+		int start = (int) (observed % values.length);
+		double sum = 0;
+		for (int i = lag; i < values.length; i++) {
+			sum += (values[(start + i) % values.length] - mean)
+					* (values[(start + i - lag) % values.length] - mean);
+		}
+		return sum / variance;
+	}
+
+}
@@ -0,0 +1,141 @@
+package process;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import world.Footprint;
+
+/**
+ * An incremental rebellion keeps the number of turtles per category within
+ * the vision of every patch up to date instead of counting them whenever an
+ * agent acts. Whenever the counts of a patch change, the change is added to
+ * the counts of every patch that sees it. Vision is symmetric, so these are
+ * the patches within the vision of the changed patch. Agents decide and cops
+ * look for rebels on the basis of the counts of their patch in constant time.
+ * 
+ * Changes are rare compared to decisions: cops move and arrest, and some
+ * agents start or stop rebelling or are released, while every active agent
+ * decides in every tick. Moving agents cause changes as well, so the engine
+ * gains most in worlds without MOVEMENT. Turtles are shuffled and act exactly
+ * as in a {@link CompactRebellion}, so both produce the same results from the
+ * same random numbers.
+ * 
+ * @author Ferdinand
+ *
+ */
+public class IncrementalRebellion extends CompactRebellion {
+
+	/**
+	 * the number of turtles within the vision of each patch per category,
+	 * indexed by patch * CATEGORIES + category
+	 */
+	private final int[] nearbyCounts;
+
+	/**
+	 * Creates a new incremental rebellion with the given parameters
+	 * 
+	 * @param parameters
+	 *            the parameters of the simulation run
+	 */
+	public IncrementalRebellion(Parameters parameters) {
+		super(parameters);
+		nearbyCounts = new int[scale * scale * CATEGORIES];
+	}
+
+	/**
+	 * Resets the simulation state, creates cops and agents and adds them to
+	 * the world
+	 */
+	@Override
+	protected void populate() {
+		// the counts are built up while turtles enter the world
+		Arrays.fill(nearbyCounts, 0);
+		super.populate();
+	}
+
+	/**
+	 * Replaces the simulation state by the one written by
+	 * {@link #checkpoint(java.io.DataOutput)}
+	 * 
+	 * @param in
+	 *            the input to read the state from
+	 * @throws IOException
+	 *             if errors occur reading the input
+	 */
+	@Override
+	protected void restore(DataInput in) throws IOException {
+		// the counts are built up while turtles reenter the world
+		Arrays.fill(nearbyCounts, 0);
+		super.restore(in);
+	}
+
+	/**
+	 * Estimates the heap occupied by the columns of turtle state, the occupants
+	 * and counts per patch and the counts within the vision of every patch
+	 * 
+	 * @return the estimated size in bytes
+	 */
+	@Override
+	protected long footprint() {
+		return super.footprint() + Footprint.array(int.class, nearbyCounts.length);
+	}
+
+	/**
+	 * Copies the kept counts of the turtles per category within the vision of
+	 * the given centre patch into the given buffer
+	 * 
+	 * @param centre
+	 *            the given centre patch
+	 * @param nearby
+	 *            the buffer to be filled, indexed by category
+	 */
+	@Override
+	protected void survey(int centre, int[] nearby) {
+		System.arraycopy(nearbyCounts, centre * CATEGORIES, nearby, 0, CATEGORIES);
+	}
+
+	/**
+	 * Adds the given change of the counts of the given patch to the counts of
+	 * every patch that sees it
+	 * 
+	 * @param patch
+	 *            the given patch
+	 * @param previous
+	 *            the category one occupant less is counted for, NONE if a
+	 *            turtle entered the patch
+	 * @param current
+	 *            the category one occupant more is counted for, NONE if a
+	 *            turtle left the patch
+	 */
+	@Override
+	protected void changed(int patch, int previous, int current) {
+		int centreX = patch / scale;
+		int centreY = patch % scale;
+
+		if (profile != null) {
+			profile.count(Profile.Counter.PATCHES, stencil.size());
+		}
+		for (int i = 0; i < stencil.size(); i++) {
+			int counts = stencil.cell(centreX, centreY, i) * CATEGORIES;
+			if (previous != NONE) {
+				nearbyCounts[counts + previous]--;
+			}
+			if (current != NONE) {
+				nearbyCounts[counts + current]++;
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of patches visited by a survey, which only reads
+	 * the counts of the surveyed patch
+	 * 
+	 * @return 0
+	 */
+	@Override
+	protected int surveyCost() {
+		return 0;
+	}
+
+}
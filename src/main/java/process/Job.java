@@ -0,0 +1,296 @@
+package process;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+
+/**
+ * A job is a simulation run submitted to a {@link Server}. It is queued until
+ * a worker runs it and stores its results in its own directory. A job can be
+ * cancelled while queued or running, in which case it stops after the current
+ * tick.
+ * 
+ * @author Ferdinand
+ *
+ */
+class Job implements Runnable {
+
+	/**
+	 * The states of a job
+	 */
+	enum Status {
+
+		/**
+		 * waiting for a worker
+		 */
+		QUEUED,
+
+		/**
+		 * being run by a worker
+		 */
+		RUNNING,
+
+		/**
+		 * run completely, its results are stored
+		 */
+		DONE,
+
+		/**
+		 * aborted by an error
+		 */
+		FAILED,
+
+		/**
+		 * cancelled before being run completely
+		 */
+		CANCELLED
+
+	}
+
+	/**
+	 * the number of the job
+	 */
+	private final int id;
+
+	/**
+	 * the parameters of the run
+	 */
+	private final Parameters parameters;
+
+	/**
+	 * the directory the results are stored in
+	 */
+	private final Path directory;
+
+	/**
+	 * signalled once the job is done, failed or cancelled
+	 */
+	private final CountDownLatch finished;
+
+	/**
+	 * the state of the job
+	 */
+	private volatile Status status;
+
+	/**
+	 * the last tick recorded
+	 */
+	private volatile int tick;
+
+	/**
+	 * the error the job failed with, null if none
+	 */
+	private volatile String error;
+
+	/**
+	 * whether the job has been cancelled
+	 */
+	private volatile boolean cancelled;
+
+	/**
+	 * the pending execution of the job, null until submitted
+	 */
+	private Future<?> future;
+
+	/**
+	 * Creates a queued job running a simulation with the given parameters and
+	 * storing its results in the given directory
+	 * 
+	 * @param id
+	 *            the number of the job
+	 * @param parameters
+	 *            the given parameters
+	 * @param directory
+	 *            the given directory
+	 */
+	Job(int id, Parameters parameters, Path directory) {
+		this.id = id;
+		this.parameters = parameters;
+		this.directory = directory;
+		this.finished = new CountDownLatch(1);
+		this.status = Status.QUEUED;
+		this.tick = -1;
+	}
+
+	/**
+	 * Runs the simulation unless cancelled while queued
+	 */
+	@Override
+	public void run() {
+		if (cancelled) {
+			status = Status.CANCELLED;
+			finished.countDown();
+			return;
+		}
+		status = Status.RUNNING;
+		try {
+			Files.createDirectories(directory);
+			// the sinks append to existing files, e.g. of a previous server
+			Files.deleteIfExists(getResults());
+			try (Simulation simulation = Simulation.create(parameters);
+					ResultsSink results = new Progress(
+							ResultsSink.open(parameters, directory.resolve("results").toString()))) {
+				simulation.setup(results);
+				simulation.go(parameters.getTicks());
+			}
+			status = Status.DONE;
+		} catch (IOException | RuntimeException e) {
+			if (cancelled) {
+				status = Status.CANCELLED;
+			} else {
+				error = e.toString();
+				status = Status.FAILED;
+			}
+		} finally {
+			finished.countDown();
+		}
+	}
+
+	/**
+	 * Cancels the job. A queued job is withdrawn at once, a running one stops
+	 * after its current tick.
+	 * 
+	 * @return whether the job had not finished yet
+	 */
+	synchronized boolean cancel() {
+		if (finished.getCount() == 0) {
+			return false;
+		}
+		cancelled = true;
+		if (future != null && future.cancel(false)) {
+			status = Status.CANCELLED;
+			finished.countDown();
+		}
+		return true;
+	}
+
+	/**
+	 * Waits until the job is done, failed or cancelled
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	void await() throws InterruptedException {
+		finished.await();
+	}
+
+	/**
+	 * @param future
+	 *            the pending execution of the job
+	 */
+	synchronized void setFuture(Future<?> future) {
+		this.future = future;
+	}
+
+	/**
+	 * @return the number of the job
+	 */
+	int getId() {
+		return id;
+	}
+
+	/**
+	 * @return the path of the results file
+	 */
+	Path getResults() {
+		return directory.resolve("results." + ("binary".equals(parameters.getFormat()) ? "bin" : "csv"));
+	}
+
+	/**
+	 * @return the state of the job
+	 */
+	Status getStatus() {
+		return status;
+	}
+
+	/**
+	 * Returns the state of the job as a JSON object
+	 * 
+	 * @return the JSON object
+	 */
+	String toJson() {
+		StringBuilder json = new StringBuilder();
+		json.append("{\"id\":").append(id);
+		json.append(",\"status\":\"").append(status).append('"');
+		json.append(",\"tick\":").append(tick);
+		json.append(",\"ticks\":").append(parameters.getTicks());
+		json.append(",\"seed\":").append(parameters.getSeed());
+		json.append(",\"directory\":").append(Server.quote(directory.toString()));
+		if (error != null) {
+			json.append(",\"error\":").append(Server.quote(error));
+		}
+		return json.append('}').toString();
+	}
+
+	/**
+	 * A progress sink passes the results of the job to the sink storing them,
+	 * records the last tick and stops the run once the job is cancelled
+	 */
+	private class Progress implements ResultsSink {
+
+		/**
+		 * the sink storing the results
+		 */
+		private final ResultsSink results;
+
+		/**
+		 * Creates a progress sink passing results to the given sink
+		 * 
+		 * @param results
+		 *            the given sink
+		 */
+		Progress(ResultsSink results) {
+			this.results = results;
+		}
+
+		@Override
+		public void header(Parameters parameters) throws IOException {
+			results.header(parameters);
+		}
+
+		@Override
+		public void row(int tick, int quiet, int jailed, int rebels) throws IOException {
+			if (cancelled) {
+				throw new InterruptedIOException("Job " + id + " cancelled at tick " + tick);
+			}
+			results.row(tick, quiet, jailed, rebels);
+			Job.this.tick = tick;
+		}
+
+		@Override
+		public void snapshot(int tick, int[] jailTerm, int[] position, boolean[] rebel) throws IOException {
+			results.snapshot(tick, jailTerm, position, rebel);
+		}
+
+		@Override
+		public void equilibrium(int tick, Equilibrium.Reason reason, int period) throws IOException {
+			results.equilibrium(tick, reason, period);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			results.flush();
+		}
+
+		@Override
+		public void checkpoint(DataOutput checkpoint) throws IOException {
+			results.checkpoint(checkpoint);
+		}
+
+		@Override
+		public void force() throws IOException {
+			results.force();
+		}
+
+		@Override
+		public void close() throws IOException {
+			results.close();
+		}
+
+	}
+
+}
@@ -0,0 +1,245 @@
+package process;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Metrics publish the progress of a running simulation as a management bean
+ * named logobellion:type=Simulation,run=<n>,seed=<seed>, where n numbers the
+ * runs of the JVM, so that concurrent runs of a sweep or an ensemble are told
+ * apart. The bean is registered while the run ticks and can be read with
+ * JConsole or scraped remotely if the JVM is started with the
+ * com.sun.management.jmxremote options.
+ * 
+ * The ticking thread records every tick, whereas management clients read
+ * from their own threads, so all access is synchronized. As recording takes
+ * one uncontended lock per tick, the overhead does not depend on the size of
+ * the world.
+ * 
+ * @author Ferdinand
+ *
+ */
+public class Metrics implements MetricsMXBean {
+
+	/**
+	 * the number of bins of the tick duration histogram, each one but the
+	 * first and the last covering twice the durations of the previous
+	 */
+	private static final int BINS = 32;
+
+	/**
+	 * the number of runs that published metrics
+	 */
+	private static final AtomicInteger RUNS = new AtomicInteger();
+
+	/**
+	 * the name of the bean
+	 */
+	private final ObjectName name;
+
+	/**
+	 * the number of ticks of the run
+	 */
+	private int ticks;
+
+	/**
+	 * the last tick completed
+	 */
+	private int tick;
+
+	/**
+	 * the tick the run started or resumed at
+	 */
+	private int firstTick;
+
+	/**
+	 * the time the run started or resumed at in nanoseconds
+	 */
+	private long startTime;
+
+	/**
+	 * the time the last tick completed at in nanoseconds
+	 */
+	private long lastTime;
+
+	/**
+	 * the number of quiet, jailed and rebelling agents after the last tick
+	 */
+	private final int[] census;
+
+	/**
+	 * the number of agents arrested in the last tick
+	 */
+	private long arrests;
+
+	/**
+	 * the number of agents arrested since the run started or resumed
+	 */
+	private long totalArrests;
+
+	/**
+	 * the estimated heap occupied by the world and the turtles in bytes
+	 */
+	private long worldBytes;
+
+	/**
+	 * the number of ticks per bin of durations
+	 */
+	private final long[] durations;
+
+	/**
+	 * Creates the metrics of a run with the given parameters
+	 * 
+	 * @param parameters
+	 *            the given parameters
+	 */
+	public Metrics(Parameters parameters) {
+		try {
+			name = new ObjectName("logobellion:type=Simulation,run=" + RUNS.incrementAndGet() + ",seed="
+					+ parameters.getSeed());
+		} catch (JMException e) {
+			throw new IllegalArgumentException(e);
+		}
+		census = new int[3];
+		durations = new long[BINS];
+	}
+
+	/**
+	 * Starts or resumes a run at the given tick and publishes the metrics
+	 * 
+	 * @param tick
+	 *            the given tick
+	 * @param ticks
+	 *            the number of ticks of the run
+	 * @param worldBytes
+	 *            the estimated heap occupied by the world and the turtles
+	 */
+	public void start(int tick, int ticks, long worldBytes) {
+		synchronized (this) {
+			this.tick = tick;
+			this.ticks = ticks;
+			this.worldBytes = worldBytes;
+			firstTick = tick;
+			startTime = System.nanoTime();
+			lastTime = startTime;
+			totalArrests = 0;
+		}
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			if (!server.isRegistered(name)) {
+				server.registerMBean(this, name);
+			}
+		} catch (JMException e) {
+			System.out.println("The metrics could not be published: " + e);
+		}
+	}
+
+	/**
+	 * Records a completed tick
+	 * 
+	 * @param tick
+	 *            the tick
+	 * @param nanos
+	 *            the duration of the tick in nanoseconds
+	 * @param census
+	 *            the number of quiet, jailed and rebelling agents after the
+	 *            tick
+	 * @param arrests
+	 *            the number of agents arrested in the tick
+	 */
+	public synchronized void record(int tick, long nanos, int[] census, long arrests) {
+		this.tick = tick;
+		lastTime = System.nanoTime();
+		System.arraycopy(census, 0, this.census, 0, this.census.length);
+		this.arrests = arrests;
+		totalArrests += arrests;
+		// bin 0 holds durations below 1 microsecond, bin i below 2^i
+		durations[Math.min(Long.SIZE - Long.numberOfLeadingZeros(nanos / 1000), BINS - 1)]++;
+	}
+
+	/**
+	 * Withdraws the published metrics at the end of a run
+	 */
+	public void stop() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if (server.isRegistered(name)) {
+				server.unregisterMBean(name);
+			}
+		} catch (JMException e) {
+			System.out.println("The metrics could not be withdrawn: " + e);
+		}
+	}
+
+	/**
+	 * @return the name of the bean
+	 */
+	public ObjectName getName() {
+		return name;
+	}
+
+	@Override
+	public synchronized int getTick() {
+		return tick;
+	}
+
+	@Override
+	public synchronized int getTicks() {
+		return ticks;
+	}
+
+	@Override
+	public synchronized double getTicksPerSecond() {
+		return lastTime > startTime ? (tick - firstTick) * 1e9 / (lastTime - startTime) : 0;
+	}
+
+	@Override
+	public synchronized int getQuietAgents() {
+		return census[0];
+	}
+
+	@Override
+	public synchronized int getJailedAgents() {
+		return census[1];
+	}
+
+	@Override
+	public synchronized int getRebellingAgents() {
+		return census[2];
+	}
+
+	@Override
+	public synchronized long getArrests() {
+		return arrests;
+	}
+
+	@Override
+	public synchronized double getArrestsPerTick() {
+		return tick > firstTick ? (double) totalArrests / (tick - firstTick) : 0;
+	}
+
+	@Override
+	public synchronized long getWorldBytes() {
+		return worldBytes;
+	}
+
+	@Override
+	public long[] getTickDurationBounds() {
+		long[] bounds = new long[BINS];
+		for (int i = 0; i < BINS - 1; i++) {
+			bounds[i] = 1L << i;
+		}
+		bounds[BINS - 1] = Long.MAX_VALUE;
+		return bounds;
+	}
+
+	@Override
+	public synchronized long[] getTickDurations() {
+		return durations.clone();
+	}
+
+}
@@ -0,0 +1,72 @@
+package process;
+
+/**
+ * The management interface of the {@link Metrics} of a running simulation,
+ * published to the platform MBean server, e.g. for JConsole or a JMX
+ * exporter of a dashboard
+ * 
+ * @author Ferdinand
+ *
+ */
+public interface MetricsMXBean {
+
+	/**
+	 * @return the last tick completed
+	 */
+	int getTick();
+
+	/**
+	 * @return the number of ticks of the run
+	 */
+	int getTicks();
+
+	/**
+	 * @return the number of ticks completed per second since the run started
+	 *         or resumed
+	 */
+	double getTicksPerSecond();
+
+	/**
+	 * @return the number of quiet agents after the last tick
+	 */
+	int getQuietAgents();
+
+	/**
+	 * @return the number of jailed agents after the last tick
+	 */
+	int getJailedAgents();
+
+	/**
+	 * @return the number of rebelling agents after the last tick
+	 */
+	int getRebellingAgents();
+
+	/**
+	 * @return the number of agents arrested in the last tick
+	 */
+	long getArrests();
+
+	/**
+	 * @return the mean number of agents arrested per tick since the run
+	 *         started or resumed
+	 */
+	double getArrestsPerTick();
+
+	/**
+	 * @return the estimated heap occupied by the world and the turtles in
+	 *         bytes
+	 */
+	long getWorldBytes();
+
+	/**
+	 * @return the exclusive upper bounds of the bins of the tick duration
+	 *         histogram in microseconds
+	 */
+	long[] getTickDurationBounds();
+
+	/**
+	 * @return the number of ticks per bin of the tick duration histogram
+	 */
+	long[] getTickDurations();
+
+}
@@ -1,50 +1,565 @@
 package process;
 
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import world.VisionShape;
+
 /**
- * This class contains all external parameters that influence the programs
- * execution. They can be specified as parameters on the command console.
- * 
+ * This class contains all external parameters that influence a simulation
+ * run. They can be specified as parameters on the command console. Parameters
+ * are immutable, so that every run can be given its own configuration.
+ *
  * @author Ferdinand
  *
  */
-public class Parameters {
+public final class Parameters {
 
 	/**
 	 * the initial cop density in the world
 	 */
-	public static double INITIAL_COP_DENSITY = 0.04;
+	private double initial_cop_density = 0.04;
 	/**
 	 * the initial agent density in the world
 	 */
-	public static double INITIAL_AGENT_DENSITY = 0.7;
+	private double initial_agent_density = 0.7;
 	/**
 	 * a turtle's vision
 	 */
-	public static int VISION = 7;
+	private int vision = 7;
+	/**
+	 * the shape of a turtle's field of vision
+	 */
+	private VisionShape vision_shape = VisionShape.SQUARE;
 	/**
 	 * the initial government legitimacy perceived by every agent
 	 */
-	public static double GOVERNMENT_LEGITIMACY = 0.82;
+	private double government_legitimacy = 0.82;
 	/**
 	 * The maximum jail time, a rebelling agent will be sentenced to
 	 */
-	public static int MAX_JAIL_TERM = 30;
+	private int max_jail_term = 30;
 	/**
 	 * whether agents can move or not
 	 */
-	public static boolean MOVEMENT = false;
+	private boolean movement = false;
 	/**
 	 * EXTENSION whether the perceived government legitimacy is calculated for
 	 * each agent individually or not
 	 */
-	public static boolean INDIVIDUAL_LEGITIMACY = false;
+	private boolean individual_legitimacy = false;
 	/**
 	 * the scale of the two-dimensional square world
 	 */
-	public static int SCALE = 40;
+	private int scale = 40;
 	/**
 	 * the number of ticks to run this simulation for
 	 */
-	public static int TICKS = 100;
+	private int ticks = 100;
+	/**
+	 * the seed of all random numbers of a simulation, random unless specified
+	 */
+	private long seed = new SplittableRandom().nextLong();
+	/**
+	 * which turtles are shuffled and visited during a tick
+	 */
+	private Scheduling scheduling = Scheduling.ALL;
+	/**
+	 * whether nearby entities are counted with a Fenwick tree index instead of
+	 * scanning the nearby patches, which pays off for visions of about 5 and
+	 * more
+	 */
+	private boolean counting_index = false;
+	/**
+	 * whether the object-based engine's world keeps its patches in flat
+	 * primitive arrays instead of patch objects
+	 */
+	private boolean flat_world = false;
+	/**
+	 * the file the object-based engine's world is mapped to outside the heap,
+	 * reusing the population stored in it if it matches, so that runs of other
+	 * populations must not share it at the same time; empty for a world on the
+	 * heap
+	 */
+	private String world_file = "";
+	/**
+	 * whether turtle state is stored in primitive columns instead of turtle
+	 * objects
+	 */
+	private boolean compact = false;
+	/**
+	 * whether all turtles are updated at once on the basis of the previous
+	 * tick's state, evaluated in parallel
+	 */
+	private boolean synchronous = false;
+	/**
+	 * whether the number of turtles per category within the vision of every
+	 * patch is maintained as turtles change, so that agents decide and cops
+	 * look for rebels on the counts of their patch instead of counting
+	 */
+	private boolean incremental = false;
+	/**
+	 * the number of threads of a synchronous simulation, 0 for one per
+	 * available processor
+	 */
+	private int threads = 0;
+	/**
+	 * the format results are stored in
+	 */
+	private String format = "csv";
+	/**
+	 * the number of ticks after which results are written to the results
+	 * file, 0 to write them only when the output buffer is full
+	 */
+	private int flush_interval = 100;
+	/**
+	 * the number of ticks after which the state of every agent is recorded, 0
+	 * for none
+	 */
+	private int snapshot_interval = 0;
+	/**
+	 * the number of ticks of each of the two windows of the rebel count
+	 * compared to detect an equilibrium, 0 for no detection
+	 */
+	private int equilibrium_window = 0;
+	/**
+	 * the fraction of the number of agents by which the windows' means and
+	 * standard deviations may differ in an equilibrium
+	 */
+	private double equilibrium_tolerance = 0.01;
+	/**
+	 * the number of ticks after which results are recorded once an
+	 * equilibrium is reached, 0 to stop the run instead
+	 */
+	private int equilibrium_interval = 0;
+	/**
+	 * the number of ticks after which the state of the run is saved to a
+	 * checkpoint file, 0 for none
+	 */
+	private int checkpoint_interval = 0;
+	/**
+	 * whether the phases of every tick are timed and counted, recorded as
+	 * flight recorder events and summarised at the end of a run
+	 */
+	private boolean profile = false;
+	/**
+	 * whether the progress of the run is published as a management bean
+	 */
+	private boolean metrics = false;
+
+	/**
+	 * Creates parameters with the default values and a random seed
+	 */
+	public Parameters() {
+	}
+
+	/**
+	 * Creates a copy of the given parameters
+	 *
+	 * @param parameters
+	 *            the parameters to be copied
+	 */
+	private Parameters(Parameters parameters) {
+		this.initial_cop_density = parameters.initial_cop_density;
+		this.initial_agent_density = parameters.initial_agent_density;
+		this.vision = parameters.vision;
+		this.vision_shape = parameters.vision_shape;
+		this.government_legitimacy = parameters.government_legitimacy;
+		this.max_jail_term = parameters.max_jail_term;
+		this.movement = parameters.movement;
+		this.individual_legitimacy = parameters.individual_legitimacy;
+		this.scale = parameters.scale;
+		this.ticks = parameters.ticks;
+		this.seed = parameters.seed;
+		this.counting_index = parameters.counting_index;
+		this.flat_world = parameters.flat_world;
+		this.world_file = parameters.world_file;
+		this.scheduling = parameters.scheduling;
+		this.compact = parameters.compact;
+		this.synchronous = parameters.synchronous;
+		this.incremental = parameters.incremental;
+		this.threads = parameters.threads;
+		this.format = parameters.format;
+		this.flush_interval = parameters.flush_interval;
+		this.snapshot_interval = parameters.snapshot_interval;
+		this.equilibrium_window = parameters.equilibrium_window;
+		this.equilibrium_tolerance = parameters.equilibrium_tolerance;
+		this.equilibrium_interval = parameters.equilibrium_interval;
+		this.checkpoint_interval = parameters.checkpoint_interval;
+		this.profile = parameters.profile;
+		this.metrics = parameters.metrics;
+	}
+
+	/**
+	 * Extracts simulation parameters from the given text. Parameters have to be
+	 * declared in the form -<parameter.name>=<parameter.value>. Invalid
+	 * parameters are reported and ignored.
+	 *
+	 * @param args
+	 *            the given text
+	 * @return the parameters with the given values and default values
+	 *         otherwise
+	 */
+	public static Parameters parse(String[] args) {
+		Parameters parameters = new Parameters();
+		// go through all words
+		for (int i = 0; i < args.length; i++) {
+
+			// separate each in parameter name and value
+			String[] parts = args[i].split("=");
+			String parameterName = parts[0].substring(1);
+
+			try {
+				parameters = parameters.with(parameterName, parts[1]);
+			} catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+				System.out.println("The parameter " + parameterName + " you entered is invalid");
+			}
+		}
+		return parameters;
+	}
+
+	/**
+	 * Returns a copy of these parameters with the parameter of the given name
+	 * set to the given value
+	 *
+	 * @param parameterName
+	 *            the name of the parameter as used on the command console
+	 * @param value
+	 *            the new value
+	 * @return the changed copy
+	 * @throws IllegalArgumentException
+	 *             if the name is unknown or the value cannot be parsed
+	 */
+	public Parameters with(String parameterName, String value) {
+		Parameters parameters = new Parameters(this);
+		switch (parameterName) {
+		case "initial_cop_density":
+			parameters.initial_cop_density = Double.parseDouble(value);
+			break;
+		case "initial_agent_density":
+			parameters.initial_agent_density = Double.parseDouble(value);
+			break;
+		case "vision":
+			parameters.vision = Integer.parseInt(value);
+			break;
+		case "vision_shape":
+			parameters.vision_shape = VisionShape.valueOf(value.toUpperCase());
+			break;
+		case "government_legitimacy":
+			parameters.government_legitimacy = Double.parseDouble(value);
+			break;
+		case "max_jail_term":
+			parameters.max_jail_term = Integer.parseInt(value);
+			break;
+		case "movement":
+			parameters.movement = Boolean.parseBoolean(value);
+			break;
+		case "individual_legitimacy":
+			parameters.individual_legitimacy = Boolean.parseBoolean(value);
+			break;
+		case "compact":
+			parameters.compact = Boolean.parseBoolean(value);
+			break;
+		case "synchronous":
+			parameters.synchronous = Boolean.parseBoolean(value);
+			break;
+		case "incremental":
+			parameters.incremental = Boolean.parseBoolean(value);
+			break;
+		case "threads":
+			parameters.threads = Integer.parseInt(value);
+			break;
+		case "format":
+			if (!value.equals("csv") && !value.equals("binary")) {
+				throw new IllegalArgumentException("Unknown format " + value);
+			}
+			parameters.format = value;
+			break;
+		case "flush_interval":
+			parameters.flush_interval = Integer.parseInt(value);
+			break;
+		case "snapshot_interval":
+			parameters.snapshot_interval = Integer.parseInt(value);
+			break;
+		case "equilibrium_window":
+			parameters.equilibrium_window = Integer.parseInt(value);
+			break;
+		case "equilibrium_tolerance":
+			parameters.equilibrium_tolerance = Double.parseDouble(value);
+			break;
+		case "equilibrium_interval":
+			parameters.equilibrium_interval = Integer.parseInt(value);
+			break;
+		case "checkpoint_interval":
+			parameters.checkpoint_interval = Integer.parseInt(value);
+			break;
+		case "profile":
+			parameters.profile = Boolean.parseBoolean(value);
+			break;
+		case "metrics":
+			parameters.metrics = Boolean.parseBoolean(value);
+			break;
+		case "scheduling":
+			parameters.scheduling = Scheduling.valueOf(value.toUpperCase());
+			break;
+		case "counting_index":
+			parameters.counting_index = Boolean.parseBoolean(value);
+			break;
+		case "flat_world":
+			parameters.flat_world = Boolean.parseBoolean(value);
+			break;
+		case "world_file":
+			parameters.world_file = value;
+			break;
+		case "seed":
+			parameters.seed = Long.parseLong(value);
+			break;
+		case "ticks":
+			parameters.ticks = Integer.parseInt(value);
+			break;
+		case "dimension":
+			parameters.scale = Integer.parseInt(value);
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown parameter " + parameterName);
+		}
+		return parameters;
+	}
+
+	/**
+	 * Returns these parameters in the form accepted by
+	 * {@link #parse(String[])}, so that parsing them yields equal parameters
+	 * 
+	 * @return the parameters as -<parameter.name>=<parameter.value> words
+	 */
+	public String[] arguments() {
+		String[] arguments = new String[] { "-initial_cop_density=" + initial_cop_density,
+				"-initial_agent_density=" + initial_agent_density, "-vision=" + vision,
+				"-vision_shape=" + vision_shape, "-government_legitimacy=" + government_legitimacy,
+				"-max_jail_term=" + max_jail_term, "-movement=" + movement,
+				"-individual_legitimacy=" + individual_legitimacy, "-dimension=" + scale,
+				"-ticks=" + ticks, "-seed=" + seed, "-scheduling=" + scheduling,
+				"-counting_index=" + counting_index, "-flat_world=" + flat_world, "-compact=" + compact,
+				"-synchronous=" + synchronous, "-incremental=" + incremental, "-threads=" + threads,
+				"-format=" + format, "-flush_interval=" + flush_interval,
+				"-snapshot_interval=" + snapshot_interval, "-equilibrium_window=" + equilibrium_window,
+				"-equilibrium_tolerance=" + equilibrium_tolerance,
+				"-equilibrium_interval=" + equilibrium_interval,
+				"-checkpoint_interval=" + checkpoint_interval, "-profile=" + profile,
+				"-metrics=" + metrics };
+		// an empty value cannot be parsed, but is the default anyway
+		if (!world_file.isEmpty()) {
+			arguments = Arrays.copyOf(arguments, arguments.length + 1);
+			arguments[arguments.length - 1] = "-world_file=" + world_file;
+		}
+		return arguments;
+	}
+
+	/**
+	 * @return the initial cop density in the world
+	 */
+	public double getInitial_cop_density() {
+		return initial_cop_density;
+	}
+
+	/**
+	 * @return the initial agent density in the world
+	 */
+	public double getInitial_agent_density() {
+		return initial_agent_density;
+	}
+
+	/**
+	 * @return a turtle's vision
+	 */
+	public int getVision() {
+		return vision;
+	}
+
+	/**
+	 * @return the shape of a turtle's field of vision
+	 */
+	public VisionShape getVision_shape() {
+		return vision_shape;
+	}
+
+	/**
+	 * @return the initial government legitimacy perceived by every agent
+	 */
+	public double getGovernment_legitimacy() {
+		return government_legitimacy;
+	}
+
+	/**
+	 * @return the maximum jail time, a rebelling agent will be sentenced to
+	 */
+	public int getMax_jail_term() {
+		return max_jail_term;
+	}
+
+	/**
+	 * @return whether agents can move or not
+	 */
+	public boolean isMovement() {
+		return movement;
+	}
+
+	/**
+	 * @return whether the perceived government legitimacy is calculated for
+	 *         each agent individually or not
+	 */
+	public boolean isIndividual_legitimacy() {
+		return individual_legitimacy;
+	}
+
+	/**
+	 * @return the scale of the two-dimensional square world
+	 */
+	public int getScale() {
+		return scale;
+	}
+
+	/**
+	 * @return the number of ticks to run this simulation for
+	 */
+	public int getTicks() {
+		return ticks;
+	}
+
+	/**
+	 * @return the seed of all random numbers of a simulation
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * @return which turtles are shuffled and visited during a tick
+	 */
+	public Scheduling getScheduling() {
+		return scheduling;
+	}
+
+	/**
+	 * @return whether nearby entities are counted with a Fenwick tree
+	 *         index
+	 */
+	public boolean isCounting_index() {
+		return counting_index;
+	}
+
+	/**
+	 * @return whether the world keeps its patches in flat primitive arrays
+	 */
+	public boolean isFlat_world() {
+		return flat_world;
+	}
+
+	/**
+	 * @return the file the world is mapped to, empty for a world on the heap
+	 */
+	public String getWorld_file() {
+		return world_file;
+	}
+
+	/**
+	 * @return whether turtle state is stored in primitive columns
+	 */
+	public boolean isCompact() {
+		return compact;
+	}
+
+	/**
+	 * @return whether all turtles are updated at once
+	 */
+	public boolean isSynchronous() {
+		return synchronous;
+	}
+
+	/**
+	 * @return whether the turtle counts within the vision of every patch are
+	 *         maintained instead of counted
+	 */
+	public boolean isIncremental() {
+		return incremental;
+	}
+
+	/**
+	 * @return the number of threads of a synchronous simulation, 0 for one per
+	 *         available processor
+	 */
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * @return the format results are stored in
+	 */
+	public String getFormat() {
+		return format;
+	}
+
+	/**
+	 * @return the number of ticks after which results are written to the
+	 *         results file, 0 to write them only when the output buffer is full
+	 */
+	public int getFlush_interval() {
+		return flush_interval;
+	}
+
+	/**
+	 * @return the number of ticks after which the state of every agent is
+	 *         recorded, 0 for none
+	 */
+	public int getSnapshot_interval() {
+		return snapshot_interval;
+	}
+
+	/**
+	 * @return the number of ticks of each of the two windows compared to
+	 *         detect an equilibrium, 0 for no detection
+	 */
+	public int getEquilibrium_window() {
+		return equilibrium_window;
+	}
+
+	/**
+	 * @return the fraction of the number of agents by which the windows' means
+	 *         and standard deviations may differ in an equilibrium
+	 */
+	public double getEquilibrium_tolerance() {
+		return equilibrium_tolerance;
+	}
+
+	/**
+	 * @return the number of ticks after which results are recorded once an
+	 *         equilibrium is reached, 0 to stop the run instead
+	 */
+	public int getEquilibrium_interval() {
+		return equilibrium_interval;
+	}
+
+	/**
+	 * @return the number of ticks after which the state of the run is saved to
+	 *         a checkpoint file, 0 for none
+	 */
+	public int getCheckpoint_interval() {
+		return checkpoint_interval;
+	}
+
+	/**
+	 * @return whether the phases of every tick are timed and counted
+	 */
+	public boolean isProfile() {
+		return profile;
+	}
+
+	/**
+	 * @return whether the progress of the run is published as a management
+	 *         bean
+	 */
+	public boolean isMetrics() {
+		return metrics;
+	}
 
 }
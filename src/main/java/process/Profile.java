@@ -0,0 +1,236 @@
+package process;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * A profile times the phases of every tick of a simulation run and counts
+ * the work done in them. Simulations only keep a profile if profiling is
+ * enabled, so disabled profiling costs no more than a null check per phase.
+ * 
+ * The values of every tick are committed as a {@link TickEvent} to the JDK
+ * Flight Recorder, if it records such events, and the values of the whole run
+ * can be printed as a summary.
+ * 
+ * @author Ferdinand
+ *
+ */
+public class Profile {
+
+	/**
+	 * The timed phases of a tick
+	 */
+	public enum Phase {
+
+		/**
+		 * turtles moving to a random patch within their vision
+		 */
+		MOVE,
+
+		/**
+		 * agents deciding whether to rebel and cops arresting rebels
+		 */
+		ACT,
+
+		/**
+		 * jail terms being reduced and agents being released
+		 */
+		RELEASE,
+
+		/**
+		 * the state after the tick being recorded in the results
+		 */
+		SAVE
+
+	}
+
+	/**
+	 * The counted work of a tick
+	 */
+	public enum Counter {
+
+		/**
+		 * the number of neighbourhood queries and surveys
+		 */
+		QUERIES,
+
+		/**
+		 * the number of patches visited by queries and count updates
+		 */
+		PATCHES,
+
+		/**
+		 * the number of turtles moved to another patch
+		 */
+		MOVES,
+
+		/**
+		 * the number of agents arrested
+		 */
+		ARRESTS,
+
+		/**
+		 * the number of agents released from jail
+		 */
+		RELEASES
+
+	}
+
+	/**
+	 * the time of each phase of the current tick in nanoseconds
+	 */
+	private final long[] times;
+
+	/**
+	 * the time of each phase of all ticks in nanoseconds
+	 */
+	private final long[] totalTimes;
+
+	/**
+	 * the counts of the current tick
+	 */
+	private final long[] counts;
+
+	/**
+	 * the counts of all ticks
+	 */
+	private final long[] totalCounts;
+
+	/**
+	 * the time of all ticks without saving them in nanoseconds
+	 */
+	private long tickTime;
+
+	/**
+	 * the number of ticks profiled
+	 */
+	private int ticks;
+
+	/**
+	 * the event of the current tick
+	 */
+	private TickEvent event;
+
+	/**
+	 * Creates an empty profile
+	 */
+	public Profile() {
+		times = new long[Phase.values().length];
+		totalTimes = new long[Phase.values().length];
+		counts = new long[Counter.values().length];
+		totalCounts = new long[Counter.values().length];
+	}
+
+	/**
+	 * Starts a tick, discarding anything recorded since the previous tick
+	 */
+	public void startTick() {
+		Arrays.fill(times, 0);
+		Arrays.fill(counts, 0);
+		event = new TickEvent();
+		event.begin();
+	}
+
+	/**
+	 * Adds the given time to the given phase of the current tick
+	 * 
+	 * @param phase
+	 *            the given phase
+	 * @param nanos
+	 *            the given time in nanoseconds
+	 */
+	public void time(Phase phase, long nanos) {
+		times[phase.ordinal()] += nanos;
+	}
+
+	/**
+	 * Adds the given number to the given counter of the current tick
+	 * 
+	 * @param counter
+	 *            the given counter
+	 * @param number
+	 *            the given number
+	 */
+	public void count(Counter counter, long number) {
+		counts[counter.ordinal()] += number;
+	}
+
+	/**
+	 * Returns the given counter of the current or, once ended, the last tick
+	 * 
+	 * @param counter
+	 *            the given counter
+	 * @return the count
+	 */
+	public long counted(Counter counter) {
+		return counts[counter.ordinal()];
+	}
+
+	/**
+	 * Ends the current tick, adds its values to those of the run and commits
+	 * its event
+	 * 
+	 * @param tick
+	 *            the number of the tick
+	 * @param nanos
+	 *            the time of the tick without saving it in nanoseconds
+	 */
+	public void endTick(int tick, long nanos) {
+		ticks++;
+		tickTime += nanos;
+		for (int i = 0; i < times.length; i++) {
+			totalTimes[i] += times[i];
+		}
+		for (int i = 0; i < counts.length; i++) {
+			totalCounts[i] += counts[i];
+		}
+
+		event.end();
+		if (event.shouldCommit()) {
+			event.tick = tick;
+			event.moveTime = times[Phase.MOVE.ordinal()];
+			event.actTime = times[Phase.ACT.ordinal()];
+			event.releaseTime = times[Phase.RELEASE.ordinal()];
+			event.saveTime = times[Phase.SAVE.ordinal()];
+			event.queries = counts[Counter.QUERIES.ordinal()];
+			event.patches = counts[Counter.PATCHES.ordinal()];
+			event.moves = counts[Counter.MOVES.ordinal()];
+			event.arrests = counts[Counter.ARRESTS.ordinal()];
+			event.releases = counts[Counter.RELEASES.ordinal()];
+			event.commit();
+		}
+		event = null;
+	}
+
+	/**
+	 * Prints the time of every phase and the counts of all ticks in total and
+	 * per tick to the given stream
+	 * 
+	 * @param out
+	 *            the given stream
+	 */
+	public void print(PrintStream out) {
+		int perTick = Math.max(ticks, 1);
+		out.println("Profile of " + ticks + " ticks");
+		out.println(String.format("%-10s %12s %14s", "phase", "total ms", "per tick us"));
+		long phases = 0;
+		for (Phase phase : Phase.values()) {
+			long time = totalTimes[phase.ordinal()];
+			if (phase != Phase.SAVE) {
+				phases += time;
+			}
+			out.println(String.format("%-10s %12.1f %14.1f", phase.name().toLowerCase(), time / 1e6,
+					time / 1e3 / perTick));
+		}
+		// the part of a tick not attributed to a phase, e.g. shuffling
+		long other = Math.max(tickTime - phases, 0);
+		out.println(String.format("%-10s %12.1f %14.1f", "other", other / 1e6, other / 1e3 / perTick));
+		out.println(String.format("%-10s %12s %14s", "counter", "total", "per tick"));
+		for (Counter counter : Counter.values()) {
+			long count = totalCounts[counter.ordinal()];
+			out.println(String.format("%-10s %12d %14.1f", counter.name().toLowerCase(), count,
+					(double) count / perTick));
+		}
+	}
+
+}
@@ -0,0 +1,187 @@
+package process;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import world.Category;
+import world.IEntity;
+import world.IWorld;
+import world.Stencil;
+import world.VisionShape;
+
+/**
+ * A profiled world passes every call to another world and records the moves,
+ * the neighbourhood queries and the patches they visit, arrests and releases
+ * in a {@link Profile}. Arrests and releases are recognised by the category
+ * changes to and from jailed. A simulation only wraps its world if profiling
+ * is enabled.
+ * 
+ * @author Ferdinand
+ *
+ * @param <T>
+ *            the type of entities to be managed by this world
+ */
+class ProfiledWorld<T extends IEntity> implements IWorld<T> {
+
+	/**
+	 * the world receiving all calls
+	 */
+	private final IWorld<T> world;
+
+	/**
+	 * the profile the calls are recorded in
+	 */
+	private final Profile profile;
+
+	/**
+	 * the shape of a field of vision
+	 */
+	private final VisionShape shape;
+
+	/**
+	 * whether the world counts nearby entities with an index instead of
+	 * visiting the nearby patches
+	 */
+	private final boolean countingIndex;
+
+	/**
+	 * the scope the number of patches was last determined for, -1 if none
+	 */
+	private int scope = -1;
+
+	/**
+	 * the number of patches within the last scope
+	 */
+	private int patches;
+
+	/**
+	 * Creates a world recording the calls to the given world in the given
+	 * profile
+	 * 
+	 * @param world
+	 *            the given world
+	 * @param profile
+	 *            the given profile
+	 * @param shape
+	 *            the shape of a field of vision
+	 * @param countingIndex
+	 *            whether the given world counts nearby entities with an index
+	 */
+	ProfiledWorld(IWorld<T> world, Profile profile, VisionShape shape, boolean countingIndex) {
+		this.world = world;
+		this.profile = profile;
+		this.shape = shape;
+		this.countingIndex = countingIndex;
+	}
+
+	@Override
+	public void enter(List<? extends T> entities) {
+		world.enter(entities);
+	}
+
+	@Override
+	public void enter(List<? extends T> entities, int[] positions, int[] arrivals) {
+		world.enter(entities, positions, arrivals);
+	}
+
+	@Override
+	public void clear() {
+		world.clear();
+	}
+
+	@Override
+	public void move(T entity, int scope) {
+		long start = System.nanoTime();
+		int position = world.positionOf(entity);
+		world.move(entity, scope);
+		if (world.positionOf(entity) != position) {
+			profile.count(Profile.Counter.MOVES, 1);
+		}
+		profile.count(Profile.Counter.PATCHES, patches(scope));
+		profile.time(Profile.Phase.MOVE, System.nanoTime() - start);
+	}
+
+	@Override
+	public void moveTo(T entity, T target) {
+		world.moveTo(entity, target);
+	}
+
+	@Override
+	public List<? extends T> neighbourhoodOf(T entity, int scope) {
+		query(scope);
+		return world.neighbourhoodOf(entity, scope);
+	}
+
+	@Override
+	public void forEachNeighbour(T entity, int scope, Consumer<? super T> consumer) {
+		query(scope);
+		world.forEachNeighbour(entity, scope, consumer);
+	}
+
+	@Override
+	public void forEachOccupant(int position, Consumer<? super T> consumer) {
+		world.forEachOccupant(position, consumer);
+	}
+
+	@Override
+	public int count(T entity, int scope, Category category) {
+		if (countingIndex) {
+			profile.count(Profile.Counter.QUERIES, 1);
+		} else {
+			query(scope);
+		}
+		return world.count(entity, scope, category);
+	}
+
+	@Override
+	public void update(T entity, Category previous) {
+		if (previous == Category.JAILED) {
+			profile.count(Profile.Counter.RELEASES, 1);
+		} else if (entity.getCategory() == Category.JAILED) {
+			profile.count(Profile.Counter.ARRESTS, 1);
+		}
+		world.update(entity, previous);
+	}
+
+	@Override
+	public int positionOf(T entity) {
+		return world.positionOf(entity);
+	}
+
+	@Override
+	public int getScale() {
+		return world.getScale();
+	}
+
+	@Override
+	public long footprint() {
+		return world.footprint();
+	}
+
+	/**
+	 * Records a query visiting the patches within the given scope
+	 * 
+	 * @param scope
+	 *            the given scope
+	 */
+	private void query(int scope) {
+		profile.count(Profile.Counter.QUERIES, 1);
+		profile.count(Profile.Counter.PATCHES, patches(scope));
+	}
+
+	/**
+	 * Returns the number of patches within the given scope
+	 * 
+	 * @param scope
+	 *            the given scope
+	 * @return the number of patches
+	 */
+	private int patches(int scope) {
+		if (scope != this.scope) {
+			patches = new Stencil(shape, scope, world.getScale()).size();
+			this.scope = scope;
+		}
+		return patches;
+	}
+
+}
@@ -1,28 +1,40 @@
 package process;
 
-import java.io.FileWriter;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
 import java.io.IOException;
-import java.util.Collections;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Consumer;
 
 import actor.Agent;
 import actor.Cop;
 import actor.ExtendedAgent;
+import actor.Jail;
 import actor.Turtle;
+import world.FlatWorld;
+import world.Footprint;
 import world.IWorld;
+import world.MappedWorld;
+import world.SplitMix;
 import world.World;
 
 /**
  * A rebellion controls the dynamics of the social behaviour governed by this
  * simulation.
  * 
+ * Turtles are kept in an array indexed by their ids in the world, cops
+ * first, and a tick shuffles an array of ids in place, so that a tick does
+ * not allocate once the world's buffers have grown to their final sizes.
+ * 
  * @author Ferdinand
  *
  */
-public class Rebellion {
+public class Rebellion extends Simulation {
 
 	/**
 	 * constant specified in the NetLogo model
@@ -34,19 +46,36 @@ public class Rebellion {
 	public static double k = 2.3;
 
 	/**
-	 * time series of intermediate per-tick results as a results cache
+	 * the name of the results file of a run started from the command line,
+	 * without extension, which also names the run's checkpoint file
+	 */
+	private static final String RESULTS = "results";
+
+	/**
+	 * the agents in a simulation in order of creation
+	 */
+	private Agent[] agents;
+
+	/**
+	 * the cops in a simulation in order of creation
+	 */
+	private Cop[] cops;
+
+	/**
+	 * the cops and agents in a simulation, indexed by their ids
 	 */
-	private StringBuilder results;
+	private Turtle[] turtles;
 
 	/**
-	 * the agents in a simulation
+	 * reusable buffer of the ids of the turtles in the order in which they act
+	 * during a tick
 	 */
-	private LinkedList<Agent> agents;
+	private int[] order;
 
 	/**
-	 * the cops in a simulation
+	 * the jail releasing jailed agents in a simulation
 	 */
-	private LinkedList<Cop> cops;
+	private Jail jail;
 
 	/**
 	 * the world used for a simulation
@@ -54,32 +83,91 @@ public class Rebellion {
 	private IWorld<Turtle> world;
 
 	/**
-	 * Creates a new rebellion with a world of the given scale
+	 * the world mapped to a file outside the heap; null if the world is on the
+	 * heap
+	 */
+	private MappedWorld<Turtle> mapped;
+
+	/**
+	 * the source of randomness of a simulation
+	 */
+	private SplitMix random;
+
+	/**
+	 * Creates a new rebellion with the given parameters
 	 * 
-	 * @param worldScale
-	 *            the given scale
+	 * @param parameters
+	 *            the parameters of the simulation run
 	 */
-	public Rebellion(int worldScale) {
-		results = new StringBuilder();
-		agents = new LinkedList<Agent>();
-		cops = new LinkedList<Cop>();
-		world = new World<Turtle>(worldScale);
+	public Rebellion(Parameters parameters) {
+		super(parameters);
+		random = new SplitMix(parameters.getSeed());
+		if (!parameters.getWorld_file().isEmpty()) {
+			if (parameters.isCounting_index()) {
+				throw new IllegalArgumentException("A mapped world has no counting index");
+			}
+			// keep patches in a file outside the heap, which may hold the
+			// population of an earlier run
+			try {
+				mapped = new MappedWorld<Turtle>(Paths.get(parameters.getWorld_file()), population(),
+						parameters.getScale(), numberCops() + numberAgents(), parameters.getVision_shape(),
+						random);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			world = mapped;
+		} else {
+			// keep patches in flat primitive arrays or as patch objects
+			world = parameters.isFlat_world()
+					? new FlatWorld<Turtle>(parameters.getScale(), parameters.isCounting_index(),
+							parameters.getVision_shape(), random)
+					: new World<Turtle>(parameters.getScale(), parameters.isCounting_index(),
+							parameters.getVision_shape(), random);
+		}
+		// record moves, queries, arrests and releases if profiling
+		if (profile != null) {
+			world = new ProfiledWorld<Turtle>(world, profile, parameters.getVision_shape(),
+					parameters.isCounting_index());
+		}
 	}
 
 	/**
-	 * Main method and entry point of the logobellion program
+	 * Main method and entry point of the logobellion program. A run is resumed
+	 * from the checkpoint file given as -resume=<path>, in which case all other
+	 * parameters are taken from the checkpoint.
 	 * 
 	 * @param args
 	 *            command-line arguments used to specify simulation parameters
 	 */
 	public static void main(String[] args) {
 
-		readParameters(args);
-		Rebellion rebellion = new Rebellion(Parameters.SCALE);
-		rebellion.setup();
-		rebellion.go(Parameters.TICKS);
+		Path resume = null;
+		for (String arg : args) {
+			if (arg.startsWith("-resume=")) {
+				resume = Paths.get(arg.substring("-resume=".length()));
+			}
+		}
+
 		try {
-			rebellion.export("results.csv");
+			if (resume == null) {
+				Parameters parameters = Parameters.parse(args);
+				try (Simulation simulation = Simulation.create(parameters);
+						ResultsSink results = ResultsSink.open(parameters, RESULTS);
+						Checkpoints checkpoints = Checkpoints.of(RESULTS)) {
+					simulation.setup(results, checkpoints);
+					simulation.go(parameters.getTicks());
+				}
+			} else {
+				try (DataInputStream checkpoint = Checkpoints.open(resume)) {
+					Parameters parameters = Checkpoints.readParameters(checkpoint);
+					try (Simulation simulation = Simulation.create(parameters);
+							ResultsSink results = ResultsSink.resume(parameters, checkpoint);
+							Checkpoints checkpoints = new Checkpoints(resume)) {
+						simulation.resume(results, checkpoints, checkpoint);
+						simulation.go(parameters.getTicks());
+					}
+				}
+			}
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
@@ -87,161 +175,163 @@ public class Rebellion {
 	}
 
 	/**
-	 * Prepares a simulation run by creating cops and agents and adding them to
+	 * Resets the simulation state, creates cops and agents and adds them to
 	 * the world
 	 */
-	public void setup() {
-		agents.clear();
-		cops.clear();
+	@Override
+	protected void populate() {
+		if (mapped != null && mapped.isPopulated()) {
+			// creating turtles draws the same random numbers as before, but
+			// their locations are taken from the file instead of drawn again
+			create();
+			try {
+				mapped.adopt(Arrays.asList(turtles));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return;
+		}
 		world.clear();
+		create();
+		// add turtles, i.e. cops and agents, to the world, which numbers them
+		// in this order
+		world.enter(Arrays.asList(turtles));
+		if (mapped != null) {
+			try {
+				mapped.seal();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
 
-		// prepare results file with simulation parameters
-		results = new StringBuilder("TICKS,DIMENSION,VISION,MAX_JAIL_TERM,MOVEMENT,"
-				+ "INITIAL_COP_DENSITY,INITIAL_AGENT_DENSITY,"
-				+ "GOVERNMENT_LEGITIMACY,INDIVIDUAL_LEGITIMACY\n");
-		results.append(Parameters.TICKS + "," + Parameters.SCALE + "," + Parameters.VISION + ","
-				+ Parameters.MAX_JAIL_TERM + "," + Parameters.MOVEMENT + ","
-				+ Parameters.INITIAL_COP_DENSITY + "," + Parameters.INITIAL_AGENT_DENSITY + ","
-				+ Parameters.GOVERNMENT_LEGITIMACY + "," + Parameters.INDIVIDUAL_LEGITIMACY + "\n");
-
-		results.append("tick,#QuietAgents,#JailedAgents,#RebellingAgents\n");
+	/**
+	 * Creates cops and agents, which are numbered in this order, and a jail
+	 */
+	private void create() {
+		int numberCops = numberCops();
+		int numberAgents = numberAgents();
+		// agents are numbered after the cops
+		jail = new Jail(parameters.getMax_jail_term(), numberCops + numberAgents);
 
 		// create cops
-		int numberCops = (int) Math
-				.floor(Parameters.INITIAL_COP_DENSITY * world.getScale() * world.getScale());
+		cops = new Cop[numberCops];
 		for (int i = 0; i < numberCops; i++) {
-			Cop cop = new Cop(world, Parameters.VISION, Parameters.MAX_JAIL_TERM);
-			cops.add(cop);
+			cops[i] = new Cop(world, parameters.getVision(), parameters.getMax_jail_term(), random);
 		}
 
 		// create agents
-		int numberAgents = (int) Math
-				.floor(Parameters.INITIAL_AGENT_DENSITY * world.getScale() * world.getScale());
+		agents = new Agent[numberAgents];
 		for (int i = 0; i < numberAgents; i++) {
 			// enable/disable extended agent behaviour
-			Agent agent = Parameters.INDIVIDUAL_LEGITIMACY
-					? new ExtendedAgent(world, Parameters.VISION, Parameters.GOVERNMENT_LEGITIMACY,
-							Parameters.MOVEMENT)
-					: new Agent(world, Parameters.VISION, Parameters.GOVERNMENT_LEGITIMACY,
-							Parameters.MOVEMENT);
-			agents.add(agent);
+			agents[i] = parameters.isIndividual_legitimacy()
+					? new ExtendedAgent(world, parameters.getVision(),
+							parameters.getGovernment_legitimacy(), parameters.isMovement(), jail, random)
+					: new Agent(world, parameters.getVision(), parameters.getGovernment_legitimacy(),
+							parameters.isMovement(), jail, random);
 		}
 
-		// add turtles, i.e. cops and agents, to the world
-		List<Turtle> turtles = Stream.concat(cops.stream(), agents.stream())
-				.collect(Collectors.toList());
-		world.enter(turtles);
+		turtles = new Turtle[numberCops + numberAgents];
+		System.arraycopy(cops, 0, turtles, 0, numberCops);
+		System.arraycopy(agents, 0, turtles, numberCops, numberAgents);
+		order = new int[turtles.length];
 
 	}
 
 	/**
-	 * Perform a simulation run with the given number of ticks
-	 * 
-	 * @param ticks
-	 *            the given number of ticks
+	 * @return the number of cops given by the initial cop density
 	 */
-	public void go(int ticks) {
-		// save the initial simulation state
-		save(0);
-		for (int i = 1; i <= ticks; i++) {
-			tick();
-			// save the simulation state after each tick
-			save(i);
-		}
+	private int numberCops() {
+		return (int) Math
+				.floor(parameters.getInitial_cop_density() * parameters.getScale() * parameters.getScale());
 	}
 
 	/**
-	 * Store simulation results in a csv file with the given filename
-	 * 
-	 * @param filename
-	 *            the given filename
-	 * @throws IOException
-	 *             if errors occur loading the file
+	 * @return the number of agents given by the initial agent density
 	 */
-	private void export(String filename) throws IOException {
-		FileWriter fw = new FileWriter(filename, true);
-		fw.write(results.toString());
-		fw.close();
+	private int numberAgents() {
+		return (int) Math
+				.floor(parameters.getInitial_agent_density() * parameters.getScale() * parameters.getScale());
 	}
 
 	/**
-	 * Extracts simulation parameters from the given text. Parameters have to be
-	 * declared in the form -<parameter.name>=<parameter.value>.
+	 * Returns a tag identifying the population of a world, i.e. the
+	 * parameters deciding the turtles created and their initial locations
 	 * 
-	 * @param args
-	 *            the given text
+	 * @return the tag
 	 */
-	private static void readParameters(String[] args) {
-		// go through all words
-		for (int i = 0; i < args.length; i++) {
-
-			// separate each in parameter name and value
-			String[] parts = args[i].split("=");
-			String parameterName = parts[0].substring(1);
-
-			switch (parameterName) {
-			case "initial_cop_density":
-				Parameters.INITIAL_COP_DENSITY = Double.parseDouble(parts[1]);
-				break;
-			case "initial_agent_density":
-				Parameters.INITIAL_AGENT_DENSITY = Double.parseDouble(parts[1]);
-				break;
-			case "vision":
-				Parameters.VISION = Integer.parseInt(parts[1]);
-				break;
-			case "government_legitimacy":
-				Parameters.GOVERNMENT_LEGITIMACY = Double.parseDouble(parts[1]);
-				break;
-			case "max_jail_term":
-				Parameters.MAX_JAIL_TERM = Integer.parseInt(parts[1]);
-				break;
-			case "movement":
-				Parameters.MOVEMENT = Boolean.parseBoolean(parts[1]);
-				break;
-			case "individual_legitimacy":
-				Parameters.INDIVIDUAL_LEGITIMACY = Boolean.parseBoolean(parts[1]);
-				break;
-			case "ticks":
-				Parameters.TICKS = Integer.parseInt(parts[1]);
-				break;
-			case "dimension":
-				Parameters.SCALE = Integer.parseInt(parts[1]);
-			default:
-				System.out.println("The parameter " + parameterName + " you entered is invalid");
-			}
-		}
+	private long population() {
+		return Objects.hash(parameters.getSeed(), parameters.getScale(), parameters.getInitial_cop_density(),
+				parameters.getInitial_agent_density(), parameters.isIndividual_legitimacy());
 	}
 
 	/**
 	 * Perform a simulation tick
 	 */
-	private void tick() {
-
-		List<Turtle> turtles = Stream.concat(agents.stream(), cops.stream())
-				.collect(Collectors.toList());
-		Collections.shuffle(turtles);
+	@Override
+	protected void tick() {
+
+		// agents followed by cops; jailed agents neither move nor act, so
+		// they may be left out
+		int length = 0;
+		if (parameters.getScheduling() == Scheduling.ACTIVE) {
+			for (int id = jail.nextActive(cops.length); id < turtles.length; id = jail
+					.nextActive(id + 1)) {
+				order[length++] = id;
+			}
+		} else {
+			for (int id = cops.length; id < turtles.length; id++) {
+				order[length++] = id;
+			}
+		}
+		for (int id = 0; id < cops.length; id++) {
+			order[length++] = id;
+		}
+		// shuffle in the same way as Collections.shuffle
+		for (int i = length; i > 1; i--) {
+			int j = random.nextInt(i);
+			int swap = order[i - 1];
+			order[i - 1] = order[j];
+			order[j] = swap;
+		}
 
 		// randomly go through all turtles
-		for (Turtle turtle : turtles) {
+		for (int i = 0; i < length; i++) {
+			Turtle turtle = turtles[order[i]];
 			// apply movement rule
 			turtle.move();
 
 			// apply agent rule or cop rule, respectively
-			turtle.act();
+			if (profile == null) {
+				turtle.act();
+			} else {
+				long start = System.nanoTime();
+				turtle.act();
+				profile.time(Profile.Phase.ACT, System.nanoTime() - start);
+			}
 		}
 
-		// reduce jail time of (jailed) agents
-		agents.stream().forEach(Agent::decreaseJailTerm);
+		// reduce jail time of (jailed) agents, releasing those whose terms end
+		if (profile == null) {
+			jail.advance();
+		} else {
+			long start = System.nanoTime();
+			jail.advance();
+			profile.time(Profile.Phase.RELEASE, System.nanoTime() - start);
+		}
 
 	}
 
 	/**
-	 * Save current simulation state in results cache for the given tick
+	 * Counts the agents of the current simulation state. The given array is
+	 * filled with the number of quiet agents, jailed agents and rebelling
+	 * agents in that order.
 	 * 
-	 * @param tick
-	 *            the given tick
+	 * @param census
+	 *            the array to be filled
 	 */
-	private void save(int tick) {
+	@Override
+	protected void census(int[] census) {
 		int numQuietAgents = 0;
 		int numJailedAgents = 0;
 		int numRebels = 0;
@@ -258,9 +348,128 @@ public class Rebellion {
 			}
 		}
 
-		// write the values associated with the given tick to the results cache
-		results.append(
-				tick + "," + numQuietAgents + "," + numJailedAgents + "," + numRebels + "\n");
+		census[0] = numQuietAgents;
+		census[1] = numJailedAgents;
+		census[2] = numRebels;
+	}
+
+	/**
+	 * Records the state of every agent of the current simulation state in
+	 * order of creation
+	 * 
+	 * @param jailTerm
+	 *            the array to be filled with the agents' jail terms
+	 * @param position
+	 *            the array to be filled with the agents' locations
+	 * @param rebel
+	 *            the array to be filled with whether the agents rebel
+	 */
+	@Override
+	protected void snapshot(int[] jailTerm, int[] position, boolean[] rebel) {
+		int i = 0;
+		for (Agent agent : agents) {
+			jailTerm[i] = agent.getJail_term();
+			position[i] = world.positionOf(agent);
+			rebel[i] = agent.isRebel();
+			i++;
+		}
+	}
+
+	/**
+	 * Estimates the heap occupied by the world, the jail and the turtles
+	 * 
+	 * @return the estimated size in bytes
+	 */
+	@Override
+	protected long footprint() {
+		long size = world.footprint() + jail.footprint() + Footprint.array(Agent.class, agents.length)
+				+ Footprint.array(Cop.class, cops.length) + Footprint.array(Turtle.class, turtles.length)
+				+ Footprint.array(int.class, order.length);
+		for (Turtle turtle : turtles) {
+			size += Footprint.of(turtle.getClass());
+		}
+		return size;
+	}
+
+	/**
+	 * Writes the state of the source of randomness, the location of every
+	 * turtle, the occupants of every patch in order of arrival and the state of
+	 * every turtle to the given output
+	 * 
+	 * @param out
+	 *            the given output
+	 * @throws IOException
+	 *             if errors occur writing the output
+	 */
+	@Override
+	protected void checkpoint(DataOutput out) throws IOException {
+		out.writeLong(random.getState());
+		for (Turtle turtle : turtles) {
+			out.writeInt(world.positionOf(turtle));
+		}
+		// the order of arrival decides which of several rebels on a patch a
+		// cop arrests
+		Consumer<Turtle> arrival = turtle -> {
+			try {
+				out.writeInt(turtle.getId());
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		};
+		try {
+			for (int position = 0; position < world.getScale() * world.getScale(); position++) {
+				world.forEachOccupant(position, arrival);
+			}
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		for (Turtle turtle : turtles) {
+			turtle.checkpoint(out);
+		}
+	}
+
+	/**
+	 * Replaces the simulation state by the one written by
+	 * {@link #checkpoint(DataOutput)}
+	 * 
+	 * @param in
+	 *            the input to read the state from
+	 * @throws IOException
+	 *             if errors occur reading the input
+	 */
+	@Override
+	protected void restore(DataInput in) throws IOException {
+		// creating agents draws random numbers, which are discarded by
+		// restoring the source of randomness afterwards
+		world.clear();
+		create();
+		long state = in.readLong();
+		int[] positions = new int[turtles.length];
+		for (int id = 0; id < turtles.length; id++) {
+			positions[id] = in.readInt();
+		}
+		int[] arrivals = new int[turtles.length];
+		for (int i = 0; i < turtles.length; i++) {
+			arrivals[i] = in.readInt();
+		}
+		world.enter(Arrays.asList(turtles), positions, arrivals);
+		for (Turtle turtle : turtles) {
+			turtle.restore(in);
+		}
+		random.setState(state);
+	}
+
+	/**
+	 * Unmaps a world mapped to a file and deletes its scratch copy
+	 * 
+	 * @throws IOException
+	 *             if errors occur deleting the scratch copy
+	 */
+	@Override
+	public void close() throws IOException {
+		if (mapped != null) {
+			mapped.close();
+		}
 	}
 
 }
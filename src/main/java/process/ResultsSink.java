@@ -0,0 +1,154 @@
+package process;
+
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * A results sink receives the results of a simulation run while it is
+ * running: the run's parameters first, then the number of quiet, jailed and
+ * rebelling agents after each tick. Sinks decide on the format and write the
+ * results incrementally, so that they are neither kept in memory nor lost if
+ * a run is aborted.
+ * 
+ * @author Ferdinand
+ *
+ */
+public interface ResultsSink extends Closeable {
+
+	/**
+	 * Records the parameters of the simulation run
+	 * 
+	 * @param parameters
+	 *            the given parameters
+	 * @throws IOException
+	 *             if errors occur writing the results
+	 */
+	void header(Parameters parameters) throws IOException;
+
+	/**
+	 * Records the simulation state after the given tick
+	 * 
+	 * @param tick
+	 *            the given tick
+	 * @param quiet
+	 *            the number of quiet agents
+	 * @param jailed
+	 *            the number of jailed agents
+	 * @param rebels
+	 *            the number of rebelling agents
+	 * @throws IOException
+	 *             if errors occur writing the results
+	 */
+	void row(int tick, int quiet, int jailed, int rebels) throws IOException;
+
+	/**
+	 * Records the state of every agent after the given tick. Sinks that do not
+	 * support snapshots ignore them.
+	 * 
+	 * @param tick
+	 *            the given tick
+	 * @param jailTerm
+	 *            the agents' jail terms
+	 * @param position
+	 *            the agents' locations as index x * scale + y of their patches
+	 * @param rebel
+	 *            whether the agents rebel
+	 * @throws IOException
+	 *             if errors occur writing the results
+	 */
+	default void snapshot(int tick, int[] jailTerm, int[] position, boolean[] rebel) throws IOException {
+	}
+
+	/**
+	 * Records that the run reached an equilibrium with the given tick
+	 * 
+	 * @param tick
+	 *            the given tick
+	 * @param reason
+	 *            the kind of equilibrium
+	 * @param period
+	 *            the period of a periodic equilibrium, 0 otherwise
+	 * @throws IOException
+	 *             if errors occur writing the results
+	 */
+	void equilibrium(int tick, Equilibrium.Reason reason, int period) throws IOException;
+
+	/**
+	 * Writes all recorded results
+	 * 
+	 * @throws IOException
+	 *             if errors occur writing the results
+	 */
+	void flush() throws IOException;
+
+	/**
+	 * Writes all recorded results and saves what is needed to continue them
+	 * with {@link #resume(Parameters, DataInput)} to the given checkpoint
+	 * 
+	 * @param checkpoint
+	 *            the given checkpoint
+	 * @throws IOException
+	 *             if errors occur writing the results or the checkpoint
+	 */
+	void checkpoint(DataOutput checkpoint) throws IOException;
+
+	/**
+	 * Forces the results written so far to the storage device. Unlike the
+	 * other methods, this may be called by another thread than the one
+	 * recording results.
+	 * 
+	 * @throws IOException
+	 *             if errors occur writing the results
+	 */
+	void force() throws IOException;
+
+	/**
+	 * Opens the sink selected by the given parameters for results stored in a
+	 * file with the given name and the format's extension
+	 * 
+	 * @param parameters
+	 *            the given parameters
+	 * @param name
+	 *            the given name without extension
+	 * @return the opened sink
+	 * @throws IOException
+	 *             if errors occur opening the file
+	 */
+	static ResultsSink open(Parameters parameters, String name) throws IOException {
+		switch (parameters.getFormat()) {
+		case "csv":
+			return new CsvSink(Paths.get(name + ".csv"), parameters.getFlush_interval());
+		case "binary":
+			return new BinarySink(Paths.get(name + ".bin"), parameters.getFlush_interval());
+		default:
+			throw new IllegalArgumentException("Unknown format " + parameters.getFormat());
+		}
+	}
+
+	/**
+	 * Reopens the sink saved in the given checkpoint, discarding the results
+	 * recorded after the checkpoint was taken
+	 * 
+	 * @param parameters
+	 *            the parameters of the checkpointed run
+	 * @param checkpoint
+	 *            the given checkpoint, positioned at the sink's state
+	 * @return the reopened sink
+	 * @throws IOException
+	 *             if errors occur reading the checkpoint or opening the file
+	 */
+	static ResultsSink resume(Parameters parameters, DataInput checkpoint) throws IOException {
+		switch (parameters.getFormat()) {
+		case "csv":
+			return CsvSink.resume(checkpoint, parameters.getFlush_interval());
+		case "binary":
+			return BinarySink.resume(checkpoint, parameters.getFlush_interval());
+		default:
+			throw new IllegalArgumentException("Unknown format " + parameters.getFormat());
+		}
+	}
+
+}
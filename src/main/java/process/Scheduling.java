@@ -0,0 +1,25 @@
+package process;
+
+/**
+ * The turtles shuffled and visited during a tick. Jailed agents neither move
+ * nor act, so leaving them out does not change the distribution of the order
+ * in which the other turtles act, but it changes the random numbers drawn for
+ * shuffling.
+ * 
+ * @author Ferdinand
+ *
+ */
+public enum Scheduling {
+
+	/**
+	 * all turtles, which reproduces the random ordering of the original model
+	 * for a given seed
+	 */
+	ALL,
+
+	/**
+	 * cops and agents not in jail at the start of a tick only
+	 */
+	ACTIVE
+
+}
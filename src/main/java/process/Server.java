@@ -0,0 +1,539 @@
+package process;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A server runs simulations submitted over HTTP as jobs within one JVM, so
+ * that many small runs do not each start a JVM of their own. It only listens
+ * on the loopback interface. A job is specified by a JSON object whose members
+ * are parameter names and values as for a single run, e.g. {"seed": 42,
+ * "ticks": 500, "compact": true}. The server offers
+ * <ul>
+ * <li>POST /jobs to queue a job, answered with its state,</li>
+ * <li>GET /jobs to list the state of all jobs,</li>
+ * <li>GET /jobs/<id> to get the state of a job,</li>
+ * <li>GET /jobs/<id>/results to wait for a job and download its results
+ * and</li>
+ * <li>DELETE /jobs/<id> to cancel a queued or running job.</li>
+ * </ul>
+ * 
+ * Jobs are run by a bounded number of workers, -workers=<n>, and at most
+ * -queue=<n> jobs wait for a worker; further jobs are rejected until some
+ * finish. The results of job i are stored in <directory>/<i>, where the
+ * directory is set by -directory=<path>, as is its mapped world, whatever
+ * path a client passes as world_file, and the server listens on
+ * -port=<n>. Requests are served on virtual threads if the JVM provides
+ * them, so that clients waiting for results do not occupy platform threads,
+ * and on a growing pool of platform threads otherwise.
+ * 
+ * @author Ferdinand
+ *
+ */
+public class Server {
+
+	/**
+	 * the name of a job's mapped world within its directory
+	 */
+	private static final String WORLD_FILE = "world.bin";
+
+	/**
+	 * the HTTP server receiving requests
+	 */
+	private final HttpServer http;
+
+	/**
+	 * the threads serving requests
+	 */
+	private final ExecutorService handlers;
+
+	/**
+	 * the workers running jobs
+	 */
+	private final ThreadPoolExecutor workers;
+
+	/**
+	 * the directory of the jobs' results
+	 */
+	private final Path directory;
+
+	/**
+	 * the jobs by number
+	 */
+	private final Map<Integer, Job> jobs;
+
+	/**
+	 * the number of jobs submitted
+	 */
+	private final AtomicInteger submitted;
+
+	/**
+	 * Creates a server listening on the given port of the loopback interface
+	 * 
+	 * @param port
+	 *            the given port, 0 for any free port
+	 * @param workers
+	 *            the number of concurrent jobs
+	 * @param queue
+	 *            the maximum number of jobs waiting for a worker
+	 * @param directory
+	 *            the directory of the jobs' results
+	 * @throws IOException
+	 *             if the port cannot be bound
+	 */
+	public Server(int port, int workers, int queue, Path directory) throws IOException {
+		this.directory = directory;
+		this.jobs = new ConcurrentSkipListMap<Integer, Job>();
+		this.submitted = new AtomicInteger();
+		this.workers = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(queue));
+		this.handlers = handlers();
+		this.http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		http.createContext("/jobs", this::handle);
+		http.setExecutor(handlers);
+	}
+
+	/**
+	 * Main method and entry point of a simulation server
+	 * 
+	 * @param args
+	 *            command-line arguments used to specify the server's settings
+	 */
+	public static void main(String[] args) {
+		int port = 8090;
+		int workers = Runtime.getRuntime().availableProcessors();
+		int queue = 10000;
+		Path directory = Paths.get("jobs");
+
+		// go through all words
+		for (int i = 0; i < args.length; i++) {
+
+			// separate each in parameter name and value
+			String[] parts = args[i].split("=");
+			String parameterName = parts[0].substring(1);
+
+			try {
+				switch (parameterName) {
+				case "port":
+					port = Integer.parseInt(parts[1]);
+					break;
+				case "workers":
+					workers = Integer.parseInt(parts[1]);
+					break;
+				case "queue":
+					queue = Integer.parseInt(parts[1]);
+					break;
+				case "directory":
+					directory = Paths.get(parts[1]);
+					break;
+				default:
+					throw new IllegalArgumentException();
+				}
+			} catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+				System.out.println("The parameter " + parameterName + " you entered is invalid");
+				return;
+			}
+		}
+
+		try {
+			Server server = new Server(port, workers, queue, directory);
+			server.start();
+			System.out.println("Listening on http://localhost:" + server.getPort() + "/jobs");
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Starts accepting requests
+	 */
+	public void start() {
+		http.start();
+	}
+
+	/**
+	 * Stops accepting requests and cancels all jobs
+	 */
+	public void stop() {
+		http.stop(0);
+		for (Job job : jobs.values()) {
+			job.cancel();
+		}
+		workers.shutdown();
+		handlers.shutdownNow();
+	}
+
+	/**
+	 * @return the port the server listens on
+	 */
+	public int getPort() {
+		return http.getAddress().getPort();
+	}
+
+	/**
+	 * Queues a job with the given parameters
+	 * 
+	 * @param parameters
+	 *            the given parameters
+	 * @return the queued job
+	 * @throws RejectedExecutionException
+	 *             if the queue is full
+	 */
+	Job submit(Parameters parameters) {
+		int id = submitted.incrementAndGet();
+		Path results = directory.resolve(Integer.toString(id));
+		// jobs are neither checkpointed nor interfere via the same files, so
+		// neither a mapped world nor results are written outside the job's
+		// directory
+		if (!parameters.getWorld_file().isEmpty()) {
+			parameters = parameters.with("world_file", results.resolve(WORLD_FILE).toString());
+		}
+		Job job = new Job(id, parameters.with("checkpoint_interval", "0"), results);
+		job.setFuture(workers.submit(job));
+		jobs.put(id, job);
+		return job;
+	}
+
+	/**
+	 * Parses the given JSON object of parameter names and values into the
+	 * parameters of a run. Values may be strings, numbers or booleans.
+	 * 
+	 * @param json
+	 *            the given JSON object
+	 * @return the parameters
+	 * @throws IllegalArgumentException
+	 *             if the object is malformed or a parameter is invalid
+	 */
+	static Parameters parse(String json) {
+		Parameters parameters = new Parameters();
+		int[] at = { skip(json, 0) };
+		expect(json, at, '{');
+		if (peek(json, at) == '}') {
+			at[0]++;
+		} else {
+			do {
+				String name = string(json, at);
+				expect(json, at, ':');
+				String value = peek(json, at) == '"' ? string(json, at) : literal(json, at);
+				parameters = parameters.with(name, value);
+			} while (next(json, at) == ',');
+			at[0]--;
+			expect(json, at, '}');
+		}
+		if (skip(json, at[0]) != json.length()) {
+			throw new IllegalArgumentException("Unexpected content after the object");
+		}
+		return parameters;
+	}
+
+	/**
+	 * Returns the given text as a JSON string
+	 * 
+	 * @param text
+	 *            the given text
+	 * @return the JSON string
+	 */
+	static String quote(String text) {
+		StringBuilder json = new StringBuilder("\"");
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == '"' || c == '\\') {
+				json.append('\\').append(c);
+			} else if (c < ' ') {
+				json.append(String.format("\\u%04x", (int) c));
+			} else {
+				json.append(c);
+			}
+		}
+		return json.append('"').toString();
+	}
+
+	/**
+	 * Serves a request to the jobs
+	 * 
+	 * @param exchange
+	 *            the request and its response
+	 * @throws IOException
+	 *             if errors occur reading the request or writing the response
+	 */
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			String method = exchange.getRequestMethod();
+			String[] path = exchange.getRequestURI().getPath().replaceAll("/+$", "").split("/");
+			// the path is split into "", "jobs" and optionally id and "results"
+			if (path.length == 2 && method.equals("POST")) {
+				Job job = submit(parse(read(exchange.getRequestBody())));
+				exchange.getResponseHeaders().set("Location", "/jobs/" + job.getId());
+				respond(exchange, 201, job.toJson());
+			} else if (path.length == 2 && method.equals("GET")) {
+				List<String> states = new ArrayList<String>();
+				for (Job job : jobs.values()) {
+					states.add(job.toJson());
+				}
+				respond(exchange, 200, "[" + String.join(",", states) + "]");
+			} else if (path.length == 3 || (path.length == 4 && path[3].equals("results"))) {
+				Job job = jobs.get(Integer.valueOf(path[2]));
+				if (job == null) {
+					respond(exchange, 404, error("No job " + path[2]));
+				} else if (path.length == 4 && method.equals("GET")) {
+					results(exchange, job);
+				} else if (method.equals("GET")) {
+					respond(exchange, 200, job.toJson());
+				} else if (method.equals("DELETE")) {
+					job.cancel();
+					// free the place of a cancelled job in the queue
+					workers.purge();
+					respond(exchange, 200, job.toJson());
+				} else {
+					respond(exchange, 405, error("Method " + method + " not allowed"));
+				}
+			} else {
+				respond(exchange, 404, error("No resource " + exchange.getRequestURI().getPath()));
+			}
+		} catch (IllegalArgumentException e) {
+			respond(exchange, 400, error("Invalid job: " + e.getMessage()));
+		} catch (RejectedExecutionException e) {
+			respond(exchange, 503, error("The queue of jobs is full"));
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Waits for the given job and responds with its results once done
+	 * 
+	 * @param exchange
+	 *            the request and its response
+	 * @param job
+	 *            the given job
+	 * @throws IOException
+	 *             if errors occur reading the results or writing the response
+	 */
+	private void results(HttpExchange exchange, Job job) throws IOException {
+		try {
+			job.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			respond(exchange, 503, error("The server is stopping"));
+			return;
+		}
+		if (job.getStatus() != Job.Status.DONE) {
+			respond(exchange, 409, job.toJson());
+			return;
+		}
+		Path results = job.getResults();
+		exchange.getResponseHeaders().set("Content-Type",
+				results.toString().endsWith(".csv") ? "text/csv" : "application/octet-stream");
+		exchange.sendResponseHeaders(200, Files.size(results));
+		try (OutputStream out = exchange.getResponseBody()) {
+			Files.copy(results, out);
+		}
+	}
+
+	/**
+	 * Responds to the given request with the given status code and JSON
+	 * 
+	 * @param exchange
+	 *            the request and its response
+	 * @param code
+	 *            the given status code
+	 * @param json
+	 *            the given JSON
+	 * @throws IOException
+	 *             if errors occur writing the response
+	 */
+	private static void respond(HttpExchange exchange, int code, String json) throws IOException {
+		byte[] body = json.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(code, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	/**
+	 * Returns a JSON object holding the given error message
+	 * 
+	 * @param message
+	 *            the given message
+	 * @return the JSON object
+	 */
+	private static String error(String message) {
+		return "{\"error\":" + quote(message) + "}";
+	}
+
+	/**
+	 * Reads the given request body as UTF-8 text
+	 * 
+	 * @param in
+	 *            the given request body
+	 * @return the text
+	 * @throws IOException
+	 *             if errors occur reading the body
+	 */
+	private static String read(InputStream in) throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		for (int n; (n = in.read(buffer)) > 0;) {
+			body.write(buffer, 0, n);
+		}
+		return new String(body.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Returns an executor running every task on a virtual thread of its own,
+	 * if the JVM provides them, or on a cached platform thread otherwise
+	 * 
+	 * @return the executor
+	 */
+	private static ExecutorService handlers() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool();
+		}
+	}
+
+	/**
+	 * Returns the index of the first character at or after the given index
+	 * that is no whitespace
+	 * 
+	 * @param json
+	 *            the text being parsed
+	 * @param i
+	 *            the given index
+	 * @return the index
+	 */
+	private static int skip(String json, int i) {
+		while (i < json.length() && Character.isWhitespace(json.charAt(i))) {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Returns the next character that is no whitespace without consuming it
+	 * 
+	 * @param json
+	 *            the text being parsed
+	 * @param at
+	 *            the position of parsing
+	 * @return the character
+	 */
+	private static char peek(String json, int[] at) {
+		at[0] = skip(json, at[0]);
+		if (at[0] >= json.length()) {
+			throw new IllegalArgumentException("Unexpected end of the object");
+		}
+		return json.charAt(at[0]);
+	}
+
+	/**
+	 * Consumes and returns the next character that is no whitespace
+	 * 
+	 * @param json
+	 *            the text being parsed
+	 * @param at
+	 *            the position of parsing
+	 * @return the character
+	 */
+	private static char next(String json, int[] at) {
+		char c = peek(json, at);
+		at[0]++;
+		return c;
+	}
+
+	/**
+	 * Consumes the given character, which must be next
+	 * 
+	 * @param json
+	 *            the text being parsed
+	 * @param at
+	 *            the position of parsing
+	 * @param expected
+	 *            the given character
+	 */
+	private static void expect(String json, int[] at, char expected) {
+		if (next(json, at) != expected) {
+			throw new IllegalArgumentException("Expected " + expected + " at " + (at[0] - 1));
+		}
+	}
+
+	/**
+	 * Consumes a JSON string and returns its value
+	 * 
+	 * @param json
+	 *            the text being parsed
+	 * @param at
+	 *            the position of parsing
+	 * @return the value
+	 */
+	private static String string(String json, int[] at) {
+		expect(json, at, '"');
+		StringBuilder value = new StringBuilder();
+		for (int i = at[0]; i < json.length(); i++) {
+			char c = json.charAt(i);
+			if (c == '"') {
+				at[0] = i + 1;
+				return value.toString();
+			} else if (c == '\\' && i + 1 < json.length()) {
+				char escaped = json.charAt(++i);
+				if (escaped == 'u' && i + 4 < json.length()) {
+					value.append((char) Integer.parseInt(json.substring(i + 1, i + 5), 16));
+					i += 4;
+				} else {
+					value.append(escaped == 'n' ? '\n' : escaped == 't' ? '\t' : escaped);
+				}
+			} else {
+				value.append(c);
+			}
+		}
+		throw new IllegalArgumentException("Unterminated string");
+	}
+
+	/**
+	 * Consumes a JSON number or boolean and returns it as text
+	 * 
+	 * @param json
+	 *            the text being parsed
+	 * @param at
+	 *            the position of parsing
+	 * @return the text
+	 */
+	private static String literal(String json, int[] at) {
+		int start = skip(json, at[0]);
+		int end = start;
+		while (end < json.length() && (Character.isLetterOrDigit(json.charAt(end))
+				|| "+-.".indexOf(json.charAt(end)) >= 0)) {
+			end++;
+		}
+		if (end == start) {
+			throw new IllegalArgumentException("Expected a value at " + start);
+		}
+		at[0] = end;
+		return json.substring(start, end);
+	}
+
+}
@@ -0,0 +1,401 @@
+package process;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * A simulation runs the Rebellion model tick by tick and records the number
+ * of quiet, jailed and rebelling agents after each tick in a results sink.
+ * Subclasses determine how turtles and the world are represented.
+ * 
+ * Optionally, the number of rebels is watched for an {@link Equilibrium}.
+ * Once it is reached, the run stops or continues recording only every given
+ * number of ticks, and the sink is told the tick and kind of equilibrium.
+ * 
+ * Optionally, the state of the run is saved to {@link Checkpoints} every
+ * given number of ticks, from which it can be resumed with the same results
+ * as if it had not been interrupted. If profiling is enabled, the phases of
+ * every tick are recorded in a {@link Profile}, which is printed at the end of
+ * the run. If metrics are enabled, the progress of the run is published as
+ * {@link Metrics} while it ticks, which count arrests with a profile as well.
+ * 
+ * A simulation is to be closed once run, which releases the threads or files
+ * some simulations hold.
+ * 
+ * @author Ferdinand
+ *
+ */
+public abstract class Simulation implements Closeable {
+
+	/**
+	 * the parameters of a simulation run
+	 */
+	protected final Parameters parameters;
+
+	/**
+	 * the profile of the phases of every tick, null if profiling is disabled
+	 */
+	protected final Profile profile;
+
+	/**
+	 * the published progress of the run, null if metrics are disabled
+	 */
+	private final Metrics metrics;
+
+	/**
+	 * the sink receiving the per-tick results
+	 */
+	private ResultsSink results;
+
+	/**
+	 * the checkpoints the state of the run is saved to, null if none
+	 */
+	private Checkpoints checkpoints;
+
+	/**
+	 * the number of ticks performed
+	 */
+	private int currentTick;
+
+	/**
+	 * the number of quiet, jailed and rebelling agents of the current state
+	 */
+	private final int[] census;
+
+	/**
+	 * the jail term of every agent for snapshots
+	 */
+	private int[] jailTerms;
+
+	/**
+	 * the location of every agent for snapshots
+	 */
+	private int[] positions;
+
+	/**
+	 * the rebel status of every agent for snapshots
+	 */
+	private boolean[] rebels;
+
+	/**
+	 * the detector of an equilibrium, null if disabled
+	 */
+	private Equilibrium equilibrium;
+
+	/**
+	 * the tick an equilibrium was reached at, -1 if none
+	 */
+	private int equilibriumTick;
+
+	/**
+	 * Creates a new simulation with the given parameters
+	 * 
+	 * @param parameters
+	 *            the parameters of the simulation run
+	 */
+	protected Simulation(Parameters parameters) {
+		this.parameters = parameters;
+		this.profile = parameters.isProfile() || parameters.isMetrics() ? new Profile() : null;
+		this.metrics = parameters.isMetrics() ? new Metrics(parameters) : null;
+		census = new int[3];
+	}
+
+	/**
+	 * Creates the simulation selected by the given parameters
+	 * 
+	 * @param parameters
+	 *            the given parameters
+	 * @return a synchronous, incremental, compact or object-based simulation
+	 */
+	public static Simulation create(Parameters parameters) {
+		// enable/disable the primitive column store for turtle state,
+		// synchronous updates and incremental decisions
+		if (parameters.isSynchronous()) {
+			return new SynchronousRebellion(parameters);
+		} else if (parameters.isIncremental()) {
+			return new IncrementalRebellion(parameters);
+		} else if (parameters.isCompact()) {
+			return new CompactRebellion(parameters);
+		} else {
+			return new Rebellion(parameters);
+		}
+	}
+
+	/**
+	 * Prepares a simulation run by recording the simulation parameters in the
+	 * given sink and populating the world with cops and agents
+	 * 
+	 * @param results
+	 *            the sink receiving the results of the run
+	 * @throws IOException
+	 *             if errors occur writing the results
+	 */
+	public void setup(ResultsSink results) throws IOException {
+		setup(results, null);
+	}
+
+	/**
+	 * Prepares a simulation run by recording the simulation parameters in the
+	 * given sink and populating the world with cops and agents. The state of
+	 * the run is saved to the given checkpoints every given number of ticks.
+	 * 
+	 * @param results
+	 *            the sink receiving the results of the run
+	 * @param checkpoints
+	 *            the checkpoints receiving the state of the run, null for none
+	 * @throws IOException
+	 *             if errors occur writing the results
+	 */
+	public void setup(ResultsSink results, Checkpoints checkpoints) throws IOException {
+		prepare(results, checkpoints);
+		results.header(parameters);
+		currentTick = 0;
+		equilibriumTick = -1;
+
+		populate();
+	}
+
+	/**
+	 * Prepares the continuation of the simulation run saved in the given
+	 * checkpoint, whose parameters this simulation has been created with
+	 * 
+	 * @param results
+	 *            the sink receiving the results of the run, reopened from the
+	 *            given checkpoint
+	 * @param checkpoints
+	 *            the checkpoints receiving the state of the run, null for none
+	 * @param checkpoint
+	 *            the given checkpoint, positioned after the sink's state
+	 * @throws IOException
+	 *             if errors occur reading the checkpoint
+	 */
+	public void resume(ResultsSink results, Checkpoints checkpoints, DataInput checkpoint)
+			throws IOException {
+		prepare(results, checkpoints);
+		currentTick = checkpoint.readInt();
+		equilibriumTick = checkpoint.readInt();
+		if (equilibrium != null) {
+			equilibrium.restore(checkpoint);
+		}
+
+		restore(checkpoint);
+	}
+
+	/**
+	 * Perform a simulation run with the given number of ticks. A resumed run
+	 * continues with the tick after its checkpoint.
+	 * 
+	 * @param ticks
+	 *            the given number of ticks
+	 * @throws IOException
+	 *             if errors occur writing the results
+	 */
+	public void go(int ticks) throws IOException {
+		// save the initial simulation state unless resuming a run
+		if (currentTick == 0) {
+			save(0);
+		}
+		int interval = parameters.getCheckpoint_interval();
+		if (metrics != null) {
+			metrics.start(currentTick, ticks, footprint());
+		}
+		try {
+			while (currentTick < ticks) {
+				currentTick++;
+				if (profile == null) {
+					tick();
+					// save the simulation state after each tick
+					save(currentTick);
+				} else {
+					profile.startTick();
+					long start = System.nanoTime();
+					tick();
+					long ticked = System.nanoTime();
+					save(currentTick);
+					profile.time(Profile.Phase.SAVE, System.nanoTime() - ticked);
+					profile.endTick(currentTick, ticked - start);
+					if (metrics != null) {
+						metrics.record(currentTick, ticked - start, census,
+								profile.counted(Profile.Counter.ARRESTS));
+					}
+				}
+				// stop once in equilibrium unless sampling it sparsely
+				if (equilibriumTick >= 0 && parameters.getEquilibrium_interval() == 0) {
+					break;
+				}
+				if (checkpoints != null && interval > 0 && currentTick % interval == 0) {
+					checkpoint();
+				}
+			}
+		} finally {
+			if (metrics != null) {
+				metrics.stop();
+			}
+		}
+		results.flush();
+		if (parameters.isProfile()) {
+			profile.print(System.out);
+		}
+	}
+
+	/**
+	 * Releases the threads or files held by the simulation, after which it
+	 * cannot be run any more. Holds nothing unless overridden.
+	 * 
+	 * @throws IOException
+	 *             if errors occur releasing files
+	 */
+	@Override
+	public void close() throws IOException {
+	}
+
+	/**
+	 * Resets the simulation state, creates cops and agents and adds them to
+	 * the world
+	 */
+	protected abstract void populate();
+
+	/**
+	 * Perform a simulation tick
+	 */
+	protected abstract void tick();
+
+	/**
+	 * Counts the agents of the current simulation state. The given array is
+	 * filled with the number of quiet agents, jailed agents and rebelling
+	 * agents in that order.
+	 * 
+	 * @param census
+	 *            the array to be filled
+	 */
+	protected abstract void census(int[] census);
+
+	/**
+	 * Records the state of every agent of the current simulation state in
+	 * order of creation. The given arrays are as long as the number of agents.
+	 * 
+	 * @param jailTerm
+	 *            the array to be filled with the agents' jail terms
+	 * @param position
+	 *            the array to be filled with the agents' locations as index x *
+	 *            scale + y of their patches
+	 * @param rebel
+	 *            the array to be filled with whether the agents rebel
+	 */
+	protected abstract void snapshot(int[] jailTerm, int[] position, boolean[] rebel);
+
+	/**
+	 * Estimates the heap occupied by the world and the turtles of the current
+	 * simulation state
+	 * 
+	 * @return the estimated size in bytes
+	 */
+	protected abstract long footprint();
+
+	/**
+	 * Writes the simulation state, including the state of the source of
+	 * randomness, to the given output, so that a simulation restoring it
+	 * continues with the same results
+	 * 
+	 * @param out
+	 *            the given output
+	 * @throws IOException
+	 *             if errors occur writing the output
+	 */
+	protected abstract void checkpoint(DataOutput out) throws IOException;
+
+	/**
+	 * Replaces the simulation state by the one written by
+	 * {@link #checkpoint(DataOutput)} instead of populating the world
+	 * 
+	 * @param in
+	 *            the input to read the state from
+	 * @throws IOException
+	 *             if errors occur reading the input
+	 */
+	protected abstract void restore(DataInput in) throws IOException;
+
+	/**
+	 * Sets the sink and checkpoints of a simulation run and creates the
+	 * detector of an equilibrium, if enabled
+	 * 
+	 * @param results
+	 *            the sink receiving the results of the run
+	 * @param checkpoints
+	 *            the checkpoints receiving the state of the run, null for none
+	 */
+	private void prepare(ResultsSink results, Checkpoints checkpoints) {
+		this.results = results;
+		this.checkpoints = checkpoints;
+		equilibrium = parameters.getEquilibrium_window() > 0
+				? new Equilibrium(parameters.getEquilibrium_window(), parameters.getEquilibrium_tolerance())
+				: null;
+	}
+
+	/**
+	 * Encodes the state of the run after the current tick and passes it to the
+	 * checkpoints, which write it in the background
+	 * 
+	 * @throws IOException
+	 *             if errors occur writing the results or the previous
+	 *             checkpoint
+	 */
+	private void checkpoint() throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(buffer);
+		Checkpoints.writeHeader(out, parameters);
+		results.checkpoint(out);
+		out.writeInt(currentTick);
+		out.writeInt(equilibriumTick);
+		if (equilibrium != null) {
+			equilibrium.checkpoint(out);
+		}
+		checkpoint(out);
+		out.flush();
+		checkpoints.write(buffer.toByteArray(), results);
+	}
+
+	/**
+	 * Save current simulation state in the results sink for the given tick
+	 * 
+	 * @param tick
+	 *            the given tick
+	 * @throws IOException
+	 *             if errors occur writing the results
+	 */
+	private void save(int tick) throws IOException {
+		census(census);
+
+		if (equilibrium != null && equilibriumTick < 0
+				&& equilibrium.observe(census[2], census[0] + census[1] + census[2])) {
+			equilibriumTick = tick;
+			results.equilibrium(tick, equilibrium.getReason(), equilibrium.getPeriod());
+		}
+		// record every given number of ticks only once in equilibrium
+		int sampling = parameters.getEquilibrium_interval();
+		if (equilibriumTick >= 0 && sampling > 0 && (tick - equilibriumTick) % sampling != 0) {
+			return;
+		}
+
+		// pass the values associated with the given tick to the results sink
+		results.row(tick, census[0], census[1], census[2]);
+
+		// pass the state of every agent every given number of ticks
+		int interval = parameters.getSnapshot_interval();
+		if (interval > 0 && tick % interval == 0) {
+			int agents = census[0] + census[1] + census[2];
+			if (jailTerms == null || jailTerms.length != agents) {
+				jailTerms = new int[agents];
+				positions = new int[agents];
+				rebels = new boolean[agents];
+			}
+			snapshot(jailTerms, positions, rebels);
+			results.snapshot(tick, jailTerms, positions, rebels);
+		}
+	}
+
+}
@@ -0,0 +1,189 @@
+package process;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A sweep runs a simulation for every combination of the given parameter
+ * values and a given number of replicates each. All runs share one JVM and
+ * are executed concurrently by a bounded number of workers.
+ * 
+ * Parameters are declared in the same form as for a single run, but a value
+ * may also be a range of numbers <from>:<to>:<step>, a range of integers
+ * <from>..<to> or a comma-separated list of values. Additionally,
+ * -replicates=<n> sets the number of replicates per configuration and
+ * -workers=<n> the number of concurrent runs. Replicate r of a configuration
+ * runs with the configuration's seed plus r, so that all configurations are
+ * compared on the same random numbers. The results of the i-th run are stored
+ * in results_<i> with the extension of the selected format.
+ * 
+ * @author Ferdinand
+ *
+ */
+public class Sweep {
+
+	/**
+	 * Main method and entry point of a parameter sweep
+	 * 
+	 * @param args
+	 *            command-line arguments used to specify parameter ranges
+	 */
+	public static void main(String[] args) {
+		int replicates = 1;
+		int workers = Runtime.getRuntime().availableProcessors();
+		List<Parameters> configurations = new ArrayList<Parameters>();
+		configurations.add(new Parameters());
+
+		// go through all words
+		for (int i = 0; i < args.length; i++) {
+
+			// separate each in parameter name and value
+			String[] parts = args[i].split("=");
+			String parameterName = parts[0].substring(1);
+
+			try {
+				switch (parameterName) {
+				case "replicates":
+					replicates = Integer.parseInt(parts[1]);
+					break;
+				case "workers":
+					workers = Integer.parseInt(parts[1]);
+					break;
+				default:
+					configurations = combine(configurations, parameterName, values(parts[1]));
+				}
+			} catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+				System.out.println("The parameter " + parameterName + " you entered is invalid");
+				return;
+			}
+		}
+
+		List<Parameters> runs = new ArrayList<Parameters>();
+		for (Parameters configuration : configurations) {
+			for (int r = 0; r < replicates; r++) {
+				runs.add(configuration.with("seed", Long.toString(configuration.getSeed() + r)));
+			}
+		}
+
+		run(runs, workers);
+	}
+
+	/**
+	 * Runs a simulation for each of the given parameters on the given number
+	 * of workers and stores the results of the i-th run in results_<i>
+	 * 
+	 * @param runs
+	 *            the parameters of each run
+	 * @param workers
+	 *            the number of concurrent runs
+	 */
+	public static void run(List<Parameters> runs, int workers) {
+		ExecutorService executor = Executors.newFixedThreadPool(workers);
+		try {
+			List<Future<Void>> futures = new ArrayList<Future<Void>>();
+			for (int i = 0; i < runs.size(); i++) {
+				futures.add(executor.submit(task(runs.get(i), "results_" + i)));
+			}
+			for (int i = 0; i < futures.size(); i++) {
+				try {
+					futures.get(i).get();
+				} catch (ExecutionException e) {
+					System.out.println("Run " + i + " failed: " + e.getCause());
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Returns a task that performs a simulation run with the given parameters
+	 * and stores its results in a file with the given name
+	 * 
+	 * @param parameters
+	 *            the given parameters
+	 * @param name
+	 *            the given name without extension
+	 * @return the task
+	 */
+	private static Callable<Void> task(Parameters parameters, String name) {
+		return () -> {
+			try (Simulation simulation = Simulation.create(parameters);
+					ResultsSink results = ResultsSink.open(parameters, name)) {
+				simulation.setup(results);
+				simulation.go(parameters.getTicks());
+			}
+			return null;
+		};
+	}
+
+	/**
+	 * Returns every combination of the given configurations and the given
+	 * values of the parameter with the given name
+	 * 
+	 * @param configurations
+	 *            the given configurations
+	 * @param parameterName
+	 *            the name of the parameter
+	 * @param values
+	 *            the values of the parameter
+	 * @return the combined configurations
+	 */
+	private static List<Parameters> combine(List<Parameters> configurations, String parameterName,
+			List<String> values) {
+		List<Parameters> combinations = new ArrayList<Parameters>();
+		for (Parameters configuration : configurations) {
+			for (String value : values) {
+				combinations.add(configuration.with(parameterName, value));
+			}
+		}
+		return combinations;
+	}
+
+	/**
+	 * Expands the given value declaration into its values. A declaration is
+	 * either a range of numbers <from>:<to>:<step>, a range of integers
+	 * <from>..<to>, a comma-separated list of values or a single value. Ranges
+	 * include both ends.
+	 * 
+	 * @param declaration
+	 *            the given value declaration
+	 * @return the values
+	 */
+	static List<String> values(String declaration) {
+		List<String> values = new ArrayList<String>();
+		if (declaration.contains(":")) {
+			String[] range = declaration.split(":");
+			// calculate exactly to avoid rounding errors in the values
+			BigDecimal from = new BigDecimal(range[0]);
+			BigDecimal to = new BigDecimal(range[1]);
+			BigDecimal step = new BigDecimal(range[2]);
+			if (step.signum() <= 0) {
+				throw new IllegalArgumentException("Step must be positive: " + declaration);
+			}
+			for (BigDecimal value = from; value.compareTo(to) <= 0; value = value.add(step)) {
+				values.add(value.toPlainString());
+			}
+		} else if (declaration.contains("..")) {
+			String[] range = declaration.split("\\.\\.");
+			int to = Integer.parseInt(range[1]);
+			for (int value = Integer.parseInt(range[0]); value <= to; value++) {
+				values.add(Integer.toString(value));
+			}
+		} else {
+			for (String value : declaration.split(",")) {
+				values.add(value);
+			}
+		}
+		return values;
+	}
+
+}
@@ -0,0 +1,396 @@
+package process;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import world.Footprint;
+
+/**
+ * A synchronous rebellion updates all turtles at once instead of one after
+ * another. During a tick, every turtle decides on the basis of the state at
+ * the end of the previous tick, which is read-only while the world is
+ * evaluated in parallel in tiles of rows. The decisions are then committed in
+ * a deterministic order: agents change their rebel status, cops arrest their
+ * suspects if these still rebel or move otherwise in order of their ids, and
+ * agents move in order of their ids.
+ * 
+ * Random draws depend only on the run's seed, the tick, the turtle and the
+ * purpose of the draw, so results do not depend on the number of threads.
+ * 
+ * @author Ferdinand
+ *
+ */
+public class SynchronousRebellion extends CompactRebellion {
+
+	/**
+	 * the maximum number of rows evaluated by a single task
+	 */
+	private static final int TILE_ROWS = 8;
+
+	/**
+	 * the draw selecting a turtle's new patch
+	 */
+	private static final int MOVE_DRAW = 0;
+
+	/**
+	 * the draw selecting a cop's suspect
+	 */
+	private static final int SUSPECT_DRAW = 1;
+
+	/**
+	 * the draw determining a suspect's jail time
+	 */
+	private static final int SENTENCE_DRAW = 2;
+
+	/**
+	 * the pool evaluating tiles in parallel
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * the seed all random draws of a run are derived from
+	 */
+	private long seed;
+
+	/**
+	 * the number of the current tick
+	 */
+	private long tickNumber;
+
+	/**
+	 * the patch each turtle proposes to move to, NONE if staying
+	 */
+	private int[] proposal;
+
+	/**
+	 * whether each active agent decided to rebel
+	 */
+	private boolean[] decision;
+
+	/**
+	 * the agent each cop decided to arrest, NONE if none
+	 */
+	private int[] suspect;
+
+	/**
+	 * the jail time each cop sentences its suspect to
+	 */
+	private int[] sentence;
+
+	/**
+	 * the tile of the whole world, whose tiles and their buffers are reused
+	 * in every tick
+	 */
+	private Tile world;
+
+	/**
+	 * Creates a new synchronous rebellion with the given parameters
+	 * 
+	 * @param parameters
+	 *            the parameters of the simulation run
+	 */
+	public SynchronousRebellion(Parameters parameters) {
+		super(parameters);
+		int threads = parameters.getThreads();
+		pool = new ForkJoinPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Resets the simulation state, creates cops and agents and adds them to
+	 * the world
+	 */
+	@Override
+	protected void populate() {
+		super.populate();
+		seed = random.nextLong();
+		tickNumber = 0;
+		allocate();
+	}
+
+	/**
+	 * Shuts down the pool evaluating tiles, whose threads would otherwise
+	 * outlive the simulation
+	 */
+	@Override
+	public void close() {
+		pool.shutdown();
+	}
+
+	/**
+	 * Estimates the heap occupied by the columns of turtle state, the occupants
+	 * and counts per patch and the decisions of every turtle
+	 * 
+	 * @return the estimated size in bytes
+	 */
+	@Override
+	protected long footprint() {
+		return super.footprint() + Footprint.array(int.class, proposal.length)
+				+ Footprint.array(boolean.class, decision.length) + Footprint.array(int.class, suspect.length)
+				+ Footprint.array(int.class, sentence.length);
+	}
+
+	/**
+	 * Writes the state of the compact rebellion followed by the seed of all
+	 * random draws and the current tick to the given output
+	 * 
+	 * @param out
+	 *            the given output
+	 * @throws IOException
+	 *             if errors occur writing the output
+	 */
+	@Override
+	protected void checkpoint(DataOutput out) throws IOException {
+		super.checkpoint(out);
+		out.writeLong(seed);
+		out.writeLong(tickNumber);
+	}
+
+	/**
+	 * Replaces the simulation state by the one written by
+	 * {@link #checkpoint(DataOutput)}
+	 * 
+	 * @param in
+	 *            the input to read the state from
+	 * @throws IOException
+	 *             if errors occur reading the input
+	 */
+	@Override
+	protected void restore(DataInput in) throws IOException {
+		super.restore(in);
+		seed = in.readLong();
+		tickNumber = in.readLong();
+		allocate();
+	}
+
+	/**
+	 * Creates the per-turtle buffers of a tick's decisions and the tiles
+	 * evaluating them
+	 */
+	private void allocate() {
+		proposal = new int[turtles];
+		decision = new boolean[turtles];
+		suspect = new int[turtles];
+		sentence = new int[turtles];
+		world = new Tile(0, scale);
+	}
+
+	/**
+	 * Perform a simulation tick
+	 */
+	@Override
+	protected void tick() {
+		tickNumber++;
+
+		// every turtle decides on the basis of the previous tick's state
+		long start = profile == null ? 0 : System.nanoTime();
+		world.reinitialize();
+		pool.invoke(world);
+		if (profile != null) {
+			long evaluated = System.nanoTime();
+			profile.time(Profile.Phase.ACT, evaluated - start);
+			start = evaluated;
+		}
+
+		// agents change their rebel status
+		int surveyed = cops;
+		for (int id = cops; id < turtles; id++) {
+			if (jailTerm[id] == 0) {
+				setRebel(id, decision[id]);
+				surveyed++;
+			}
+		}
+
+		// cops arrest their suspects unless arrested by another cop already
+		// or just decided to go quiet, whose decisions are their rebel status
+		// now, or move otherwise
+		int arrests = 0;
+		int moves = 0;
+		for (int id = 0; id < cops; id++) {
+			if (suspect[id] != NONE && jailTerm[suspect[id]] == 0 && decision[suspect[id]]) {
+				setJailTerm(suspect[id], sentence[id]);
+				setRebel(suspect[id], false);
+				relocate(id, position[suspect[id]]);
+				arrests++;
+				moves++;
+			} else if (proposal[id] != NONE && isFree(proposal[id])) {
+				relocate(id, proposal[id]);
+				moves++;
+			}
+		}
+
+		// agents move unless arrested or the patch has been taken meanwhile
+		for (int id = cops; id < turtles; id++) {
+			if (proposal[id] != NONE && jailTerm[id] == 0 && isFree(proposal[id])) {
+				relocate(id, proposal[id]);
+				moves++;
+			}
+		}
+
+		if (profile != null) {
+			long committed = System.nanoTime();
+			profile.time(Profile.Phase.MOVE, committed - start);
+			// every free turtle surveyed its vision and every moving one
+			// searched it for free patches
+			int searched = parameters.isMovement() ? surveyed : cops;
+			profile.count(Profile.Counter.QUERIES, surveyed);
+			profile.count(Profile.Counter.PATCHES, (long) (surveyed + searched) * stencil.size());
+			profile.count(Profile.Counter.ARRESTS, arrests);
+			profile.count(Profile.Counter.MOVES, moves);
+			start = committed;
+		}
+
+		decreaseJailTerms();
+		if (profile != null) {
+			profile.time(Profile.Phase.RELEASE, System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Lets the given turtle decide on its move and action on the basis of the
+	 * current state without changing it
+	 * 
+	 * @param id
+	 *            the given turtle
+	 * @param nearby
+	 *            buffer for the number of nearby turtles per category
+	 * @param candidates
+	 *            buffer for nearby free patches
+	 */
+	private void evaluate(int id, int[] nearby, int[] candidates) {
+		proposal[id] = NONE;
+		suspect[id] = NONE;
+
+		// cops always move, agents only if not jailed and MOVEMENT enabled
+		boolean active = id < cops || jailTerm[id] == 0;
+		if (id < cops || (active && parameters.isMovement())) {
+			int free = freePatches(position[id], candidates);
+			if (free > 0) {
+				proposal[id] = candidates[draw(id, MOVE_DRAW, free)];
+			}
+		}
+		if (!active) {
+			return;
+		}
+
+		survey(position[id], nearby);
+		if (id < cops) {
+			if (nearby[REBEL] > 0) {
+				suspect[id] = nearbyRebel(position[id], draw(id, SUSPECT_DRAW, nearby[REBEL]));
+				sentence[id] = draw(id, SENTENCE_DRAW, parameters.getMax_jail_term()) + 1;
+			}
+		} else {
+			decision[id] = decide(id, nearby);
+		}
+	}
+
+	/**
+	 * Returns a random value between 0 (inclusive) and the given bound
+	 * (exclusive) that only depends on the seed, the current tick, the given
+	 * turtle and the given draw
+	 * 
+	 * @param id
+	 *            the given turtle
+	 * @param draw
+	 *            the purpose of the draw
+	 * @param bound
+	 *            the given bound
+	 * @return the random value
+	 */
+	private int draw(int id, int draw, int bound) {
+		// SplitMix64 applied to the draw's position in the run
+		long z = seed + ((tickNumber * turtles + id) * 4 + draw) * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		z = z ^ (z >>> 31);
+		return (int) (((z >>> 32) * bound) >>> 32);
+	}
+
+	/**
+	 * A tile is a band of rows of the world whose occupants are evaluated by a
+	 * single task, or split into two smaller tiles if too large. Tiles are
+	 * created once per run and reinitialised before every tick, so that
+	 * neither tiles nor their buffers are allocated per tick.
+	 */
+	private class Tile extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * the first row of the tile
+		 */
+		private final int fromRow;
+
+		/**
+		 * the row after the last row of the tile
+		 */
+		private final int toRow;
+
+		/**
+		 * the tile of the first half of the rows, null if not split
+		 */
+		private final Tile first;
+
+		/**
+		 * the tile of the second half of the rows, null if not split
+		 */
+		private final Tile second;
+
+		/**
+		 * buffer for the number of nearby turtles per category, null if split
+		 */
+		private final int[] nearby;
+
+		/**
+		 * buffer for nearby free patches, null if split
+		 */
+		private final int[] candidates;
+
+		/**
+		 * Creates a tile of the given rows, split into smaller tiles if too
+		 * large
+		 * 
+		 * @param fromRow
+		 *            the first row (inclusive)
+		 * @param toRow
+		 *            the last row (exclusive)
+		 */
+		Tile(int fromRow, int toRow) {
+			this.fromRow = fromRow;
+			this.toRow = toRow;
+			if (toRow - fromRow > TILE_ROWS) {
+				int middle = (fromRow + toRow) >>> 1;
+				first = new Tile(fromRow, middle);
+				second = new Tile(middle, toRow);
+				nearby = null;
+				candidates = null;
+			} else {
+				first = null;
+				second = null;
+				nearby = new int[CATEGORIES];
+				candidates = new int[stencil.size()];
+			}
+		}
+
+		@Override
+		protected void compute() {
+			if (first != null) {
+				// a completed task must be reinitialised to be run again
+				first.reinitialize();
+				second.reinitialize();
+				invokeAll(first, second);
+				return;
+			}
+
+			for (int patch = fromRow * scale; patch < toRow * scale; patch++) {
+				for (int id = firstOccupant[patch]; id != NONE; id = nextOccupant[id]) {
+					evaluate(id, nearby, candidates);
+				}
+			}
+		}
+
+	}
+
+}
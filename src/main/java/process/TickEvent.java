@@ -0,0 +1,91 @@
+package process;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A tick event records the duration of a simulation tick, including saving
+ * its results, together with the time of its phases and the work done in
+ * them in the JDK Flight Recorder. Tick events are only created by a
+ * {@link Profile}, i.e. if profiling is enabled, and only committed if the
+ * recorder records them.
+ * 
+ * @author Ferdinand
+ *
+ */
+@Name("logobellion.Tick")
+@Label("Simulation Tick")
+@Category("Logobellion")
+@Description("A tick of a simulation run and its phases")
+@StackTrace(false)
+class TickEvent extends jdk.jfr.Event {
+
+	/**
+	 * the number of the tick
+	 */
+	@Label("Tick")
+	int tick;
+
+	/**
+	 * the time of the move phase
+	 */
+	@Label("Move Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long moveTime;
+
+	/**
+	 * the time of the act phase
+	 */
+	@Label("Act Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long actTime;
+
+	/**
+	 * the time of the release phase
+	 */
+	@Label("Release Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long releaseTime;
+
+	/**
+	 * the time of saving the results
+	 */
+	@Label("Save Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long saveTime;
+
+	/**
+	 * the number of neighbourhood queries and surveys
+	 */
+	@Label("Neighbourhood Queries")
+	long queries;
+
+	/**
+	 * the number of patches visited by queries and count updates
+	 */
+	@Label("Patches Scanned")
+	long patches;
+
+	/**
+	 * the number of turtles moved to another patch
+	 */
+	@Label("Moves")
+	long moves;
+
+	/**
+	 * the number of agents arrested
+	 */
+	@Label("Arrests")
+	long arrests;
+
+	/**
+	 * the number of agents released from jail
+	 */
+	@Label("Releases")
+	long releases;
+
+}
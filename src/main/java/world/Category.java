@@ -0,0 +1,32 @@
+package world;
+
+/**
+ * The category of an entity as distinguished by the counting queries of a
+ * world. Every entity belongs to exactly one category at a time.
+ * 
+ * @author Ferdinand
+ *
+ */
+public enum Category {
+
+	/**
+	 * an entity enforcing the law, i.e. a cop
+	 */
+	COP,
+
+	/**
+	 * an active entity that does not rebel, i.e. a quiet agent
+	 */
+	QUIET,
+
+	/**
+	 * an active entity that rebels, i.e. a rebelling agent
+	 */
+	REBEL,
+
+	/**
+	 * an inactive entity, i.e. a jailed agent
+	 */
+	JAILED
+
+}
@@ -0,0 +1,552 @@
+package world;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A column world keeps no object per patch. A patch is only an index
+ * x * scale + y, from which its coordinates are derived, into columns of ints
+ * holding the first occupant of every patch and the number of occupants per
+ * patch and category. The occupants of a patch, usually a single active
+ * turtle and any number of jailed agents, are linked by entity id in order of
+ * arrival. Subclasses decide where the {@link Ints columns} are kept.
+ * 
+ * Given the same source of randomness, a column world places and moves
+ * entities in the same way as a {@link World}, so that simulations produce
+ * the same results with either.
+ * 
+ * @author Ferdinand
+ *
+ * @param <T>
+ *            the type of entities to be managed by this world
+ */
+abstract class ColumnWorld<T extends IEntity> implements IWorld<T> {
+
+	/**
+	 * marks the end of a patch's list of occupants
+	 */
+	static final int NONE = -1;
+
+	/**
+	 * the number of categories of entities
+	 */
+	static final int CATEGORIES = Category.values().length;
+
+	/**
+	 * the scale of the world
+	 */
+	private final int scale;
+
+	/**
+	 * the entities in the world, indexed by their ids
+	 */
+	final List<T> entities;
+
+	/**
+	 * the source of randomness for placing and moving entities
+	 */
+	final SplitMix random;
+
+	/**
+	 * set of free, i.e. empty patches (!= unoccupied patches)
+	 */
+	final FreeCells freePatches;
+
+	/**
+	 * the id of the first occupant per patch, indexed by x * scale + y
+	 */
+	private final Ints firstOccupant;
+
+	/**
+	 * the number of occupants per patch and category, indexed by
+	 * (x * scale + y) * CATEGORIES + category
+	 */
+	private final Ints counts;
+
+	/**
+	 * entity index to map entity ids to the index x * scale + y of their
+	 * patches
+	 */
+	private final Ints entityIndex;
+
+	/**
+	 * the id of the next occupant of the same patch per entity id, so that
+	 * the occupants of a patch form a list in order of arrival
+	 */
+	private final Ints nextOccupant;
+
+	/**
+	 * optional counting index to count entities per category in logarithmic
+	 * time; null if disabled
+	 */
+	private final CountingIndex countingIndex;
+
+	/**
+	 * the shape of the field within the scope of an entity
+	 */
+	private final VisionShape shape;
+
+	/**
+	 * the stencil of the most recently used scope
+	 */
+	private Stencil stencil;
+
+	/**
+	 * reusable buffer of nearby free patches for moving entities
+	 */
+	private int[] candidates;
+
+	/**
+	 * Creates a world with the given scale kept in the given columns, which
+	 * are to be cleared unless they hold a world already
+	 * 
+	 * @param scale
+	 *            the given scale
+	 * @param firstOccupant
+	 *            the column of the first occupant per patch
+	 * @param counts
+	 *            the column of the number of occupants per patch and category
+	 * @param freePatches
+	 *            the set of free patches
+	 * @param entityIndex
+	 *            the column of the patch per entity, whose length limits the
+	 *            number of entities
+	 * @param nextOccupant
+	 *            the column of the next occupant per entity
+	 * @param countingIndex
+	 *            the index to count entities with, which applies to
+	 *            square-shaped scopes only; null to scan the nearby patches
+	 * @param shape
+	 *            the shape of the field within the scope of an entity
+	 * @param random
+	 *            the source of randomness for placing and moving entities
+	 */
+	ColumnWorld(int scale, Ints firstOccupant, Ints counts, FreeCells freePatches, Ints entityIndex,
+			Ints nextOccupant, CountingIndex countingIndex, VisionShape shape, SplitMix random) {
+		this.scale = scale;
+		this.firstOccupant = firstOccupant;
+		this.counts = counts;
+		this.freePatches = freePatches;
+		this.entityIndex = entityIndex;
+		this.nextOccupant = nextOccupant;
+		this.countingIndex = countingIndex;
+		this.shape = shape;
+		this.random = random;
+		this.entities = new ArrayList<T>();
+	}
+
+	/**
+	 * Assigns the given entities to random locations within the world. The
+	 * number of given entities should be less than the number of available
+	 * locations in the world.
+	 * 
+	 * @param entities
+	 *            the entities to be added to the world
+	 */
+	@Override
+	public void enter(List<? extends T> entities) {
+		for (T entity : entities) {
+			int cell = freePatches.pick(random);
+			// number the entity and update the entity index accordingly
+			entity.setId(this.entities.size());
+			this.entities.add(entity);
+			entityIndex.set(entity.getId(), cell);
+			occupy(entity, cell);
+		}
+	}
+
+	/**
+	 * Assigns the given entities to the given locations within the world.
+	 * Entities are numbered in the given order, but join the occupants of their
+	 * patches in the given order of arrival.
+	 * 
+	 * @param entities
+	 *            the entities to be added to the world
+	 * @param positions
+	 *            the locations of the entities in the order of the entities
+	 * @param arrivals
+	 *            the indices of the entities in the order in which they join
+	 *            the occupants of their patches
+	 */
+	@Override
+	public void enter(List<? extends T> entities, int[] positions, int[] arrivals) {
+		int first = this.entities.size();
+		for (int i = 0; i < entities.size(); i++) {
+			T entity = entities.get(i);
+			entity.setId(first + i);
+			this.entities.add(entity);
+			entityIndex.set(entity.getId(), positions[i]);
+		}
+		for (int i : arrivals) {
+			occupy(entities.get(i), positions[i]);
+		}
+	}
+
+	/**
+	 * Resets the world to an empty state
+	 */
+	@Override
+	public void clear() {
+		for (T entity : entities) {
+			entity.setId(-1);
+		}
+		entities.clear();
+		firstOccupant.fill(NONE);
+		counts.fill(0);
+		freePatches.fill();
+		if (countingIndex != null) {
+			countingIndex.clear();
+		}
+	}
+
+	/**
+	 * Returns the scale of the two-dimensional square world
+	 * 
+	 * @return the scale
+	 */
+	@Override
+	public int getScale() {
+		return scale;
+	}
+
+	/**
+	 * Estimates the heap occupied by the world, i.e. its columns and indices,
+	 * excluding the entities within it
+	 * 
+	 * @return the estimated size in bytes
+	 */
+	@Override
+	public long footprint() {
+		long size = Footprint.of(getClass()) + Footprint.of(ArrayList.class)
+				+ Footprint.array(Object.class, entities.size()) + firstOccupant.footprint() + counts.footprint()
+				+ freePatches.footprint() + entityIndex.footprint() + nextOccupant.footprint();
+		if (countingIndex != null) {
+			size += countingIndex.footprint();
+		}
+		if (stencil != null) {
+			size += stencil.footprint() + Footprint.array(int.class, candidates.length);
+		}
+		return size;
+	}
+
+	/**
+	 * Moves the given entity to another random, unoccupied location in the
+	 * world within the given scope. If no such location is available, the
+	 * entity stays in its current location.
+	 * 
+	 * @param entity
+	 *            the given entity
+	 * @param scope
+	 *            the given scope
+	 */
+	@Override
+	public void move(T entity, int scope) {
+		int centre = entityIndex.get(entity.getId());
+		Stencil stencil = stencil(scope);
+		int centreX = centre / scale;
+		int centreY = centre % scale;
+
+		// collect the nearby unoccupied or occupied (by inactive entities)
+		// patches
+		int free = 0;
+		for (int i = 0; i < stencil.size(); i++) {
+			int cell = stencil.cell(centreX, centreY, i);
+			if (!containsActive(cell)) {
+				candidates[free++] = cell;
+			}
+		}
+
+		if (free > 0) {
+			// assign the given entity to a random free patch nearby
+			moveTo(entity, candidates[random.nextInt(free)]);
+		}
+		// if no free nearby patch is available, the entity will stay on its
+		// current patch
+	}
+
+	/**
+	 * Moves the given entity to a target entity's location
+	 * 
+	 * @param entity
+	 *            the given entity to be moved
+	 * @param target
+	 *            the target entity to whose location to move to
+	 */
+	@Override
+	public void moveTo(T entity, T target) {
+		moveTo(entity, entityIndex.get(target.getId()));
+	}
+
+	/**
+	 * Returns the neighbourhood of the given entity. The neighbourhood is
+	 * comprised of all entities within the given scope of the given entity.
+	 * 
+	 * @param entity
+	 *            the given entity
+	 * @param scope
+	 *            the given scope
+	 * @return the list of nearby entities
+	 */
+	@Override
+	public List<T> neighbourhoodOf(T entity, int scope) {
+		List<T> neighbours = new ArrayList<T>();
+		forEachNeighbour(entity, scope, neighbours::add);
+		return neighbours;
+	}
+
+	/**
+	 * Passes every entity within the given scope of the given entity to the
+	 * given consumer. The patches are visited in the order of the scope's
+	 * {@link Stencil}, and neither patches nor entities are collected on the
+	 * way.
+	 * 
+	 * @param entity
+	 *            the given entity
+	 * @param scope
+	 *            the given scope
+	 * @param consumer
+	 *            the consumer to be applied to each nearby entity
+	 */
+	@Override
+	public void forEachNeighbour(T entity, int scope, Consumer<? super T> consumer) {
+		int centre = entityIndex.get(entity.getId());
+		Stencil stencil = stencil(scope);
+		int centreX = centre / scale;
+		int centreY = centre % scale;
+
+		for (int i = 0; i < stencil.size(); i++) {
+			int cell = stencil.cell(centreX, centreY, i);
+			for (int id = firstOccupant.get(cell); id != NONE; id = nextOccupant.get(id)) {
+				consumer.accept(entities.get(id));
+			}
+		}
+	}
+
+	/**
+	 * Passes the entities located on the patch with the given location to the
+	 * given consumer in the order in which they arrived there
+	 * 
+	 * @param position
+	 *            the location as index x * scale + y of the patch
+	 * @param consumer
+	 *            the consumer to be applied to each occupant
+	 */
+	@Override
+	public void forEachOccupant(int position, Consumer<? super T> consumer) {
+		for (int id = firstOccupant.get(position); id != NONE; id = nextOccupant.get(id)) {
+			consumer.accept(entities.get(id));
+		}
+	}
+
+	/**
+	 * Returns the number of entities of the given category within the given
+	 * scope of the given entity. If the counting index is enabled and the scope
+	 * is square-shaped, the count is answered by the index, otherwise the
+	 * nearby patches are scanned.
+	 * 
+	 * @param entity
+	 *            the given entity
+	 * @param scope
+	 *            the given scope
+	 * @param category
+	 *            the category of entities to be counted
+	 * @return the number of nearby entities of the given category
+	 */
+	@Override
+	public int count(T entity, int scope, Category category) {
+		int centre = entityIndex.get(entity.getId());
+		int centreX = centre / scale;
+		int centreY = centre % scale;
+
+		if (countingIndex != null && shape == VisionShape.SQUARE) {
+			// a square field wider than the globe would count patches twice
+			// since the world wraps around
+			int width = Math.min(2 * scope + 1, scale);
+			int startX = mod(centreX - scope);
+			int startY = mod(centreY - scope);
+			// the centre patch is part of the window but not of the
+			// neighbourhood
+			return countingIndex.count(startX, startY, width, category)
+					- counts.get((long) centre * CATEGORIES + category.ordinal());
+		}
+
+		Stencil stencil = stencil(scope);
+		int count = 0;
+		for (int i = 0; i < stencil.size(); i++) {
+			count += counts.get((long) stencil.cell(centreX, centreY, i) * CATEGORIES + category.ordinal());
+		}
+		return count;
+	}
+
+	/**
+	 * Notifies the world that the category of the given entity has changed.
+	 * Entities that have not entered the world yet are ignored.
+	 * 
+	 * @param entity
+	 *            the given entity
+	 * @param previous
+	 *            the category the entity belonged to before the change
+	 */
+	@Override
+	public void update(T entity, Category previous) {
+		if (entity.getId() >= 0) {
+			int cell = entityIndex.get(entity.getId());
+			adjust(cell, previous, -1);
+			adjust(cell, entity.getCategory(), 1);
+		}
+	}
+
+	/**
+	 * Returns the location of the given entity as the index x * scale + y of
+	 * its patch
+	 * 
+	 * @param entity
+	 *            the given entity
+	 * @return the location of the entity
+	 */
+	@Override
+	public int positionOf(T entity) {
+		return entityIndex.get(entity.getId());
+	}
+
+	/**
+	 * Adds the given entity, whose location is recorded already, to the
+	 * occupants of the patch with the given index
+	 * 
+	 * @param entity
+	 *            the given entity
+	 * @param cell
+	 *            the index x * scale + y of the patch
+	 */
+	private void occupy(T entity, int cell) {
+		freePatches.remove(cell);
+		link(entity.getId(), cell);
+		adjust(cell, entity.getCategory(), 1);
+	}
+
+	/**
+	 * Moves the given entity to the patch with the given index
+	 * 
+	 * @param entity
+	 *            the given entity to be moved
+	 * @param cell
+	 *            the index x * scale + y of the new patch
+	 */
+	private void moveTo(T entity, int cell) {
+		int current = entityIndex.get(entity.getId());
+		unlink(entity.getId(), current);
+		adjust(current, entity.getCategory(), -1);
+		if (firstOccupant.get(current) == NONE) {
+			freePatches.add(current);
+		}
+
+		entityIndex.set(entity.getId(), cell);
+		occupy(entity, cell);
+	}
+
+	/**
+	 * Returns whether the patch with the given index is occupied by an active
+	 * entity, i.e. a cop or an agent who is not jailed
+	 * 
+	 * @param cell
+	 *            the index x * scale + y of the patch
+	 * @return whether an active entity occupies the patch
+	 */
+	private boolean containsActive(int cell) {
+		long base = (long) cell * CATEGORIES;
+		return counts.get(base + Category.COP.ordinal()) + counts.get(base + Category.QUIET.ordinal())
+				+ counts.get(base + Category.REBEL.ordinal()) > 0;
+	}
+
+	/**
+	 * Adds the given difference to the number of occupants of the given
+	 * category on the patch with the given index and records it in the
+	 * counting index, if enabled
+	 * 
+	 * @param cell
+	 *            the index x * scale + y of the patch
+	 * @param category
+	 *            the given category
+	 * @param delta
+	 *            the change of the number of occupants
+	 */
+	private void adjust(int cell, Category category, int delta) {
+		long index = (long) cell * CATEGORIES + category.ordinal();
+		counts.set(index, counts.get(index) + delta);
+		if (countingIndex != null) {
+			countingIndex.add(cell / scale, cell % scale, category, delta);
+		}
+	}
+
+	/**
+	 * Appends the entity with the given id to the occupants of the patch with
+	 * the given index
+	 * 
+	 * @param id
+	 *            the given id
+	 * @param cell
+	 *            the index x * scale + y of the patch
+	 */
+	private void link(int id, int cell) {
+		nextOccupant.set(id, NONE);
+		int last = firstOccupant.get(cell);
+		if (last == NONE) {
+			firstOccupant.set(cell, id);
+		} else {
+			for (int next = nextOccupant.get(last); next != NONE; next = nextOccupant.get(last)) {
+				last = next;
+			}
+			nextOccupant.set(last, id);
+		}
+	}
+
+	/**
+	 * Removes the entity with the given id from the occupants of the patch
+	 * with the given index
+	 * 
+	 * @param id
+	 *            the given id
+	 * @param cell
+	 *            the index x * scale + y of the patch
+	 */
+	private void unlink(int id, int cell) {
+		int previous = firstOccupant.get(cell);
+		if (previous == id) {
+			firstOccupant.set(cell, nextOccupant.get(id));
+		} else {
+			while (nextOccupant.get(previous) != id) {
+				previous = nextOccupant.get(previous);
+			}
+			nextOccupant.set(previous, nextOccupant.get(id));
+		}
+	}
+
+	/**
+	 * Returns the stencil of the given scope, computing it if the scope differs
+	 * from the most recently used one
+	 * 
+	 * @param scope
+	 *            the given scope
+	 * @return the stencil
+	 */
+	private Stencil stencil(int scope) {
+		if (stencil == null || !stencil.matches(shape, scope)) {
+			stencil = new Stencil(shape, scope, scale);
+			candidates = new int[stencil.size()];
+		}
+		return stencil;
+	}
+
+	/**
+	 * calculates the mathematical x modulo scale
+	 * 
+	 * @param x
+	 * @return x mod scale (mathematical)
+	 */
+	private int mod(int x) {
+		int r = x % scale;
+		return r < 0 ? r + scale : r;
+	}
+
+}
@@ -0,0 +1,158 @@
+package world;
+
+import java.util.Arrays;
+
+/**
+ * A counting index keeps a two-dimensional Fenwick tree (binary indexed tree)
+ * per entity category of a square world. Recording a change and counting the
+ * entities of a category within any square window of the world both take
+ * O(log(scale)^2) steps, regardless of the window's width.
+ * 
+ * A window is split into at most four rectangles that do not wrap around the
+ * world's borders, each of which costs four prefix sums of at most
+ * log2(scale)^2 steps, whereas scanning a window costs a step per patch, and
+ * every move of an entity records two changes, so the index pays off for
+ * wide visions.
+ * 
+ * @author Ferdinand
+ *
+ */
+class CountingIndex {
+
+	/**
+	 * the scale of the indexed world
+	 */
+	private final int scale;
+
+	/**
+	 * the Fenwick trees per category, indexed by x * (scale + 1) + y with
+	 * 1-based coordinates, so that row and column 0 are unused
+	 */
+	private final int[][] trees;
+
+	/**
+	 * Creates an empty counting index for a world of the given scale
+	 * 
+	 * @param scale
+	 *            the given scale
+	 */
+	CountingIndex(int scale) {
+		this.scale = scale;
+		this.trees = new int[Category.values().length][(scale + 1) * (scale + 1)];
+	}
+
+	/**
+	 * Adds the given difference to the count of the given category on the
+	 * patch with the given coordinates
+	 * 
+	 * @param x
+	 *            the patch's x coordinate
+	 * @param y
+	 *            the patch's y coordinate
+	 * @param category
+	 *            the given category
+	 * @param delta
+	 *            the difference to be added
+	 */
+	void add(int x, int y, Category category, int delta) {
+		int[] tree = trees[category.ordinal()];
+		int stride = scale + 1;
+		for (int i = x + 1; i <= scale; i += i & -i) {
+			for (int j = y + 1; j <= scale; j += j & -j) {
+				tree[i * stride + j] += delta;
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of entities of the given category within the square
+	 * window of the given width whose upper left corner is the patch with the
+	 * given coordinates. The window wraps around the world's borders.
+	 * 
+	 * @param startX
+	 *            the x coordinate of the upper left corner
+	 * @param startY
+	 *            the y coordinate of the upper left corner
+	 * @param width
+	 *            the width of the window, at most the world's scale
+	 * @param category
+	 *            the given category
+	 * @return the number of entities of the given category within the window
+	 */
+	int count(int startX, int startY, int width, Category category) {
+		int[] tree = trees[category.ordinal()];
+
+		// split the window into at most four rectangles that do not wrap
+		int widthX = Math.min(width, scale - startX);
+		int widthY = Math.min(width, scale - startY);
+		return sum(tree, startX, startY, widthX, widthY) + sum(tree, 0, startY, width - widthX, widthY)
+				+ sum(tree, startX, 0, widthX, width - widthY) + sum(tree, 0, 0, width - widthX, width - widthY);
+	}
+
+	/**
+	 * Resets the index to an empty world
+	 */
+	void clear() {
+		for (int[] tree : trees) {
+			Arrays.fill(tree, 0);
+		}
+	}
+
+	/**
+	 * Returns the sum of the rectangle of the given Fenwick tree with the
+	 * given upper left corner and widths
+	 * 
+	 * @param tree
+	 *            the given Fenwick tree
+	 * @param x
+	 *            the x coordinate of the upper left corner
+	 * @param y
+	 *            the y coordinate of the upper left corner
+	 * @param widthX
+	 *            the rectangle's width in x direction
+	 * @param widthY
+	 *            the rectangle's width in y direction
+	 * @return the sum of the rectangle
+	 */
+	private int sum(int[] tree, int x, int y, int widthX, int widthY) {
+		if (widthX <= 0 || widthY <= 0) {
+			return 0;
+		}
+		return prefix(tree, x + widthX, y + widthY) - prefix(tree, x, y + widthY) - prefix(tree, x + widthX, y)
+				+ prefix(tree, x, y);
+	}
+
+	/**
+	 * Returns the sum of the patches with coordinates below the given ones
+	 * 
+	 * @param tree
+	 *            the given Fenwick tree
+	 * @param x
+	 *            the exclusive upper bound of the x coordinates
+	 * @param y
+	 *            the exclusive upper bound of the y coordinates
+	 * @return the sum of the patches [0, x) x [0, y)
+	 */
+	private int prefix(int[] tree, int x, int y) {
+		int stride = scale + 1;
+		int sum = 0;
+		for (int i = x; i > 0; i -= i & -i) {
+			for (int j = y; j > 0; j -= j & -j) {
+				sum += tree[i * stride + j];
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * @return the estimated heap occupied by the index in bytes
+	 */
+	long footprint() {
+		long size = Footprint.of(CountingIndex.class) + Footprint.array(int[].class, trees.length);
+		for (int[] tree : trees) {
+			size += Footprint.array(int.class, tree.length);
+		}
+		return size;
+	}
+
+}
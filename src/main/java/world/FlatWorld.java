@@ -0,0 +1,41 @@
+package world;
+
+/**
+ * A flat world behaves exactly like a {@link World}, but keeps no object per
+ * patch. As a {@link ColumnWorld}, it keeps the occupants and counts of its
+ * patches in columns, which are flat primitive arrays on the heap. Apart from
+ * the entities themselves, the world thus occupies a constant number of
+ * primitive arrays, which matters for large scales, where one Patch object per
+ * cell dominates the heap before any entity exists.
+ * 
+ * @author Ferdinand
+ *
+ * @param <T>
+ *            the type of entities to be managed by this world
+ */
+public class FlatWorld<T extends IEntity> extends ColumnWorld<T> {
+
+	/**
+	 * Creates a flat world with the given scale
+	 * 
+	 * @param scale
+	 *            the given scale
+	 * @param countingIndex
+	 *            whether entities are counted with a Fenwick tree index
+	 *            instead of scanning the nearby patches, which applies to
+	 *            square-shaped scopes only
+	 * @param shape
+	 *            the shape of the field within the scope of an entity
+	 * @param random
+	 *            the source of randomness for placing and moving entities
+	 */
+	public FlatWorld(int scale, boolean countingIndex, VisionShape shape, SplitMix random) {
+		// every entity occupies a free patch when entering
+		super(scale, new HeapInts(scale * scale), new HeapInts(scale * scale * CATEGORIES),
+				new FreeCells(new HeapInts(scale * scale), new HeapInts(scale * scale)), new HeapInts(scale * scale),
+				new HeapInts(scale * scale), countingIndex ? new CountingIndex(scale) : null, shape, random);
+		// all patches are initially empty
+		clear();
+	}
+
+}
@@ -0,0 +1,116 @@
+package world;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.BitSet;
+
+/**
+ * Estimates the heap occupied by objects and arrays, assuming a 64-bit JVM
+ * with compressed references, i.e. 12-byte object headers, 16-byte array
+ * headers, 4-byte references and sizes aligned to 8 bytes. The size of an
+ * object is derived from the declared fields of its class and superclasses,
+ * so estimates follow changes to the classes without being adjusted.
+ * 
+ * @author Ferdinand
+ *
+ */
+public final class Footprint {
+
+	/**
+	 * the size of an object header in bytes
+	 */
+	private static final int OBJECT_HEADER = 12;
+
+	/**
+	 * the size of an array header in bytes, including its length
+	 */
+	private static final int ARRAY_HEADER = 16;
+
+	/**
+	 * the size of a compressed reference in bytes
+	 */
+	private static final int REFERENCE = 4;
+
+	/**
+	 * Prevents instantiation
+	 */
+	private Footprint() {
+	}
+
+	/**
+	 * Returns the size of an instance of the given class, excluding the
+	 * objects it refers to
+	 * 
+	 * @param type
+	 *            the given class
+	 * @return the size in bytes
+	 */
+	public static long of(Class<?> type) {
+		long size = OBJECT_HEADER;
+		for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+			for (Field field : c.getDeclaredFields()) {
+				if (!Modifier.isStatic(field.getModifiers())) {
+					size += sizeOf(field.getType());
+				}
+			}
+		}
+		return align(size);
+	}
+
+	/**
+	 * Returns the size of an array of the given component type and length
+	 * 
+	 * @param component
+	 *            the given component type, a primitive type or a class whose
+	 *            instances are referenced
+	 * @param length
+	 *            the given length
+	 * @return the size in bytes
+	 */
+	public static long array(Class<?> component, int length) {
+		return align(ARRAY_HEADER + (long) sizeOf(component) * length);
+	}
+
+	/**
+	 * Returns the size of a bit set of the given number of bits
+	 * 
+	 * @param bits
+	 *            the given number of bits
+	 * @return the size in bytes
+	 */
+	public static long bits(int bits) {
+		return of(BitSet.class) + array(long.class, (bits + Long.SIZE - 1) / Long.SIZE);
+	}
+
+	/**
+	 * Returns the size of a field or array element of the given type
+	 * 
+	 * @param type
+	 *            the given type
+	 * @return the size in bytes
+	 */
+	private static int sizeOf(Class<?> type) {
+		if (type == long.class || type == double.class) {
+			return 8;
+		} else if (type == int.class || type == float.class) {
+			return 4;
+		} else if (type == short.class || type == char.class) {
+			return 2;
+		} else if (type == byte.class || type == boolean.class) {
+			return 1;
+		}
+		return REFERENCE;
+	}
+
+	/**
+	 * Rounds the given size up to the alignment of objects
+	 * 
+	 * @param size
+	 *            the given size in bytes
+	 * @return the aligned size in bytes
+	 */
+	private static long align(long size) {
+		return (size + 7) & ~7L;
+	}
+
+}
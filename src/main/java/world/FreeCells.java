@@ -0,0 +1,153 @@
+package world;
+
+/**
+ * A set of free cells of a world, identified by x * scale + y. The members
+ * are kept in a dense column, from which removed cells are swapped out, and
+ * the slot of every cell within it, so that adding, removing and picking a
+ * random cell take constant time.
+ * 
+ * @author Ferdinand
+ *
+ */
+class FreeCells {
+
+	/**
+	 * marks a cell that is not free
+	 */
+	private static final int NONE = -1;
+
+	/**
+	 * the free cells in the first size elements
+	 */
+	private final Ints cells;
+
+	/**
+	 * the index of each free cell within the cells, NONE if not free
+	 */
+	private final Ints slots;
+
+	/**
+	 * the number of free cells
+	 */
+	private int size;
+
+	/**
+	 * Creates a set of the given number of cells on the heap, all of which
+	 * are free
+	 * 
+	 * @param capacity
+	 *            the given number of cells
+	 */
+	FreeCells(int capacity) {
+		this(new HeapInts(capacity), new HeapInts(capacity));
+		fill();
+	}
+
+	/**
+	 * Creates a set kept in the given columns of equal length, which are
+	 * either to be {@link #fill() filled} or hold a set of the size to be
+	 * {@link #restore(int) restored}
+	 * 
+	 * @param cells
+	 *            the column of the free cells
+	 * @param slots
+	 *            the column of the slot of each cell
+	 */
+	FreeCells(Ints cells, Ints slots) {
+		this.cells = cells;
+		this.slots = slots;
+	}
+
+	/**
+	 * Marks all cells as free, in ascending order
+	 */
+	void fill() {
+		int capacity = (int) cells.length();
+		for (int cell = 0; cell < capacity; cell++) {
+			cells.set(cell, cell);
+			slots.set(cell, cell);
+		}
+		size = capacity;
+	}
+
+	/**
+	 * Takes the given number of free cells stored in the columns already
+	 * 
+	 * @param size
+	 *            the given number of free cells
+	 */
+	void restore(int size) {
+		this.size = size;
+	}
+
+	/**
+	 * Returns whether the given cell is free
+	 * 
+	 * @param cell
+	 *            the given cell
+	 * @return true if and only if the cell is free
+	 */
+	boolean contains(int cell) {
+		return slots.get(cell) != NONE;
+	}
+
+	/**
+	 * Marks the given cell as free
+	 * 
+	 * @param cell
+	 *            the given cell
+	 */
+	void add(int cell) {
+		if (slots.get(cell) == NONE) {
+			cells.set(size, cell);
+			slots.set(cell, size++);
+		}
+	}
+
+	/**
+	 * Marks the given cell as not free. The last free cell takes its place.
+	 * 
+	 * @param cell
+	 *            the given cell
+	 */
+	void remove(int cell) {
+		int slot = slots.get(cell);
+		if (slot != NONE) {
+			int last = cells.get(--size);
+			cells.set(slot, last);
+			slots.set(last, slot);
+			slots.set(cell, NONE);
+		}
+	}
+
+	/**
+	 * Returns a free cell chosen uniformly at random
+	 * 
+	 * @param random
+	 *            the source of randomness
+	 * @return the free cell
+	 * @throws IllegalStateException
+	 *             if no cell is free
+	 */
+	int pick(SplitMix random) {
+		if (size == 0) {
+			throw new IllegalStateException("No free cell left");
+		}
+		return cells.get(random.nextInt(size));
+	}
+
+	/**
+	 * @return the number of free cells
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return the estimated heap occupied by the set in bytes
+	 */
+	long footprint() {
+		return Footprint.of(FreeCells.class) + cells.footprint() + slots.footprint();
+	}
+
+}
@@ -0,0 +1,81 @@
+package world;
+
+import java.util.Arrays;
+
+/**
+ * A column of ints kept in an array on the heap, which limits its length to
+ * that of an array
+ * 
+ * @author Ferdinand
+ *
+ */
+final class HeapInts implements Ints {
+
+	/**
+	 * the ints of the column
+	 */
+	private final int[] values;
+
+	/**
+	 * Creates a column of the given number of ints, all of which are 0
+	 * 
+	 * @param length
+	 *            the given number of ints
+	 */
+	HeapInts(int length) {
+		values = new int[length];
+	}
+
+	/**
+	 * Returns the int at the given index
+	 * 
+	 * @param index
+	 *            the given index
+	 * @return the int
+	 */
+	@Override
+	public int get(long index) {
+		return values[(int) index];
+	}
+
+	/**
+	 * Sets the int at the given index
+	 * 
+	 * @param index
+	 *            the given index
+	 * @param value
+	 *            the new int
+	 */
+	@Override
+	public void set(long index, int value) {
+		values[(int) index] = value;
+	}
+
+	/**
+	 * Sets every int of the column to the given value
+	 * 
+	 * @param value
+	 *            the given value
+	 */
+	@Override
+	public void fill(int value) {
+		Arrays.fill(values, value);
+	}
+
+	/**
+	 * @return the number of ints of the column
+	 */
+	@Override
+	public long length() {
+		return values.length;
+	}
+
+	/**
+	 * @return the estimated heap occupied by the array in bytes
+	 */
+	@Override
+	public long footprint() {
+		return Footprint.of(HeapInts.class) + Footprint.array(int.class, values.length);
+	}
+
+}
@@ -15,4 +15,29 @@ public interface IEntity {
 	 */
 	public boolean isActive();
 
+	/**
+	 * Returns the category this entity currently belongs to
+	 * 
+	 * @return the current category
+	 */
+	public Category getCategory();
+
+	/**
+	 * Returns the id assigned to this entity when entering a world. Ids are
+	 * dense, i.e. the entities of a world are numbered from 0 in order of
+	 * entering.
+	 * 
+	 * @return the id or -1 if this entity is not in a world
+	 */
+	public int getId();
+
+	/**
+	 * Assigns an id to this entity. Called by the world the entity enters or
+	 * leaves.
+	 * 
+	 * @param id
+	 *            the id or -1 if this entity leaves its world
+	 */
+	public void setId(int id);
+
 }
@@ -1,6 +1,7 @@
 package world;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * A world represents a two dimensional square matrix of patches that wraps
@@ -23,6 +24,23 @@ public interface IWorld<T extends IEntity> {
 	 */
 	void enter(List<? extends T> entities);
 
+	/**
+	 * Assigns the given entities to the given locations within the world, for
+	 * example to restore a saved state. Entities are numbered in the given
+	 * order, but join the occupants of their patches in the given order of
+	 * arrival.
+	 * 
+	 * @param entities
+	 *            the entities to be added to the world
+	 * @param positions
+	 *            the locations of the entities as index x * scale + y of their
+	 *            patches, in the order of the entities
+	 * @param arrivals
+	 *            the indices of the entities in the order in which they join
+	 *            the occupants of their patches
+	 */
+	void enter(List<? extends T> entities, int[] positions, int[] arrivals);
+
 	/**
 	 * Resets the world to an empty state
 	 */
@@ -62,6 +80,70 @@ public interface IWorld<T extends IEntity> {
 	 */
 	List<? extends T> neighbourhoodOf(T entity, int scope);
 
+	/**
+	 * Passes every entity within the given scope of the given entity to the
+	 * given consumer. The visited entities are the same as the ones returned by
+	 * {@link #neighbourhoodOf(IEntity, int)}, but no intermediate collection is
+	 * built.
+	 * 
+	 * @param entity
+	 *            the given entity
+	 * @param scope
+	 *            the given scope
+	 * @param consumer
+	 *            the consumer to be applied to each nearby entity
+	 */
+	void forEachNeighbour(T entity, int scope, Consumer<? super T> consumer);
+
+	/**
+	 * Passes the entities located on the patch with the given location to the
+	 * given consumer in the order in which they arrived there, which is the
+	 * order in which {@link #forEachNeighbour(IEntity, int, Consumer)} visits
+	 * them, without collecting them
+	 * 
+	 * @param position
+	 *            the location as index x * scale + y of the patch
+	 * @param consumer
+	 *            the consumer to be applied to each occupant
+	 */
+	void forEachOccupant(int position, Consumer<? super T> consumer);
+
+	/**
+	 * Returns the number of entities of the given category within the given
+	 * scope of the given entity. The counted entities are the same as the ones
+	 * returned by {@link #neighbourhoodOf(IEntity, int)}.
+	 * 
+	 * @param entity
+	 *            the given entity
+	 * @param scope
+	 *            the given scope
+	 * @param category
+	 *            the category of entities to be counted
+	 * @return the number of nearby entities of the given category
+	 */
+	int count(T entity, int scope, Category category);
+
+	/**
+	 * Notifies the world that the category of the given entity has changed.
+	 * Entities that have not entered the world yet are ignored.
+	 * 
+	 * @param entity
+	 *            the given entity
+	 * @param previous
+	 *            the category the entity belonged to before the change
+	 */
+	void update(T entity, Category previous);
+
+	/**
+	 * Returns the location of the given entity as the index x * scale + y of
+	 * its patch
+	 * 
+	 * @param entity
+	 *            the given entity
+	 * @return the location of the entity
+	 */
+	int positionOf(T entity);
+
 	/**
 	 * Returns the scale of the two-dimensional square world
 	 * 
@@ -69,4 +151,12 @@ public interface IWorld<T extends IEntity> {
 	 */
 	int getScale();
 
+	/**
+	 * Estimates the heap occupied by the world, i.e. its patches and indices,
+	 * excluding the entities within it
+	 * 
+	 * @return the estimated size in bytes
+	 */
+	long footprint();
+
 }
\ No newline at end of file
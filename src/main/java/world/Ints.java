@@ -0,0 +1,50 @@
+package world;
+
+/**
+ * A column of ints indexed by a long, which holds a part of the state of a
+ * world. Columns are kept either in an array on the heap or in a file mapped
+ * into memory outside the heap, so that a world can be written once for both.
+ * 
+ * @author Ferdinand
+ *
+ */
+interface Ints {
+
+	/**
+	 * Returns the int at the given index
+	 * 
+	 * @param index
+	 *            the given index
+	 * @return the int
+	 */
+	int get(long index);
+
+	/**
+	 * Sets the int at the given index
+	 * 
+	 * @param index
+	 *            the given index
+	 * @param value
+	 *            the new int
+	 */
+	void set(long index, int value);
+
+	/**
+	 * Sets every int of the column to the given value
+	 * 
+	 * @param value
+	 *            the given value
+	 */
+	void fill(int value);
+
+	/**
+	 * @return the number of ints of the column
+	 */
+	long length();
+
+	/**
+	 * @return the estimated heap occupied by the column in bytes
+	 */
+	long footprint();
+
+}
@@ -0,0 +1,327 @@
+package world;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A file of ints mapped into memory outside the heap. As a single mapping is
+ * limited to 2 GiB, the file is mapped in chunks of 1 GiB, so that files of
+ * any length can be indexed with a long. The ints are stored in the native
+ * byte order.
+ * 
+ * The file is laid out as a header followed by {@link #column(long) columns},
+ * which are appended before the file is mapped. It may be mapped any number
+ * of times, each mapping releasing the previous one, and is unmapped when
+ * closed.
+ * 
+ * @author Ferdinand
+ *
+ */
+class MappedInts implements Closeable {
+
+	/**
+	 * the binary logarithm of the number of ints per chunk
+	 */
+	private static final int CHUNK_BITS = 28;
+
+	/**
+	 * the number of ints per chunk
+	 */
+	private static final long CHUNK = 1L << CHUNK_BITS;
+
+	/**
+	 * the mask of an index within its chunk
+	 */
+	private static final long MASK = CHUNK - 1;
+
+	/**
+	 * the instance of sun.misc.Unsafe; null if buffers cannot be unmapped
+	 */
+	private static final Object UNSAFE;
+
+	/**
+	 * sun.misc.Unsafe#invokeCleaner(ByteBuffer), which unmaps a buffer at
+	 * once on Java 9 and later; null on Java 8, where a buffer is unmapped
+	 * when it is collected
+	 */
+	private static final Method INVOKE_CLEANER;
+
+	static {
+		Object unsafe = null;
+		Method invokeCleaner = null;
+		try {
+			Class<?> type = Class.forName("sun.misc.Unsafe");
+			invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+			Field field = type.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			unsafe = field.get(null);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			invokeCleaner = null;
+		}
+		UNSAFE = unsafe;
+		INVOKE_CLEANER = invokeCleaner;
+	}
+
+	/**
+	 * the number of ints of the file
+	 */
+	private long length;
+
+	/**
+	 * the mapped chunks; null unless mapped
+	 */
+	private MappedByteBuffer[] buffers;
+
+	/**
+	 * the mapped chunks as ints; null unless mapped
+	 */
+	private IntBuffer[] chunks;
+
+	/**
+	 * Creates an unmapped file of the given number of ints, e.g. a header, to
+	 * which columns are appended
+	 * 
+	 * @param header
+	 *            the given number of ints
+	 */
+	MappedInts(long header) {
+		this.length = header;
+	}
+
+	/**
+	 * Appends a column of the given number of ints to the file
+	 * 
+	 * @param length
+	 *            the given number of ints
+	 * @return the column
+	 * @throws IllegalStateException
+	 *             if the file is mapped already
+	 */
+	Ints column(long length) {
+		if (buffers != null) {
+			throw new IllegalStateException("The file is mapped already");
+		}
+		Ints column = new Column(this.length, length);
+		this.length += length;
+		return column;
+	}
+
+	/**
+	 * @return the number of ints of the file
+	 */
+	long length() {
+		return length;
+	}
+
+	/**
+	 * Maps the file at the given path, which is created or extended to the
+	 * file's length if it is mapped to be written, in place of the file
+	 * mapped before
+	 * 
+	 * @param path
+	 *            the given path
+	 * @param mode
+	 *            {@link MapMode#READ_WRITE} to write changes to the file,
+	 *            {@link MapMode#READ_ONLY} to only read it
+	 * @throws IOException
+	 *             if errors occur opening or mapping the file
+	 */
+	void map(Path path, MapMode mode) throws IOException {
+		close();
+		int count = (int) ((length + CHUNK - 1) / CHUNK);
+		MappedByteBuffer[] buffers = new MappedByteBuffer[count];
+		IntBuffer[] chunks = new IntBuffer[count];
+		// mappings stay valid once the channel is closed
+		try (FileChannel channel = mode == MapMode.READ_ONLY ? FileChannel.open(path, StandardOpenOption.READ)
+				: FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+						StandardOpenOption.WRITE)) {
+			for (int i = 0; i < count; i++) {
+				long start = i * CHUNK;
+				buffers[i] = channel.map(mode, start * Integer.BYTES, Math.min(CHUNK, length - start) * Integer.BYTES);
+				buffers[i].order(ByteOrder.nativeOrder());
+				chunks[i] = buffers[i].asIntBuffer();
+			}
+		}
+		this.buffers = buffers;
+		this.chunks = chunks;
+	}
+
+	/**
+	 * Returns the int at the given index
+	 * 
+	 * @param index
+	 *            the given index
+	 * @return the int
+	 */
+	int get(long index) {
+		return chunks[(int) (index >>> CHUNK_BITS)].get((int) (index & MASK));
+	}
+
+	/**
+	 * Sets the int at the given index
+	 * 
+	 * @param index
+	 *            the given index
+	 * @param value
+	 *            the new int
+	 */
+	void set(long index, int value) {
+		chunks[(int) (index >>> CHUNK_BITS)].put((int) (index & MASK), value);
+	}
+
+	/**
+	 * Returns the long stored in the two ints at the given index
+	 * 
+	 * @param index
+	 *            the given index
+	 * @return the long
+	 */
+	long getLong(long index) {
+		return ((long) get(index) << Integer.SIZE) | (get(index + 1) & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Stores the given long in the two ints at the given index
+	 * 
+	 * @param index
+	 *            the given index
+	 * @param value
+	 *            the given long
+	 */
+	void setLong(long index, long value) {
+		set(index, (int) (value >>> Integer.SIZE));
+		set(index + 1, (int) value);
+	}
+
+	/**
+	 * Writes the changes of a file mapped to be written to the storage device
+	 */
+	void force() {
+		for (MappedByteBuffer buffer : buffers) {
+			buffer.force();
+		}
+	}
+
+	/**
+	 * Unmaps the file, after which its ints cannot be accessed until it is
+	 * mapped again. Without {@link #INVOKE_CLEANER}, the chunks are unmapped
+	 * once collected.
+	 */
+	@Override
+	public void close() {
+		MappedByteBuffer[] buffers = this.buffers;
+		// no access may reach an unmapped chunk
+		this.buffers = null;
+		this.chunks = null;
+		if (buffers != null && INVOKE_CLEANER != null) {
+			for (MappedByteBuffer buffer : buffers) {
+				try {
+					INVOKE_CLEANER.invoke(UNSAFE, buffer);
+				} catch (ReflectiveOperationException e) {
+					// the chunk is unmapped once collected
+				}
+			}
+		}
+	}
+
+	/**
+	 * A column of the file, i.e. a range of its ints
+	 * 
+	 * @author Ferdinand
+	 *
+	 */
+	private class Column implements Ints {
+
+		/**
+		 * the index of the column's first int within the file
+		 */
+		private final long offset;
+
+		/**
+		 * the number of ints of the column
+		 */
+		private final long length;
+
+		/**
+		 * Creates a column of the given number of ints starting at the given
+		 * index
+		 * 
+		 * @param offset
+		 *            the index of the first int within the file
+		 * @param length
+		 *            the given number of ints
+		 */
+		Column(long offset, long length) {
+			this.offset = offset;
+			this.length = length;
+		}
+
+		/**
+		 * Returns the int at the given index
+		 * 
+		 * @param index
+		 *            the given index within the column
+		 * @return the int
+		 */
+		@Override
+		public int get(long index) {
+			return MappedInts.this.get(offset + index);
+		}
+
+		/**
+		 * Sets the int at the given index
+		 * 
+		 * @param index
+		 *            the given index within the column
+		 * @param value
+		 *            the new int
+		 */
+		@Override
+		public void set(long index, int value) {
+			MappedInts.this.set(offset + index, value);
+		}
+
+		/**
+		 * Sets every int of the column to the given value, which touches
+		 * every page of the column
+		 * 
+		 * @param value
+		 *            the given value
+		 */
+		@Override
+		public void fill(int value) {
+			for (long index = offset; index < offset + length; index++) {
+				MappedInts.this.set(index, value);
+			}
+		}
+
+		/**
+		 * @return the number of ints of the column
+		 */
+		@Override
+		public long length() {
+			return length;
+		}
+
+		/**
+		 * @return the estimated heap occupied by the column, which excludes
+		 *         the mapped file
+		 */
+		@Override
+		public long footprint() {
+			return Footprint.of(Column.class);
+		}
+
+	}
+
+}
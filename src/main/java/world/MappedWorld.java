@@ -0,0 +1,333 @@
+package world;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * A mapped world behaves exactly like a {@link FlatWorld}, but keeps its
+ * columns in a file mapped into memory outside the heap instead of primitive
+ * arrays: the first occupant and the number of occupants per category of
+ * every patch, the set of free patches, and the location and next occupant of
+ * every entity, in this order after a header. The operating system pages the
+ * file in and out as needed, so that the heap holds only the entities
+ * themselves and a grid may exceed it.
+ * 
+ * The file also keeps the world once populated. A world opened on a file
+ * populated with the same tag, i.e. the same scale, number of entities and
+ * parameters deciding their locations, is populated already, and its entities
+ * {@link #adopt(List) adopt} the stored locations instead of entering the
+ * world at random. A populated file is never changed: a run works on a
+ * scratch copy next to it, which is mapped to be written and deleted when the
+ * world is {@link #close() closed}, so that the file can be reused by any
+ * number of runs. Counting entities with a {@link CountingIndex} is not
+ * supported.
+ * 
+ * @author Ferdinand
+ *
+ * @param <T>
+ *            the type of entities to be managed by this world
+ */
+public class MappedWorld<T extends IEntity> extends ColumnWorld<T> implements Closeable {
+
+	/**
+	 * identifies a mapped world file written in the native byte order
+	 */
+	private static final int MAGIC = 0x4C4F474F;
+
+	/**
+	 * the version of the file layout
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * the position of the scale in the header
+	 */
+	private static final int SCALE = 2;
+
+	/**
+	 * the position of the capacity in the header
+	 */
+	private static final int CAPACITY = 3;
+
+	/**
+	 * the position of the number of entities stored in the header, NONE until
+	 * populated
+	 */
+	private static final int POPULATION = 4;
+
+	/**
+	 * the position of the number of free patches in the header
+	 */
+	private static final int FREE = 5;
+
+	/**
+	 * the position of the tag in the header
+	 */
+	private static final int TAG = 6;
+
+	/**
+	 * the position of the state of the source of randomness after populating
+	 * in the header
+	 */
+	private static final int STATE = 8;
+
+	/**
+	 * the number of ints of the header
+	 */
+	private static final int HEADER = 16;
+
+	/**
+	 * the maximum number of entities in the world
+	 */
+	private final int capacity;
+
+	/**
+	 * the tag of the population stored in the file
+	 */
+	private final long tag;
+
+	/**
+	 * the path of the file keeping the world once populated
+	 */
+	private final Path path;
+
+	/**
+	 * the mapped file holding the header and the columns of the world, i.e.
+	 * the file at the path until populated and its scratch copy afterwards
+	 */
+	private final MappedInts file;
+
+	/**
+	 * the scratch copy of the populated file changed by a run; null until
+	 * created
+	 */
+	private Path scratch;
+
+	/**
+	 * whether the file holds a populated world
+	 */
+	private boolean populated;
+
+	/**
+	 * Creates a mapped world with the given scale on the file at the given
+	 * path. A file populated with the given tag is reused, any other file is
+	 * replaced by an empty world.
+	 * 
+	 * @param path
+	 *            the path of the file
+	 * @param tag
+	 *            identifies the population to be stored in the file
+	 * @param scale
+	 *            the given scale
+	 * @param capacity
+	 *            the maximum number of entities in the world
+	 * @param shape
+	 *            the shape of the field within the scope of an entity
+	 * @param random
+	 *            the source of randomness for placing and moving entities
+	 * @throws IOException
+	 *             if errors occur opening or mapping the file
+	 */
+	public MappedWorld(Path path, long tag, int scale, int capacity, VisionShape shape, SplitMix random)
+			throws IOException {
+		this(new MappedInts(HEADER), (long) scale * scale, path, tag, scale, capacity, shape, random);
+	}
+
+	/**
+	 * Creates a mapped world with the given scale on the given file, whose
+	 * columns are appended in the order of the arguments
+	 * 
+	 * @param file
+	 *            the given file holding only the header yet
+	 * @param cells
+	 *            the number of patches
+	 * @param path
+	 *            the path of the file
+	 * @param tag
+	 *            identifies the population to be stored in the file
+	 * @param scale
+	 *            the given scale
+	 * @param capacity
+	 *            the maximum number of entities in the world
+	 * @param shape
+	 *            the shape of the field within the scope of an entity
+	 * @param random
+	 *            the source of randomness for placing and moving entities
+	 * @throws IOException
+	 *             if errors occur opening or mapping the file
+	 */
+	private MappedWorld(MappedInts file, long cells, Path path, long tag, int scale, int capacity,
+			VisionShape shape, SplitMix random) throws IOException {
+		super(scale, file.column(cells), file.column(cells * CATEGORIES),
+				new FreeCells(file.column(cells), file.column(cells)), file.column(capacity), file.column(capacity),
+				null, shape, random);
+		this.file = file;
+		this.path = path;
+		this.tag = tag;
+		this.capacity = capacity;
+
+		this.populated = Files.exists(path) && Files.size(path) == file.length() * Integer.BYTES && matches(path);
+		if (populated) {
+			// the population is only read until adopted by a scratch copy
+			file.map(path, MapMode.READ_ONLY);
+		} else {
+			Files.deleteIfExists(path);
+			file.map(path, MapMode.READ_WRITE);
+			file.set(0, MAGIC);
+			file.set(1, VERSION);
+			file.set(SCALE, scale);
+			file.set(CAPACITY, capacity);
+			file.set(POPULATION, NONE);
+			file.setLong(TAG, tag);
+			clear();
+		}
+	}
+
+	/**
+	 * Returns whether the file at the given path holds a world of this scale
+	 * and capacity populated with this tag, without mapping more than its
+	 * header
+	 * 
+	 * @param path
+	 *            the given path
+	 * @return whether the file holds a matching world
+	 * @throws IOException
+	 *             if errors occur opening or mapping the file
+	 */
+	private boolean matches(Path path) throws IOException {
+		try (MappedInts header = new MappedInts(HEADER)) {
+			header.map(path, MapMode.READ_ONLY);
+			return header.get(0) == MAGIC && header.get(1) == VERSION && header.get(SCALE) == getScale()
+					&& header.get(CAPACITY) == capacity && header.get(POPULATION) != NONE
+					&& header.getLong(TAG) == tag;
+		}
+	}
+
+	/**
+	 * Returns whether the file holds a world populated with this tag, whose
+	 * entities are to {@link #adopt(List) adopt} their locations
+	 * 
+	 * @return whether the world is populated
+	 */
+	public boolean isPopulated() {
+		return populated;
+	}
+
+	/**
+	 * Assigns the given entities to the locations stored in the populated file
+	 * and restores the source of randomness to its state after populating.
+	 * Changes since made to the world are discarded.
+	 * 
+	 * @param entities
+	 *            the entities to be added to the world, in the order in which
+	 *            they entered it when populated
+	 * @throws IOException
+	 *             if errors occur copying or mapping the file
+	 */
+	public void adopt(List<? extends T> entities) throws IOException {
+		if (!populated || entities.size() != file.get(POPULATION)) {
+			throw new IllegalStateException("The world is not populated with " + entities.size() + " entities");
+		}
+		for (T entity : this.entities) {
+			entity.setId(-1);
+		}
+		this.entities.clear();
+		// a fresh scratch copy shows the file as stored
+		copy();
+		for (T entity : entities) {
+			entity.setId(this.entities.size());
+			this.entities.add(entity);
+		}
+		freePatches.restore(file.get(FREE));
+		random.setState(file.getLong(STATE));
+	}
+
+	/**
+	 * Stores the entities which entered the world since it was cleared as its
+	 * population, together with the state of the source of randomness, and
+	 * works on a scratch copy from now on, so that the file keeps the
+	 * population
+	 * 
+	 * @throws IOException
+	 *             if errors occur copying or mapping the file
+	 */
+	public void seal() throws IOException {
+		if (populated) {
+			throw new IllegalStateException("The world is populated already");
+		}
+		file.set(FREE, freePatches.size());
+		file.setLong(STATE, random.getState());
+		file.set(POPULATION, entities.size());
+		file.force();
+		populated = true;
+		copy();
+	}
+
+	/**
+	 * Resets the world to an empty state. A populated file is kept as stored,
+	 * since a scratch copy is cleared instead.
+	 */
+	@Override
+	public void clear() {
+		if (populated && scratch == null) {
+			try {
+				copy();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		super.clear();
+	}
+
+	/**
+	 * Copies the populated file to the scratch file, which is created next to
+	 * it when first needed, and maps the copy to be written in place of the
+	 * file mapped before
+	 * 
+	 * @throws IOException
+	 *             if errors occur copying or mapping the file
+	 */
+	private void copy() throws IOException {
+		file.close();
+		if (scratch == null) {
+			scratch = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(),
+					".run");
+		}
+		Files.copy(path, scratch, StandardCopyOption.REPLACE_EXISTING);
+		file.map(scratch, MapMode.READ_WRITE);
+	}
+
+	/**
+	 * Estimates the heap occupied by the world, i.e. the list of entities and
+	 * the stencil, excluding the entities within it and the mapped file
+	 * 
+	 * @return the estimated size in bytes
+	 */
+	@Override
+	public long footprint() {
+		return super.footprint() + Footprint.of(MappedInts.class);
+	}
+
+	/**
+	 * Unmaps the file and deletes the scratch copy, after which the world
+	 * cannot be used anymore
+	 * 
+	 * @throws IOException
+	 *             if errors occur deleting the scratch copy
+	 */
+	@Override
+	public void close() throws IOException {
+		file.close();
+		if (scratch != null) {
+			Files.deleteIfExists(scratch);
+			scratch = null;
+		}
+	}
+
+}
@@ -1,10 +1,10 @@
 package world;
 
-import java.util.LinkedList;
-
 /**
- * A patch contains a list of occupying entities and is assigned spatial
- * information, i.e. two-dimensional coordinates.
+ * A patch is assigned spatial information, i.e. two-dimensional coordinates,
+ * and keeps count of its occupying entities per category, so that counting
+ * does not need to inspect them. The occupants themselves are kept by the
+ * world.
  * 
  * @author Ferdinand
  *
@@ -24,9 +24,24 @@ public class Patch<T extends IEntity> {
 	private int yCoordinate;
 
 	/**
-	 * the patch's occupying entities
+	 * the number of occupying cops
+	 */
+	private int cops;
+
+	/**
+	 * the number of occupying quiet agents
 	 */
-	private LinkedList<T> occupants;
+	private int quietAgents;
+
+	/**
+	 * the number of occupying rebelling agents
+	 */
+	private int rebels;
+
+	/**
+	 * the number of occupying jailed agents
+	 */
+	private int jailedAgents;
 
 	/**
 	 * Constructs a patch with no occupants from the given coordinates
@@ -37,16 +52,6 @@ public class Patch<T extends IEntity> {
 	public Patch(int xCoordinate, int yCoordinate) {
 		this.xCoordinate = xCoordinate;
 		this.yCoordinate = yCoordinate;
-		this.occupants = new LinkedList<T>();
-	}
-
-	/**
-	 * Returns the occuyping entities
-	 * 
-	 * @return the occupants
-	 */
-	public LinkedList<? extends T> getOccupants() {
-		return occupants;
 	}
 
 	/**
@@ -56,7 +61,7 @@ public class Patch<T extends IEntity> {
 	 *            the given entity
 	 */
 	public void addOccupant(T occupant) {
-		this.occupants.add(occupant);
+		adjust(occupant.getCategory(), 1);
 	}
 
 	/**
@@ -64,11 +69,23 @@ public class Patch<T extends IEntity> {
 	 * 
 	 * @param occupant
 	 *            the given entity
-	 * @return the entity removed
 	 */
-	public T removeOccupant(T occupant) {
-		int index = this.occupants.indexOf(occupant);
-		return (index < 0) ? null : this.occupants.remove(index);
+	public void removeOccupant(T occupant) {
+		adjust(occupant.getCategory(), -1);
+	}
+
+	/**
+	 * Updates the occupant counts after an occupying entity changed from the
+	 * given previous category to the given current one
+	 * 
+	 * @param previous
+	 *            the category before the change
+	 * @param current
+	 *            the category after the change
+	 */
+	public void recategorise(Category previous, Category current) {
+		adjust(previous, -1);
+		adjust(current, 1);
 	}
 
 	/**
@@ -77,7 +94,28 @@ public class Patch<T extends IEntity> {
 	 * @return whether any of the occupying entities is active
 	 */
 	public boolean containsActive() {
-		return this.occupants.stream().anyMatch((T entity) -> entity.isActive());
+		// only jailed agents are inactive
+		return cops + quietAgents + rebels > 0;
+	}
+
+	/**
+	 * Returns the number of occupying entities of the given category
+	 * 
+	 * @param category
+	 *            the given category
+	 * @return the number of occupants of the given category
+	 */
+	public int count(Category category) {
+		switch (category) {
+		case COP:
+			return cops;
+		case QUIET:
+			return quietAgents;
+		case REBEL:
+			return rebels;
+		default:
+			return jailedAgents;
+		}
 	}
 
 	/**
@@ -102,17 +140,45 @@ public class Patch<T extends IEntity> {
 	 * Removes all occupying entities
 	 */
 	public void clearOccupants() {
-		occupants.clear();
+		cops = 0;
+		quietAgents = 0;
+		rebels = 0;
+		jailedAgents = 0;
 	}
 
 	/**
 	 * Returns whether the patch is occupied or not
 	 * 
-	 * @return true if and only if the list of occupying entities is non-empty,
-	 *         false otherwise
+	 * @return true if and only if any entity occupies the patch, false
+	 *         otherwise
 	 */
 	public boolean isOccupied() {
-		return !this.occupants.isEmpty();
+		return cops + quietAgents + rebels + jailedAgents > 0;
+	}
+
+	/**
+	 * Adds the given difference to the number of occupants of the given
+	 * category
+	 * 
+	 * @param category
+	 *            the given category
+	 * @param delta
+	 *            the difference to be added
+	 */
+	private void adjust(Category category, int delta) {
+		switch (category) {
+		case COP:
+			cops += delta;
+			break;
+		case QUIET:
+			quietAgents += delta;
+			break;
+		case REBEL:
+			rebels += delta;
+			break;
+		default:
+			jailedAgents += delta;
+		}
 	}
 
 }
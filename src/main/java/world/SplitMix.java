@@ -0,0 +1,129 @@
+package world;
+
+import java.util.SplittableRandom;
+
+/**
+ * A source of randomness drawing the same values as a
+ * {@link java.util.SplittableRandom} created with the same seed, i.e. values
+ * of the SplitMix64 generator. Unlike a SplittableRandom, its state can be
+ * read and set, so that a simulation can be checkpointed and resumed with the
+ * same random numbers.
+ * 
+ * @author Ferdinand
+ *
+ */
+public class SplitMix {
+
+	/**
+	 * the increment of the state per drawn value, as used by SplittableRandom
+	 * for seeded instances
+	 */
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	/**
+	 * the scale turning 53 random bits into a double between 0 and 1
+	 */
+	private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+	/**
+	 * the state, advanced by the golden gamma per drawn value
+	 */
+	private long state;
+
+	/**
+	 * Creates a source of randomness with a random seed
+	 */
+	public SplitMix() {
+		this(new SplittableRandom().nextLong());
+	}
+
+	/**
+	 * Creates a source of randomness with the given seed
+	 * 
+	 * @param seed
+	 *            the given seed
+	 */
+	public SplitMix(long seed) {
+		this.state = seed;
+	}
+
+	/**
+	 * @return the state
+	 */
+	public long getState() {
+		return state;
+	}
+
+	/**
+	 * @param state
+	 *            the state to continue from
+	 */
+	public void setState(long state) {
+		this.state = state;
+	}
+
+	/**
+	 * @return a random long value
+	 */
+	public long nextLong() {
+		return mix64(state += GOLDEN_GAMMA);
+	}
+
+	/**
+	 * @return a random double value between 0 (inclusive) and 1 (exclusive)
+	 */
+	public double nextDouble() {
+		return (nextLong() >>> 11) * DOUBLE_UNIT;
+	}
+
+	/**
+	 * Returns a random int value between 0 (inclusive) and the given bound
+	 * (exclusive)
+	 * 
+	 * @param bound
+	 *            the given bound, which must be positive
+	 * @return the random value
+	 */
+	public int nextInt(int bound) {
+		if (bound <= 0) {
+			throw new IllegalArgumentException("bound must be positive");
+		}
+		int r = mix32(state += GOLDEN_GAMMA);
+		int m = bound - 1;
+		if ((bound & m) == 0) {
+			// a power of two
+			r &= m;
+		} else {
+			// reject over-represented candidates
+			for (int u = r >>> 1; u + m - (r = u % bound) < 0; u = mix32(state += GOLDEN_GAMMA) >>> 1) {
+			}
+		}
+		return r;
+	}
+
+	/**
+	 * Mixes the given state into 64 random bits
+	 * 
+	 * @param z
+	 *            the given state
+	 * @return the random bits
+	 */
+	private static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Mixes the given state into 32 random bits
+	 * 
+	 * @param z
+	 *            the given state
+	 * @return the random bits
+	 */
+	private static int mix32(long z) {
+		z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+		return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+	}
+
+}
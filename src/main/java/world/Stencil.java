@@ -0,0 +1,184 @@
+package world;
+
+import java.util.Arrays;
+
+/**
+ * A stencil holds the offsets of the patches within a given vision of a
+ * centre patch, relative to the centre patch. Stencils are computed once per
+ * shape, vision and scale, so that a neighbourhood query is a single pass over
+ * the offsets. The centre patch itself is not part of a stencil, and patches
+ * that would be reached twice because the world wraps around are only
+ * included once.
+ * 
+ * Patches are visited in order of their x offsets, then their y offsets, from
+ * -vision to vision.
+ * 
+ * @author Ferdinand
+ *
+ */
+public final class Stencil {
+
+	/**
+	 * the shape of the vision
+	 */
+	private final VisionShape shape;
+
+	/**
+	 * the vision
+	 */
+	private final int radius;
+
+	/**
+	 * the scale of the world
+	 */
+	private final int scale;
+
+	/**
+	 * the x offsets of the patches, normalised to [0, scale)
+	 */
+	private final int[] offsetsX;
+
+	/**
+	 * the y offsets of the patches, normalised to [0, scale)
+	 */
+	private final int[] offsetsY;
+
+	/**
+	 * Computes the stencil of the given shape and vision in a world of the
+	 * given scale
+	 * 
+	 * @param shape
+	 *            the given shape
+	 * @param radius
+	 *            the given vision
+	 * @param scale
+	 *            the given scale
+	 */
+	public Stencil(VisionShape shape, int radius, int scale) {
+		this.shape = shape;
+		this.radius = radius;
+		this.scale = scale;
+
+		int width = 2 * radius + 1;
+		int capacity = (int) Math.min((long) width * width, (long) scale * scale);
+		int[] offsetsX = new int[capacity];
+		int[] offsetsY = new int[capacity];
+		// offsets can only reach the same patch after wrapping around if the
+		// window is wider than the world, in which case the world has fewer
+		// patches than the window, so that marking them does not grow with
+		// the world
+		boolean[] included = width > scale ? new boolean[scale * scale] : null;
+
+		int size = 0;
+		for (int dx = -radius; dx <= radius; dx++) {
+			for (int dy = -radius; dy <= radius; dy++) {
+				if (shape == VisionShape.CIRCLE && dx * dx + dy * dy > radius * radius) {
+					continue;
+				}
+				int x = mod(dx);
+				int y = mod(dy);
+				// the centre patch is not part of the stencil
+				if (x == 0 && y == 0) {
+					continue;
+				}
+				if (included != null) {
+					if (included[x * scale + y]) {
+						continue;
+					}
+					included[x * scale + y] = true;
+				}
+				offsetsX[size] = x;
+				offsetsY[size] = y;
+				size++;
+			}
+		}
+
+		this.offsetsX = Arrays.copyOf(offsetsX, size);
+		this.offsetsY = Arrays.copyOf(offsetsY, size);
+	}
+
+	/**
+	 * @return the number of patches of the stencil
+	 */
+	public int size() {
+		return offsetsX.length;
+	}
+
+	/**
+	 * @return the estimated heap occupied by the stencil in bytes
+	 */
+	public long footprint() {
+		return Footprint.of(Stencil.class) + 2 * Footprint.array(int.class, offsetsX.length);
+	}
+
+	/**
+	 * Returns the x coordinate of the patch at the given position of the
+	 * stencil around the given centre
+	 * 
+	 * @param centreX
+	 *            the x coordinate of the centre patch
+	 * @param i
+	 *            the given position
+	 * @return the x coordinate
+	 */
+	public int x(int centreX, int i) {
+		int x = centreX + offsetsX[i];
+		return x >= scale ? x - scale : x;
+	}
+
+	/**
+	 * Returns the y coordinate of the patch at the given position of the
+	 * stencil around the given centre
+	 * 
+	 * @param centreY
+	 *            the y coordinate of the centre patch
+	 * @param i
+	 *            the given position
+	 * @return the y coordinate
+	 */
+	public int y(int centreY, int i) {
+		int y = centreY + offsetsY[i];
+		return y >= scale ? y - scale : y;
+	}
+
+	/**
+	 * Returns the index x * scale + y of the patch at the given position of
+	 * the stencil around the given centre
+	 * 
+	 * @param centreX
+	 *            the x coordinate of the centre patch
+	 * @param centreY
+	 *            the y coordinate of the centre patch
+	 * @param i
+	 *            the given position
+	 * @return the index of the patch
+	 */
+	public int cell(int centreX, int centreY, int i) {
+		return x(centreX, i) * scale + y(centreY, i);
+	}
+
+	/**
+	 * Returns whether this stencil matches the given shape and vision
+	 * 
+	 * @param shape
+	 *            the given shape
+	 * @param radius
+	 *            the given vision
+	 * @return true if and only if this stencil has the given shape and vision
+	 */
+	public boolean matches(VisionShape shape, int radius) {
+		return this.shape == shape && this.radius == radius;
+	}
+
+	/**
+	 * calculates the mathematical x modulo scale
+	 * 
+	 * @param x
+	 * @return x mod scale (mathematical)
+	 */
+	private int mod(int x) {
+		int r = x % scale;
+		return r < 0 ? r + scale : r;
+	}
+
+}
@@ -0,0 +1,23 @@
+package world;
+
+/**
+ * The shape of the field of patches within the vision of an entity
+ * 
+ * @author Ferdinand
+ *
+ */
+public enum VisionShape {
+
+	/**
+	 * all patches whose coordinates differ by at most the vision in both
+	 * dimensions
+	 */
+	SQUARE,
+
+	/**
+	 * all patches within a Euclidean distance of the vision, like NetLogo's
+	 * in-radius
+	 */
+	CIRCLE
+
+}
@@ -1,12 +1,9 @@
 package world;
 
-import java.util.Collections;
-import java.util.Hashtable;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.ThreadLocalRandom;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 /**
  * A world represents a two dimensional square matrix of patches that wraps
@@ -19,37 +16,126 @@ import java.util.stream.Collectors;
  */
 public class World<T extends IEntity> implements IWorld<T> {
 
+	/**
+	 * marks the end of a patch's list of occupants
+	 */
+	private static final int NONE = -1;
+
 	/**
 	 * The square matrix of patches
 	 */
 	private Patch<T>[][] globe;
 
 	/**
-	 * entity index to map entities to their patches
+	 * the entities in the world, indexed by their ids
 	 */
-	private Hashtable<T, Patch<T>> entityIndex;
+	private List<T> entities;
 
 	/**
-	 * list of free, i.e. empty patches (!= unoccupied patches)
+	 * entity index to map entity ids to the index x * scale + y of their
+	 * patches
 	 */
-	private List<Patch<T>> freePatches;
+	private int[] entityIndex;
 
 	/**
-	 * Creates a world with the given scale
+	 * the id of the first occupant per patch, indexed by x * scale + y
+	 */
+	private int[] firstOccupant;
+
+	/**
+	 * the id of the next occupant of the same patch per entity id, so that
+	 * the occupants of a patch form a list in order of arrival
+	 */
+	private int[] nextOccupant;
+
+	/**
+	 * set of free, i.e. empty patches (!= unoccupied patches)
+	 */
+	private FreeCells freePatches;
+
+	/**
+	 * optional counting index to count entities per category in logarithmic
+	 * time; null if disabled
+	 */
+	private CountingIndex countingIndex;
+
+	/**
+	 * the source of randomness for placing and moving entities
+	 */
+	private SplitMix random;
+
+	/**
+	 * the shape of the field within the scope of an entity
+	 */
+	private VisionShape shape;
+
+	/**
+	 * the stencil of the most recently used scope
+	 */
+	private Stencil stencil;
+
+	/**
+	 * reusable buffer of nearby free patches for moving entities
+	 */
+	private int[] candidates;
+
+	/**
+	 * Creates a world with the given scale, without a counting index and with
+	 * an unseeded source of randomness
 	 * 
 	 * @param scale
 	 *            the given scale
 	 */
 	public World(int scale) {
+		this(scale, false, new SplitMix());
+	}
+
+	/**
+	 * Creates a world with the given scale and a square-shaped scope
+	 * 
+	 * @param scale
+	 *            the given scale
+	 * @param countingIndex
+	 *            whether entities are counted with a Fenwick tree index
+	 *            instead of scanning the nearby patches
+	 * @param random
+	 *            the source of randomness for placing and moving entities
+	 */
+	public World(int scale, boolean countingIndex, SplitMix random) {
+		this(scale, countingIndex, VisionShape.SQUARE, random);
+	}
+
+	/**
+	 * Creates a world with the given scale
+	 * 
+	 * @param scale
+	 *            the given scale
+	 * @param countingIndex
+	 *            whether entities are counted with a Fenwick tree index
+	 *            instead of scanning the nearby patches, which applies to
+	 *            square-shaped scopes only
+	 * @param shape
+	 *            the shape of the field within the scope of an entity
+	 * @param random
+	 *            the source of randomness for placing and moving entities
+	 */
+	public World(int scale, boolean countingIndex, VisionShape shape, SplitMix random) {
 		this.globe = new Patch[scale][scale];
-		this.entityIndex = new Hashtable<T, Patch<T>>();
-		this.freePatches = new LinkedList<Patch<T>>();
+		this.random = random;
+		this.shape = shape;
+		this.countingIndex = countingIndex ? new CountingIndex(scale) : null;
+		this.entities = new ArrayList<T>();
+		// every entity occupies a free patch when entering
+		this.entityIndex = new int[scale * scale];
+		this.firstOccupant = new int[scale * scale];
+		Arrays.fill(firstOccupant, NONE);
+		this.nextOccupant = new int[scale * scale];
+		// all patches are initially empty
+		this.freePatches = new FreeCells(scale * scale);
 
 		for (int i = 0; i < scale; i++) {
 			for (int j = 0; j < scale; j++) {
 				globe[i][j] = new Patch<T>(i, j);
-				// all patches are initially empty
-				freePatches.add(globe[i][j]);
 			}
 		}
 	}
@@ -64,17 +150,51 @@ public class World<T extends IEntity> implements IWorld<T> {
 	 */
 	@Override
 	public void enter(List<? extends T> entities) {
-		// randomise the free patches
-		Collections.shuffle(freePatches);
-		Iterator<Patch<T>> iter = freePatches.iterator();
-
 		for (T entity : entities) {
-			Patch<T> patch = iter.next();
+			int cell = freePatches.pick(random);
+			Patch<T> patch = patchAt(cell);
 			// allocate an entity to a free patch
 			patch.addOccupant(entity);
-			iter.remove();
-			// update the entity index accordingly
-			entityIndex.put(entity, patch);
+			freePatches.remove(cell);
+			// number the entity and update the entity index accordingly
+			entity.setId(this.entities.size());
+			this.entities.add(entity);
+			entityIndex[entity.getId()] = cell;
+			link(entity.getId(), cell);
+			index(patch, entity.getCategory(), 1);
+		}
+	}
+
+	/**
+	 * Assigns the given entities to the given locations within the world.
+	 * Entities are numbered in the given order, but join the occupants of their
+	 * patches in the given order of arrival.
+	 * 
+	 * @param entities
+	 *            the entities to be added to the world
+	 * @param positions
+	 *            the locations of the entities in the order of the entities
+	 * @param arrivals
+	 *            the indices of the entities in the order in which they join
+	 *            the occupants of their patches
+	 */
+	@Override
+	public void enter(List<? extends T> entities, int[] positions, int[] arrivals) {
+		int first = this.entities.size();
+		for (int i = 0; i < entities.size(); i++) {
+			T entity = entities.get(i);
+			entity.setId(first + i);
+			this.entities.add(entity);
+			entityIndex[entity.getId()] = positions[i];
+		}
+		for (int i : arrivals) {
+			T entity = entities.get(i);
+			int cell = positions[i];
+			Patch<T> patch = patchAt(cell);
+			patch.addOccupant(entity);
+			freePatches.remove(cell);
+			link(entity.getId(), cell);
+			index(patch, entity.getCategory(), 1);
 		}
 	}
 
@@ -83,13 +203,19 @@ public class World<T extends IEntity> implements IWorld<T> {
 	 */
 	@Override
 	public void clear() {
-		entityIndex.clear();
-		freePatches.clear();
-		// clear the square matrix and update the free patches
+		for (T entity : entities) {
+			entity.setId(-1);
+		}
+		entities.clear();
+		Arrays.fill(firstOccupant, NONE);
+		freePatches.fill();
+		if (countingIndex != null) {
+			countingIndex.clear();
+		}
+		// clear the square matrix
 		for (int i = 0; i < getScale(); i++) {
 			for (int j = 0; j < getScale(); j++) {
 				globe[i][j].clearOccupants();
-				freePatches.add(globe[i][j]);
 			}
 		}
 	}
@@ -104,6 +230,29 @@ public class World<T extends IEntity> implements IWorld<T> {
 		return globe.length;
 	}
 
+	/**
+	 * Estimates the heap occupied by the world, i.e. its patches and indices,
+	 * excluding the entities within it
+	 * 
+	 * @return the estimated size in bytes
+	 */
+	@Override
+	public long footprint() {
+		int scale = getScale();
+		long size = Footprint.of(World.class) + Footprint.array(Patch[].class, scale)
+				+ scale * Footprint.array(Patch.class, scale) + (long) scale * scale * Footprint.of(Patch.class)
+				+ Footprint.of(ArrayList.class) + Footprint.array(Object.class, entities.size())
+				+ Footprint.array(int.class, entityIndex.length) + Footprint.array(int.class, firstOccupant.length)
+				+ Footprint.array(int.class, nextOccupant.length) + freePatches.footprint();
+		if (countingIndex != null) {
+			size += countingIndex.footprint();
+		}
+		if (stencil != null) {
+			size += stencil.footprint() + Footprint.array(int.class, candidates.length);
+		}
+		return size;
+	}
+
 	/**
 	 * Moves the given entity to another random, unoccupied location in the
 	 * world within the given scope. If no such location is available, the
@@ -116,19 +265,24 @@ public class World<T extends IEntity> implements IWorld<T> {
 	 */
 	@Override
 	public void move(T entity, int scope) {
-		Patch<T> patch = entityIndex.get(entity);
+		Patch<T> patch = patchOf(entity);
+		Stencil stencil = stencil(scope);
+		int centreX = patch.getxCoordinate();
+		int centreY = patch.getyCoordinate();
 
-		List<Patch<T>> neighbourhood = this.nearPatchesOf(patch, scope);
-		// calculate the list of nearby unoccupied or occupied (by inactive
-		// entities) patches
-		List<Patch<T>> freeNeighbourPatches = neighbourhood.stream()
-				.filter((Patch<T> p) -> !p.containsActive()).collect(Collectors.toList());
+		// collect the nearby unoccupied or occupied (by inactive entities)
+		// patches
+		int free = 0;
+		for (int i = 0; i < stencil.size(); i++) {
+			int cell = stencil.cell(centreX, centreY, i);
+			if (!patchAt(cell).containsActive()) {
+				candidates[free++] = cell;
+			}
+		}
 
-		if (!freeNeighbourPatches.isEmpty()) {
+		if (free > 0) {
 			// assign the given entity to a random free patch nearby
-			Patch<T> newPatch = freeNeighbourPatches
-					.get(ThreadLocalRandom.current().nextInt(freeNeighbourPatches.size()));
-			moveTo(entity, newPatch);
+			moveTo(entity, patchAt(candidates[random.nextInt(free)]));
 		}
 		// if no free nearby patch is available, the entity will stay on its
 		// current patch
@@ -145,7 +299,7 @@ public class World<T extends IEntity> implements IWorld<T> {
 	 */
 	@Override
 	public void moveTo(T entity, T target) {
-		Patch<T> patch = entityIndex.get(target);
+		Patch<T> patch = patchOf(target);
 		moveTo(entity, patch);
 	}
 
@@ -161,14 +315,163 @@ public class World<T extends IEntity> implements IWorld<T> {
 	 */
 	@Override
 	public List<T> neighbourhoodOf(T entity, int scope) {
-		Patch<T> patch = entityIndex.get(entity);
-		// calculate the list of nearby turtles based on the list of nearby
-		// patches and their occupants
-		List<T> neighbours = nearPatchesOf(patch, scope).stream().map(Patch::getOccupants)
-				.flatMap(List::stream).collect(Collectors.toList());
+		// calculate the list of nearby turtles based on the occupants of the
+		// nearby patches
+		List<T> neighbours = new ArrayList<T>();
+		forEachNeighbour(entity, scope, neighbours::add);
 		return neighbours;
 	}
 
+	/**
+	 * Passes every entity within the given scope of the given entity to the
+	 * given consumer. The patches are visited in the order of the scope's
+	 * {@link Stencil}, and neither patches nor entities are collected on the
+	 * way.
+	 * 
+	 * @param entity
+	 *            the given entity
+	 * @param scope
+	 *            the given scope
+	 * @param consumer
+	 *            the consumer to be applied to each nearby entity
+	 */
+	@Override
+	public void forEachNeighbour(T entity, int scope, Consumer<? super T> consumer) {
+		Patch<T> centre = patchOf(entity);
+		Stencil stencil = stencil(scope);
+		int centreX = centre.getxCoordinate();
+		int centreY = centre.getyCoordinate();
+
+		for (int i = 0; i < stencil.size(); i++) {
+			int cell = stencil.cell(centreX, centreY, i);
+			for (int id = firstOccupant[cell]; id != NONE; id = nextOccupant[id]) {
+				consumer.accept(entities.get(id));
+			}
+		}
+	}
+
+	/**
+	 * Passes the entities located on the patch with the given location to the
+	 * given consumer in the order in which they arrived there
+	 * 
+	 * @param position
+	 *            the location as index x * scale + y of the patch
+	 * @param consumer
+	 *            the consumer to be applied to each occupant
+	 */
+	@Override
+	public void forEachOccupant(int position, Consumer<? super T> consumer) {
+		for (int id = firstOccupant[position]; id != NONE; id = nextOccupant[id]) {
+			consumer.accept(entities.get(id));
+		}
+	}
+
+	/**
+	 * Returns the number of entities of the given category within the given
+	 * scope of the given entity. If the counting index is enabled and the scope
+	 * is square-shaped, the count is answered by the index, otherwise the
+	 * nearby patches are scanned.
+	 * 
+	 * @param entity
+	 *            the given entity
+	 * @param scope
+	 *            the given scope
+	 * @param category
+	 *            the category of entities to be counted
+	 * @return the number of nearby entities of the given category
+	 */
+	@Override
+	public int count(T entity, int scope, Category category) {
+		Patch<T> centre = patchOf(entity);
+		int scale = getScale();
+		int centreX = centre.getxCoordinate();
+		int centreY = centre.getyCoordinate();
+
+		if (countingIndex != null && shape == VisionShape.SQUARE) {
+			// a square field wider than the globe would count patches twice
+			// since the globe matrix wraps around
+			int width = Math.min(2 * scope + 1, scale);
+			int startX = mod(centreX - scope, scale);
+			int startY = mod(centreY - scope, scale);
+			// the centre patch is part of the window but not of the
+			// neighbourhood
+			return countingIndex.count(startX, startY, width, category)
+					- centre.count(category);
+		}
+
+		Stencil stencil = stencil(scope);
+		int count = 0;
+		for (int i = 0; i < stencil.size(); i++) {
+			count += globe[stencil.x(centreX, i)][stencil.y(centreY, i)].count(category);
+		}
+		return count;
+	}
+
+	/**
+	 * Notifies the world that the category of the given entity has changed.
+	 * Entities that have not entered the world yet are ignored.
+	 * 
+	 * @param entity
+	 *            the given entity
+	 * @param previous
+	 *            the category the entity belonged to before the change
+	 */
+	@Override
+	public void update(T entity, Category previous) {
+		if (entity.getId() >= 0) {
+			Patch<T> patch = patchOf(entity);
+			patch.recategorise(previous, entity.getCategory());
+			index(patch, previous, -1);
+			index(patch, entity.getCategory(), 1);
+		}
+	}
+
+	/**
+	 * Returns the location of the given entity as the index x * scale + y of
+	 * its patch
+	 * 
+	 * @param entity
+	 *            the given entity
+	 * @return the location of the entity
+	 */
+	@Override
+	public int positionOf(T entity) {
+		return entityIndex[entity.getId()];
+	}
+
+	/**
+	 * Returns the patch the given entity is located on
+	 * 
+	 * @param entity
+	 *            the given entity
+	 * @return the patch of the entity
+	 */
+	private Patch<T> patchOf(T entity) {
+		return patchAt(entityIndex[entity.getId()]);
+	}
+
+	/**
+	 * Returns the patch with the given index x * scale + y
+	 * 
+	 * @param cell
+	 *            the given index
+	 * @return the patch
+	 */
+	private Patch<T> patchAt(int cell) {
+		return globe[cell / globe.length][cell % globe.length];
+	}
+
+	/**
+	 * Returns the index x * scale + y of the given patch
+	 * 
+	 * @param patch
+	 *            the given patch
+	 * @return the index of the patch
+	 */
+	private int cellOf(Patch<T> patch) {
+		return patch.getxCoordinate() * getScale() + patch.getyCoordinate();
+	}
+
 	/**
 	 * Moves the given entity to the given new patch
 	 * 
@@ -178,56 +481,95 @@ public class World<T extends IEntity> implements IWorld<T> {
 	 *            the new patch to move the entity to
 	 */
 	private void moveTo(T entity, Patch<T> newPatch) {
-		Patch<T> currentPatch = entityIndex.remove(entity);
+		Patch<T> currentPatch = patchOf(entity);
 		currentPatch.removeOccupant(entity);
+		unlink(entity.getId(), cellOf(currentPatch));
+		index(currentPatch, entity.getCategory(), -1);
 		if (!currentPatch.isOccupied()) {
-			freePatches.add(currentPatch);
+			freePatches.add(cellOf(currentPatch));
 		}
 
 		newPatch.addOccupant(entity);
-		freePatches.remove(newPatch);
-		entityIndex.put(entity, newPatch);
+		index(newPatch, entity.getCategory(), 1);
+		freePatches.remove(cellOf(newPatch));
+		entityIndex[entity.getId()] = cellOf(newPatch);
+		link(entity.getId(), cellOf(newPatch));
 	}
 
 	/**
-	 * Returns the list of patches within the given scope of the given patch.
-	 * The given patch is not part of the result and the result does not contain
-	 * duplicate patches.
+	 * Appends the entity with the given id to the occupants of the patch with
+	 * the given index
 	 * 
-	 * @param centre
-	 *            the given patch
-	 * @param scope
-	 *            the given scope that specifies the width or length of the
-	 *            nearby square patch field around the centre patch
-	 * @return the patches within the square-formed scope of the centre patch
-	 */
-	private LinkedList<Patch<T>> nearPatchesOf(Patch<T> centre, int scope) {
-		LinkedList<Patch<T>> nearPatches = new LinkedList<Patch<T>>();
-
-		// calculate the start coordinates of the upper left corner of the
-		// square patch field around the centre patch;
-		// consider that the globe matrix wraps around
-		int startX = mod(centre.getxCoordinate() - scope, getScale());
-		int startY = mod(centre.getyCoordinate() - scope, getScale());
-
-		// add the patches of the (scope + 1)*(scope + 1) matrix around the
-		// centre patch
-		// to the list of nearby patches
-		for (int i = 0; i < 2 * scope + 1; i++) {
-			for (int j = 0; j < 2 * scope + 1; j++) {
-				// consider that the globe matrix wraps around
-				int indexX = (startX + i) % getScale();
-				int indexY = (startY + j) % getScale();
-				// do not include the centre patch and prevent duplicate patches
-				// being added
-				if (!(indexX == centre.getxCoordinate() && indexY == centre.getyCoordinate())
-						&& !nearPatches.contains(globe[indexX][indexY])) {
-					nearPatches.add(globe[indexX][indexY]);
-				}
+	 * @param id
+	 *            the given id
+	 * @param cell
+	 *            the index x * scale + y of the patch
+	 */
+	private void link(int id, int cell) {
+		nextOccupant[id] = NONE;
+		if (firstOccupant[cell] == NONE) {
+			firstOccupant[cell] = id;
+		} else {
+			int last = firstOccupant[cell];
+			while (nextOccupant[last] != NONE) {
+				last = nextOccupant[last];
+			}
+			nextOccupant[last] = id;
+		}
+	}
+
+	/**
+	 * Removes the entity with the given id from the occupants of the patch
+	 * with the given index
+	 * 
+	 * @param id
+	 *            the given id
+	 * @param cell
+	 *            the index x * scale + y of the patch
+	 */
+	private void unlink(int id, int cell) {
+		if (firstOccupant[cell] == id) {
+			firstOccupant[cell] = nextOccupant[id];
+		} else {
+			int previous = firstOccupant[cell];
+			while (nextOccupant[previous] != id) {
+				previous = nextOccupant[previous];
 			}
+			nextOccupant[previous] = nextOccupant[id];
+		}
+	}
+
+	/**
+	 * Records the given change of the number of entities of the given category
+	 * on the given patch in the counting index, if enabled
+	 * 
+	 * @param patch
+	 *            the given patch
+	 * @param category
+	 *            the given category
+	 * @param delta
+	 *            the change of the number of entities
+	 */
+	private void index(Patch<T> patch, Category category, int delta) {
+		if (countingIndex != null) {
+			countingIndex.add(patch.getxCoordinate(), patch.getyCoordinate(), category, delta);
 		}
+	}
 
-		return nearPatches;
+	/**
+	 * Returns the stencil of the given scope, computing it if the scope differs
+	 * from the most recently used one
+	 * 
+	 * @param scope
+	 *            the given scope
+	 * @return the stencil
+	 */
+	private Stencil stencil(int scope) {
+		if (stencil == null || !stencil.matches(shape, scope)) {
+			stencil = new Stencil(shape, scope, getScale());
+			candidates = new int[stencil.size()];
+		}
+		return stencil;
 	}
 
 	/**
@@ -0,0 +1,107 @@
+package process;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import world.Allocation;
+
+/**
+ * Tests of the checkpoints of the object-based engine, which are to resume a
+ * run exactly and to be taken without allocating per patch
+ * 
+ * @author Ferdinand
+ *
+ */
+public class CheckpointTest {
+
+	/**
+	 * the worlds checked, as command-line arguments
+	 */
+	private static final String[] WORLDS = { "-flat_world=false", "-flat_world=true", "-world_file=" };
+
+	/**
+	 * the directory of the results, checkpoints and mapped worlds
+	 */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Checks that a run resumed from its last checkpoint writes the same
+	 * results as the uninterrupted run
+	 * 
+	 * @throws IOException
+	 *             if errors occur writing the results or checkpoints
+	 */
+	@Test
+	public void resumedRunMatchesUninterruptedRun() throws IOException {
+		for (String world : WORLDS) {
+			File directory = folder.newFolder();
+			String name = new File(directory, "results").getPath();
+			Parameters parameters = Parameters.parse(new String[] { "-seed=9", "-ticks=150", "-checkpoint_interval=100",
+					"-movement=true", world.equals("-world_file=") ? world + new File(directory, "world.bin") : world });
+			try (Simulation simulation = Simulation.create(parameters);
+					ResultsSink results = ResultsSink.open(parameters, name);
+					Checkpoints checkpoints = Checkpoints.of(name)) {
+				simulation.setup(results, checkpoints);
+				simulation.go(parameters.getTicks());
+			}
+			Path csv = new File(name + ".csv").toPath();
+			Path checkpoint = new File(name + ".ckpt").toPath();
+			byte[] expected = Files.readAllBytes(csv);
+
+			try (DataInputStream in = Checkpoints.open(checkpoint)) {
+				Parameters resumed = Checkpoints.readParameters(in);
+				try (Simulation simulation = Simulation.create(resumed);
+						ResultsSink results = ResultsSink.resume(resumed, in);
+						Checkpoints checkpoints = new Checkpoints(checkpoint)) {
+					simulation.resume(results, checkpoints, in);
+					simulation.go(resumed.getTicks());
+				}
+			}
+			assertArrayEquals(world, expected, Files.readAllBytes(csv));
+		}
+	}
+
+	/**
+	 * Checks that a checkpoint of a sparsely populated world allocates far
+	 * less than an object per patch
+	 * 
+	 * @throws IOException
+	 *             if errors occur writing the checkpoint
+	 */
+	@Test
+	public void checkpointDoesNotAllocatePerPatch() throws IOException {
+		DataOutputStream out = new DataOutputStream(new OutputStream() {
+
+			@Override
+			public void write(int b) {
+			}
+
+		});
+		for (String world : WORLDS) {
+			Parameters parameters = Parameters.parse(new String[] { "-seed=9", "-dimension=300",
+					"-initial_cop_density=0.001", "-initial_agent_density=0.01",
+					world.equals("-world_file=") ? world + new File(folder.newFolder(), "world.bin") : world });
+			try (Simulation simulation = Simulation.create(parameters)) {
+				simulation.populate();
+				long bytes = Allocation.steadyBytes(1, () -> simulation.checkpoint(out));
+
+				// an object per patch would take at least 16 bytes each
+				assertTrue(world + " allocated " + bytes + " bytes", bytes < 300 * 300);
+			}
+		}
+	}
+
+}
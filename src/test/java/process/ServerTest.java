@@ -0,0 +1,112 @@
+package process;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of the simulation server, which is to keep the files of a job within
+ * the job's directory whatever paths a client passes
+ * 
+ * @author Ferdinand
+ *
+ */
+public class ServerTest {
+
+	/**
+	 * the directory of the jobs and of files outside of them
+	 */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * the server tested
+	 */
+	private Server server;
+
+	/**
+	 * the directory of the jobs' results
+	 */
+	private Path jobs;
+
+	/**
+	 * Starts a server with one worker on any free port
+	 * 
+	 * @throws IOException
+	 *             if the port cannot be bound
+	 */
+	@Before
+	public void start() throws IOException {
+		jobs = folder.newFolder("jobs").toPath();
+		server = new Server(0, 1, 10, jobs);
+		server.start();
+	}
+
+	/**
+	 * Stops the server
+	 */
+	@After
+	public void stop() {
+		server.stop();
+	}
+
+	/**
+	 * Checks that a job posted with a world file outside its directory maps
+	 * its world within its directory instead
+	 * 
+	 * @throws IOException
+	 *             if errors occur sending requests
+	 */
+	@Test
+	public void worldFileIsKeptInJobDirectory() throws IOException {
+		File outside = new File(folder.getRoot(), "outside.bin");
+		HttpURLConnection post = connect("/jobs");
+		post.setRequestMethod("POST");
+		post.setDoOutput(true);
+		try (OutputStream out = post.getOutputStream()) {
+			out.write(("{\"seed\": 42, \"ticks\": 20, \"world_file\": " + Server.quote(outside.getPath()) + "}")
+					.getBytes(StandardCharsets.UTF_8));
+		}
+		assertEquals(201, post.getResponseCode());
+
+		HttpURLConnection results = connect("/jobs/1/results");
+		assertEquals(200, results.getResponseCode());
+		try (InputStream in = results.getInputStream()) {
+			while (in.read() >= 0) {
+			}
+		}
+
+		assertFalse(outside.exists());
+		assertTrue(Files.exists(jobs.resolve("1").resolve("world.bin")));
+	}
+
+	/**
+	 * Opens a connection to the given path of the server
+	 * 
+	 * @param path
+	 *            the given path
+	 * @return the connection
+	 * @throws IOException
+	 *             if errors occur opening the connection
+	 */
+	private HttpURLConnection connect(String path) throws IOException {
+		return (HttpURLConnection) new URL("http://localhost:" + server.getPort() + path).openConnection();
+	}
+
+}
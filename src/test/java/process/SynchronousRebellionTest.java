@@ -0,0 +1,207 @@
+package process;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Tests of the synchronous engine, whose results are not to depend on the
+ * number of threads evaluating tiles, whose cops are only to arrest agents
+ * still rebelling, and whose threads are not to outlive it
+ * 
+ * @author Ferdinand
+ *
+ */
+public class SynchronousRebellionTest {
+
+	/**
+	 * the parameters of the tested runs
+	 */
+	private static final Parameters PARAMETERS = Parameters.parse(new String[] { "-synchronous=true",
+			"-seed=11", "-dimension=40", "-ticks=60", "-movement=true", "-government_legitimacy=0.6",
+			"-snapshot_interval=10" });
+
+	/**
+	 * Checks that the counts and snapshots of every tick are the same for
+	 * one, two, four and eight threads
+	 * 
+	 * @throws IOException
+	 *             if errors occur running the simulations
+	 */
+	@Test
+	public void resultsDoNotDependOnThreads() throws IOException {
+		String expected = run(PARAMETERS.with("threads", "1"));
+		for (int threads : new int[] { 2, 4, 8 }) {
+			assertEquals("threads=" + threads, expected, run(PARAMETERS.with("threads", Integer.toString(threads))));
+		}
+	}
+
+	/**
+	 * Checks that cops do not arrest suspects who decided to go quiet in the
+	 * same tick, with agents who rebel in every other tick, so that cops
+	 * always pick suspects who are going quiet
+	 * 
+	 * @throws IOException
+	 *             if errors occur running the simulation
+	 */
+	@Test
+	public void copsDoNotArrestAgentsGoingQuiet() throws IOException {
+		Parameters parameters = PARAMETERS.with("snapshot_interval", "0");
+		StringBuilder recorded = new StringBuilder();
+		try (Simulation simulation = new Fickle(parameters); ResultsSink results = new Recorder(recorded)) {
+			simulation.setup(results);
+			simulation.go(parameters.getTicks());
+		}
+		int rebelling = 0;
+		for (String row : recorded.toString().split("\n")) {
+			String[] counts = row.split(",");
+			assertEquals(row, "0", counts[2]);
+			rebelling += Integer.parseInt(counts[3]);
+		}
+		assertTrue(rebelling > 0);
+	}
+
+	/**
+	 * Checks that closing the simulation terminates the threads of its pool
+	 * 
+	 * @throws IOException
+	 *             if errors occur running the simulation
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the threads to terminate
+	 */
+	@Test
+	public void closeTerminatesThreads() throws IOException, InterruptedException {
+		long before = workers();
+		run(PARAMETERS.with("threads", "4"));
+		// terminating workers may take a moment after the pool is shut down
+		for (int i = 0; i < 100 && workers() > before; i++) {
+			Thread.sleep(50);
+		}
+		assertTrue(workers() <= before);
+	}
+
+	/**
+	 * Runs and closes a simulation with the given parameters
+	 * 
+	 * @param parameters
+	 *            the given parameters
+	 * @return the recorded counts and snapshots of every tick
+	 * @throws IOException
+	 *             if errors occur running the simulation
+	 */
+	private static String run(Parameters parameters) throws IOException {
+		StringBuilder recorded = new StringBuilder();
+		try (Simulation simulation = Simulation.create(parameters); ResultsSink results = new Recorder(recorded)) {
+			simulation.setup(results);
+			simulation.go(parameters.getTicks());
+		}
+		return recorded.toString();
+	}
+
+	/**
+	 * @return the number of live worker threads of pools other than the
+	 *         common pool
+	 */
+	private static long workers() {
+		return Thread.getAllStackTraces().keySet().stream()
+				.filter(thread -> thread.getName().matches("ForkJoinPool-\\d+-worker-\\d+")).count();
+	}
+
+	/**
+	 * A fickle rebellion lets all agents rebel in odd ticks and go quiet in
+	 * even ones
+	 */
+	private static class Fickle extends SynchronousRebellion {
+
+		/**
+		 * the number of ticks started
+		 */
+		private int ticks;
+
+		/**
+		 * Creates a fickle rebellion with the given parameters
+		 * 
+		 * @param parameters
+		 *            the given parameters
+		 */
+		Fickle(Parameters parameters) {
+			super(parameters);
+		}
+
+		@Override
+		protected void tick() {
+			ticks++;
+			super.tick();
+		}
+
+		@Override
+		protected boolean decide(int id, int[] nearby) {
+			return ticks % 2 == 1;
+		}
+
+	}
+
+	/**
+	 * A recorder keeps the results of a run as text
+	 */
+	private static class Recorder implements ResultsSink {
+
+		/**
+		 * the recorded results
+		 */
+		private final StringBuilder recorded;
+
+		/**
+		 * Creates a recorder appending to the given text
+		 * 
+		 * @param recorded
+		 *            the given text
+		 */
+		Recorder(StringBuilder recorded) {
+			this.recorded = recorded;
+		}
+
+		@Override
+		public void header(Parameters parameters) {
+		}
+
+		@Override
+		public void row(int tick, int quiet, int jailed, int rebels) {
+			recorded.append(tick).append(',').append(quiet).append(',').append(jailed).append(',').append(rebels)
+					.append('\n');
+		}
+
+		@Override
+		public void snapshot(int tick, int[] jailTerm, int[] position, boolean[] rebel) {
+			recorded.append(Arrays.toString(jailTerm)).append(Arrays.toString(position))
+					.append(Arrays.toString(rebel)).append('\n');
+		}
+
+		@Override
+		public void equilibrium(int tick, Equilibrium.Reason reason, int period) {
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void checkpoint(DataOutput checkpoint) {
+		}
+
+		@Override
+		public void force() {
+		}
+
+		@Override
+		public void close() {
+		}
+
+	}
+
+}
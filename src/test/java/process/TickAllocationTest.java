@@ -0,0 +1,115 @@
+package process;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import world.Allocation;
+
+/**
+ * Tests that the steady-state loop of a run, i.e. a tick followed by saving
+ * its results to a sink, allocates nothing. Each sequential engine, and the
+ * object-based one with a flat and a mapped world as well, runs a number of
+ * ticks to let buffers grow to their final sizes and the JIT compile the
+ * loop, and then the bytes allocated by the running thread during further
+ * ticks are measured as a steady {@link Allocation}. The synchronous engine
+ * is left out since its work is done by the threads of a pool.
+ * 
+ * @author Ferdinand
+ *
+ */
+public class TickAllocationTest {
+
+	/**
+	 * the number of ticks before measuring
+	 */
+	private static final int WARMUP_TICKS = 1000;
+
+	/**
+	 * the number of ticks of a measured window
+	 */
+	private static final int MEASURED_TICKS = 500;
+
+	/**
+	 * the engines checked
+	 */
+	private static final String[] ENGINES = { "object", "flat", "mapped", "compact", "incremental" };
+
+	/**
+	 * the directory of the results and mapped worlds
+	 */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Checks a world in which turtles do not move
+	 * 
+	 * @throws IOException
+	 *             if errors occur writing the results
+	 */
+	@Test
+	public void staticWorldDoesNotAllocate() throws IOException {
+		assertNoAllocation("-seed=42");
+	}
+
+	/**
+	 * Checks a world in which turtles move and many agents rebel and are
+	 * jailed
+	 * 
+	 * @throws IOException
+	 *             if errors occur writing the results
+	 */
+	@Test
+	public void movingWorldDoesNotAllocate() throws IOException {
+		assertNoAllocation("-seed=42", "-movement=true", "-government_legitimacy=0.6");
+	}
+
+	/**
+	 * Checks circular visions with individually perceived legitimacy and the
+	 * binary format
+	 * 
+	 * @throws IOException
+	 *             if errors occur writing the results
+	 */
+	@Test
+	public void circularVisionDoesNotAllocate() throws IOException {
+		assertNoAllocation("-seed=42", "-movement=true", "-vision_shape=circle", "-individual_legitimacy=true",
+				"-format=binary");
+	}
+
+	/**
+	 * Runs every engine with the given parameters and checks that the
+	 * measured ticks allocated nothing
+	 * 
+	 * @param args
+	 *            the given parameters in the form of command-line arguments
+	 * @throws IOException
+	 *             if errors occur writing the results
+	 */
+	private void assertNoAllocation(String... args) throws IOException {
+		Parameters parameters = Parameters.parse(args).with("ticks",
+				Integer.toString(WARMUP_TICKS + Allocation.windows() * MEASURED_TICKS));
+		for (String engine : ENGINES) {
+			File directory = folder.newFolder();
+			Parameters run = parameters.with("compact", Boolean.toString(engine.equals("compact")))
+					.with("incremental", Boolean.toString(engine.equals("incremental")))
+					.with("flat_world", Boolean.toString(engine.equals("flat")))
+					.with("world_file", engine.equals("mapped") ? new File(directory, "world.bin").getPath() : "");
+			try (Simulation simulation = Simulation.create(run);
+					ResultsSink results = ResultsSink.open(run, new File(directory, "results").getPath())) {
+				simulation.setup(results);
+				int[] ticks = { 0 };
+				long bytes = Allocation.steadyBytes(WARMUP_TICKS / MEASURED_TICKS,
+						() -> simulation.go(ticks[0] += MEASURED_TICKS));
+
+				assertEquals(engine + " allocated in " + MEASURED_TICKS + " ticks", 0, bytes);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,117 @@
+package world;
+
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures the bytes allocated by the running thread with its allocation
+ * counter. Tests measuring it are skipped on JVMs without the counter. As the
+ * JIT may still compile a method, e.g. one of the JDK writing to a file, and
+ * allocate once while switching to it, a steady state is measured in a few
+ * consecutive windows, one of which allocates nothing unless the measured
+ * action allocates steadily.
+ * 
+ * @author Ferdinand
+ *
+ */
+public final class Allocation {
+
+	/**
+	 * the number of windows measured before a steady state is taken to
+	 * allocate
+	 */
+	private static final int WINDOWS = 3;
+
+	/**
+	 * An action whose allocations are measured
+	 * 
+	 * @param <X>
+	 *            the type of exception thrown by the action
+	 */
+	@FunctionalInterface
+	public interface Action<X extends Exception> {
+
+		/**
+		 * Performs the action
+		 * 
+		 * @throws X
+		 *             if the action fails
+		 */
+		void run() throws X;
+
+	}
+
+	/**
+	 * Not to be instantiated
+	 */
+	private Allocation() {
+	}
+
+	/**
+	 * Returns the bytes allocated by the running thread while performing the
+	 * given action once
+	 * 
+	 * @param action
+	 *            the given action
+	 * @return the allocated bytes
+	 * @throws X
+	 *             if the action fails
+	 */
+	public static <X extends Exception> long bytes(Action<X> action) throws X {
+		com.sun.management.ThreadMXBean threads = threads();
+		long thread = Thread.currentThread().getId();
+		long before = threads.getThreadAllocatedBytes(thread);
+		action.run();
+		return threads.getThreadAllocatedBytes(thread) - before;
+	}
+
+	/**
+	 * Performs the given action the given number of times to let buffers
+	 * grow and the JIT compile it, and returns the bytes allocated by the
+	 * running thread while performing it once more, 0 if any of a few further
+	 * times allocated nothing
+	 * 
+	 * @param warmups
+	 *            the given number of times
+	 * @param action
+	 *            the given action
+	 * @return the bytes allocated by the last measured time, 0 if nothing
+	 * @throws X
+	 *             if the action fails
+	 */
+	public static <X extends Exception> long steadyBytes(int warmups, Action<X> action) throws X {
+		threads();
+		for (int i = 0; i < warmups; i++) {
+			action.run();
+		}
+		long bytes;
+		int window = 0;
+		do {
+			bytes = bytes(action);
+		} while (bytes != 0 && ++window < WINDOWS);
+		return bytes;
+	}
+
+	/**
+	 * @return the number of measured times a steady state may take
+	 */
+	public static int windows() {
+		return WINDOWS;
+	}
+
+	/**
+	 * Returns the thread bean, skipping the calling test unless it counts the
+	 * bytes allocated per thread
+	 * 
+	 * @return the thread bean
+	 */
+	private static com.sun.management.ThreadMXBean threads() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+		assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+		return threads;
+	}
+
+}
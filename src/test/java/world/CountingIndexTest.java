@@ -0,0 +1,56 @@
+package world;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+/**
+ * Tests of the counting index against counting the patches of a window one by
+ * one
+ * 
+ * @author Ferdinand
+ *
+ */
+public class CountingIndexTest {
+
+	/**
+	 * Checks the counts of wrapping and non-wrapping windows of every width
+	 * while entities are added and removed at random
+	 */
+	@Test
+	public void countMatchesScan() {
+		int scale = 13;
+		CountingIndex index = new CountingIndex(scale);
+		int[][] counts = new int[Category.values().length][scale * scale];
+		SplittableRandom random = new SplittableRandom(42);
+
+		for (int change = 0; change < 2000; change++) {
+			int x = random.nextInt(scale);
+			int y = random.nextInt(scale);
+			Category category = Category.values()[random.nextInt(Category.values().length)];
+			// never let a count drop below zero
+			int delta = counts[category.ordinal()][x * scale + y] > 0 && random.nextBoolean() ? -1 : 1;
+			index.add(x, y, category, delta);
+			counts[category.ordinal()][x * scale + y] += delta;
+
+			int startX = random.nextInt(scale);
+			int startY = random.nextInt(scale);
+			int width = 1 + random.nextInt(scale);
+			for (Category counted : Category.values()) {
+				int expected = 0;
+				for (int i = 0; i < width; i++) {
+					for (int j = 0; j < width; j++) {
+						expected += counts[counted.ordinal()][(startX + i) % scale * scale + (startY + j) % scale];
+					}
+				}
+				assertEquals(expected, index.count(startX, startY, width, counted));
+			}
+		}
+
+		index.clear();
+		assertEquals(0, index.count(0, 0, scale, Category.QUIET));
+	}
+
+}
@@ -0,0 +1,248 @@
+package world;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of the mapped world, which is to behave like a flat world and to keep
+ * a populated file unchanged by the runs reusing it
+ * 
+ * @author Ferdinand
+ *
+ */
+public class MappedWorldTest {
+
+	/**
+	 * the scale of the tested worlds
+	 */
+	private static final int SCALE = 20;
+
+	/**
+	 * the number of entities in the tested worlds
+	 */
+	private static final int ENTITIES = SCALE * SCALE / 2;
+
+	/**
+	 * the scope of the moves
+	 */
+	private static final int SCOPE = 3;
+
+	/**
+	 * the number of times every entity moves
+	 */
+	private static final int MOVES = 20;
+
+	/**
+	 * the tag of the tested population
+	 */
+	private static final long TAG = 42;
+
+	/**
+	 * the directory of the world files
+	 */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * A minimal entity of a given category
+	 */
+	private static class Entity implements IEntity {
+
+		/**
+		 * the category of the entity
+		 */
+		private final Category category;
+
+		/**
+		 * the id assigned by the world
+		 */
+		private int id = -1;
+
+		/**
+		 * Creates an entity of the given category
+		 * 
+		 * @param category
+		 *            the given category
+		 */
+		Entity(Category category) {
+			this.category = category;
+		}
+
+		@Override
+		public boolean isActive() {
+			return category != Category.JAILED;
+		}
+
+		@Override
+		public Category getCategory() {
+			return category;
+		}
+
+		@Override
+		public int getId() {
+			return id;
+		}
+
+		@Override
+		public void setId(int id) {
+			this.id = id;
+		}
+
+	}
+
+	/**
+	 * Checks that a mapped world places and moves entities in the same way as
+	 * a flat world with the same source of randomness
+	 * 
+	 * @throws IOException
+	 *             if errors occur mapping the file
+	 */
+	@Test
+	public void behavesLikeFlatWorld() throws IOException {
+		List<Entity> flatEntities = entities();
+		FlatWorld<Entity> flat = new FlatWorld<Entity>(SCALE, false, VisionShape.SQUARE, new SplitMix(7));
+		flat.enter(flatEntities);
+		move(flat, flatEntities);
+
+		List<Entity> mappedEntities = entities();
+		try (MappedWorld<Entity> mapped = new MappedWorld<Entity>(path(), TAG, SCALE, ENTITIES,
+				VisionShape.SQUARE, new SplitMix(7))) {
+			mapped.enter(mappedEntities);
+			move(mapped, mappedEntities);
+			assertArrayEquals(positions(flat, flatEntities), positions(mapped, mappedEntities));
+		}
+	}
+
+	/**
+	 * Checks that moving the entities of a sealed world leaves the file
+	 * unchanged, and that closing the world leaves no scratch copy behind
+	 * 
+	 * @throws IOException
+	 *             if errors occur mapping the file
+	 */
+	@Test
+	public void runsDoNotChangePopulatedFile() throws IOException {
+		Path path = path();
+		List<Entity> entities = entities();
+		try (MappedWorld<Entity> world = new MappedWorld<Entity>(path, TAG, SCALE, ENTITIES, VisionShape.SQUARE,
+				new SplitMix(7))) {
+			world.enter(entities);
+			world.seal();
+			byte[] population = Files.readAllBytes(path);
+
+			move(world, entities);
+			assertArrayEquals(population, Files.readAllBytes(path));
+		}
+		assertArrayEquals(new String[] { path.getFileName().toString() }, path.getParent().toFile().list());
+	}
+
+	/**
+	 * Checks that a world reopened on a populated file adopts the stored
+	 * locations and state of the source of randomness, discarding the moves
+	 * of the run that populated it
+	 * 
+	 * @throws IOException
+	 *             if errors occur mapping the file
+	 */
+	@Test
+	public void reopenedWorldAdoptsPopulation() throws IOException {
+		Path path = path();
+		List<Entity> entities = entities();
+		SplitMix random = new SplitMix(7);
+		int[] positions;
+		long state;
+		try (MappedWorld<Entity> world = new MappedWorld<Entity>(path, TAG, SCALE, ENTITIES, VisionShape.SQUARE,
+				random)) {
+			assertFalse(world.isPopulated());
+			world.enter(entities);
+			world.seal();
+			positions = positions(world, entities);
+			state = random.getState();
+			move(world, entities);
+		}
+
+		List<Entity> adopters = entities();
+		SplitMix other = new SplitMix(11);
+		try (MappedWorld<Entity> world = new MappedWorld<Entity>(path, TAG, SCALE, ENTITIES, VisionShape.SQUARE,
+				other)) {
+			assertTrue(world.isPopulated());
+			world.adopt(adopters);
+			assertArrayEquals(positions, positions(world, adopters));
+			assertEquals(state, other.getState());
+		}
+
+		try (MappedWorld<Entity> world = new MappedWorld<Entity>(path, TAG + 1, SCALE, ENTITIES,
+				VisionShape.SQUARE, new SplitMix(7))) {
+			assertFalse(world.isPopulated());
+		}
+	}
+
+	/**
+	 * @return the path of a world file in a new directory
+	 * @throws IOException
+	 *             if errors occur creating the directory
+	 */
+	private Path path() throws IOException {
+		return new File(folder.newFolder(), "world.bin").toPath();
+	}
+
+	/**
+	 * @return the entities of a world, one in eight of which is jailed
+	 */
+	private static List<Entity> entities() {
+		List<Entity> entities = new ArrayList<Entity>();
+		for (int i = 0; i < ENTITIES; i++) {
+			entities.add(new Entity(i % 8 == 0 ? Category.JAILED : i % 2 == 0 ? Category.QUIET : Category.COP));
+		}
+		return entities;
+	}
+
+	/**
+	 * Moves every active entity of the given world the given number of times
+	 * 
+	 * @param world
+	 *            the given world
+	 * @param entities
+	 *            the entities in the world
+	 */
+	private static void move(IWorld<Entity> world, List<Entity> entities) {
+		for (int i = 0; i < MOVES; i++) {
+			for (Entity entity : entities) {
+				if (entity.isActive()) {
+					world.move(entity, SCOPE);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the locations of the given entities in the given world
+	 * 
+	 * @param world
+	 *            the given world
+	 * @param entities
+	 *            the given entities
+	 * @return the locations in the order of the entities
+	 */
+	private static int[] positions(IWorld<Entity> world, List<Entity> entities) {
+		int[] positions = new int[entities.size()];
+		for (int i = 0; i < positions.length; i++) {
+			positions[i] = world.positionOf(entities.get(i));
+		}
+		return positions;
+	}
+
+}
@@ -0,0 +1,61 @@
+package world;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Tests of stencils, which are to include every patch within a vision once,
+ * and whose computation is not to grow with the world
+ * 
+ * @author Ferdinand
+ *
+ */
+public class StencilTest {
+
+	/**
+	 * Checks that a window wider than the world includes every patch but the
+	 * centre once
+	 */
+	@Test
+	public void wrappingWindowIncludesPatchesOnce() {
+		for (VisionShape shape : VisionShape.values()) {
+			for (int scale = 1; scale <= 9; scale++) {
+				Stencil stencil = new Stencil(shape, 20, scale);
+				Set<Integer> cells = new HashSet<Integer>();
+				for (int i = 0; i < stencil.size(); i++) {
+					cells.add(stencil.cell(0, 0, i));
+				}
+				assertEquals(scale * scale - 1, stencil.size());
+				assertEquals(stencil.size(), cells.size());
+			}
+		}
+	}
+
+	/**
+	 * Checks that a window narrower than the world holds every offset but the
+	 * centre
+	 */
+	@Test
+	public void windowHoldsOffsets() {
+		assertEquals(15 * 15 - 1, new Stencil(VisionShape.SQUARE, 7, 100).size());
+		assertEquals(15 * 15 - 1, new Stencil(VisionShape.SQUARE, 7, 15).size());
+	}
+
+	/**
+	 * Checks that computing a stencil in a huge world allocates about as much
+	 * as the stencil itself rather than a mark per patch of the world
+	 */
+	@Test
+	public void computationDoesNotGrowWithWorld() {
+		Stencil[] stencil = new Stencil[1];
+		long bytes = Allocation.bytes(() -> stencil[0] = new Stencil(VisionShape.SQUARE, 7, 20000));
+		assertEquals(15 * 15 - 1, stencil[0].size());
+		assertTrue(bytes + " bytes", bytes < 64 * 1024);
+	}
+
+}
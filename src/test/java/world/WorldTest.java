@@ -0,0 +1,211 @@
+package world;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import org.junit.Test;
+
+/**
+ * Tests of the neighbour query of the worlds, which is to visit the entities
+ * within the window around an entity in order without allocating
+ * 
+ * @author Ferdinand
+ *
+ */
+public class WorldTest {
+
+	/**
+	 * the scale of the tested worlds
+	 */
+	private static final int SCALE = 40;
+
+	/**
+	 * the scope of the queries
+	 */
+	private static final int SCOPE = 7;
+
+	/**
+	 * the number of queries per entity before measuring
+	 */
+	private static final int WARMUP_ROUNDS = 200;
+
+	/**
+	 * A minimal entity of a given category
+	 */
+	private static class Entity implements IEntity {
+
+		/**
+		 * the category of the entity
+		 */
+		private final Category category;
+
+		/**
+		 * the id assigned by the world
+		 */
+		private int id = -1;
+
+		/**
+		 * Creates an entity of the given category
+		 * 
+		 * @param category
+		 *            the given category
+		 */
+		Entity(Category category) {
+			this.category = category;
+		}
+
+		@Override
+		public boolean isActive() {
+			return category != Category.JAILED;
+		}
+
+		@Override
+		public Category getCategory() {
+			return category;
+		}
+
+		@Override
+		public int getId() {
+			return id;
+		}
+
+		@Override
+		public void setId(int id) {
+			this.id = id;
+		}
+
+	}
+
+	/**
+	 * Checks that the neighbour query of a world of patch objects does not
+	 * allocate
+	 */
+	@Test
+	public void forEachNeighbourDoesNotAllocate() {
+		assertEquals(0, allocatedBytes(new World<Entity>(SCALE, false, VisionShape.SQUARE, new SplitMix(42))));
+		assertEquals(0, allocatedBytes(new World<Entity>(SCALE, false, VisionShape.CIRCLE, new SplitMix(42))));
+	}
+
+	/**
+	 * Checks that the neighbour query of a flat world does not allocate
+	 */
+	@Test
+	public void forEachNeighbourOfFlatWorldDoesNotAllocate() {
+		assertEquals(0, allocatedBytes(new FlatWorld<Entity>(SCALE, false, VisionShape.SQUARE, new SplitMix(42))));
+	}
+
+	/**
+	 * Checks that the neighbour query and the neighbourhood visit the
+	 * entities of the window around an entity in order
+	 */
+	@Test
+	public void forEachNeighbourVisitsWindow() {
+		assertVisitsWindow(new World<Entity>(SCALE, false, VisionShape.SQUARE, new SplitMix(42)));
+		assertVisitsWindow(new FlatWorld<Entity>(SCALE, false, VisionShape.SQUARE, new SplitMix(42)));
+	}
+
+	/**
+	 * Checks that the neighbour query visits every patch once if the window
+	 * is wider than the world and wraps around onto itself
+	 */
+	@Test
+	public void forEachNeighbourVisitsWrappedWindowOnce() {
+		int scale = SCOPE - 2;
+		assertVisitsWindow(new World<Entity>(scale, false, VisionShape.SQUARE, new SplitMix(42)));
+		assertVisitsWindow(new FlatWorld<Entity>(scale, false, VisionShape.SQUARE, new SplitMix(42)));
+	}
+
+	/**
+	 * Crowds the given world with several entities on some patches, which
+	 * arrive in the reverse order of their ids, and checks for every entity
+	 * that its neighbours are the occupants of a brute-force scan of the
+	 * wrapped window of (2 * scope + 1)^2 patches around it, which visits
+	 * each patch but the entity's own once, in order of the x offsets, then
+	 * the y offsets, and the occupants of each patch in order of arrival
+	 * 
+	 * @param world
+	 *            the given world
+	 */
+	private static void assertVisitsWindow(IWorld<Entity> world) {
+		int scale = world.getScale();
+		int cells = scale * scale;
+		Random random = new Random(42);
+		List<Entity> entities = new ArrayList<Entity>();
+		int[] positions = new int[cells];
+		int[] arrivals = new int[cells];
+		for (int i = 0; i < cells; i++) {
+			entities.add(new Entity(i % 10 == 0 ? Category.COP : i % 10 == 1 ? Category.JAILED : Category.QUIET));
+			positions[i] = random.nextInt(cells);
+			arrivals[i] = cells - 1 - i;
+		}
+		world.enter(entities, positions, arrivals);
+
+		for (int i = 0; i < cells; i++) {
+			Entity entity = entities.get(i);
+			int centreX = positions[i] / scale;
+			int centreY = positions[i] % scale;
+			List<Entity> expected = new ArrayList<Entity>();
+			boolean[] scanned = new boolean[cells];
+			scanned[positions[i]] = true;
+			for (int dx = -SCOPE; dx <= SCOPE; dx++) {
+				for (int dy = -SCOPE; dy <= SCOPE; dy++) {
+					int cell = Math.floorMod(centreX + dx, scale) * scale + Math.floorMod(centreY + dy, scale);
+					if (!scanned[cell]) {
+						scanned[cell] = true;
+						for (int arrival : arrivals) {
+							if (positions[arrival] == cell) {
+								expected.add(entities.get(arrival));
+							}
+						}
+					}
+				}
+			}
+
+			List<Entity> visited = new ArrayList<Entity>();
+			world.forEachNeighbour(entity, SCOPE, visited::add);
+			assertEquals(expected, visited);
+			assertEquals(expected, world.neighbourhoodOf(entity, SCOPE));
+		}
+	}
+
+	/**
+	 * Populates the given world, queries the neighbours of every entity until
+	 * the query is compiled and returns the bytes steadily allocated by a
+	 * query per entity
+	 * 
+	 * @param world
+	 *            the given world
+	 * @return the allocated bytes
+	 */
+	private static long allocatedBytes(IWorld<Entity> world) {
+		Entity[] entities = populate(world);
+		int[] visited = new int[1];
+		Consumer<Entity> consumer = neighbour -> visited[0]++;
+		return Allocation.steadyBytes(WARMUP_ROUNDS, () -> {
+			for (int i = 0; i < entities.length; i++) {
+				world.forEachNeighbour(entities[i], SCOPE, consumer);
+			}
+		});
+	}
+
+	/**
+	 * Adds cops, quiet and jailed agents to the given world
+	 * 
+	 * @param world
+	 *            the given world
+	 * @return the entities in the order of their ids
+	 */
+	private static Entity[] populate(IWorld<Entity> world) {
+		List<Entity> entities = new ArrayList<Entity>();
+		for (int i = 0; i < SCALE * SCALE / 2; i++) {
+			entities.add(new Entity(i % 10 == 0 ? Category.COP : i % 10 == 1 ? Category.JAILED : Category.QUIET));
+		}
+		world.enter(entities);
+		return entities.toArray(new Entity[entities.size()]);
+	}
+
+}